@@ -0,0 +1,113 @@
+import biuoop.KeyboardSensor;
+import driver.GameFlow;
+import driver.GameLevel;
+import io.LevelSpecificationReader;
+import management.AnimationRunner;
+import management.Counter;
+import management.FrameCapture;
+import management.HeadlessDisplay;
+import management.LevelInformation;
+import management.ScriptedKeyboardSensor;
+
+import javax.imageio.ImageIO;
+import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.List;
+
+/**
+ * Plays the levels of a level definitions file without a window, as fast
+ * as possible, with keys pressed by a script, and reports how every level
+ * went. Every run with the same arguments plays the same way, so it serves
+ * for batch simulations, rendering benchmarks and comparing frames.
+ * Usage: HeadlessGame [levels file] [frames] [keys script] [render]
+ * [last frame png].
+ * The keys script is described by ScriptedKeyboardSensor. Frames are only
+ * drawn into an image when render is true. The game is recorded as
+ * FrameCapture describes, when its system properties are set.
+ */
+public class HeadlessGame {
+
+    public static final String DEF_LEVELS_FILE = "definitions/easy_level_definitions.txt";
+    public static final long DEF_FRAMES = 3600;
+    public static final int WIDTH = 800;
+    public static final int HEIGHT = 600;
+
+    /**
+     * Runs the levels headless.
+     * @param args The arguments, as described above.
+     * @throws Exception If the levels could not be read, or the frame could
+     *                   not be written.
+     */
+    public static void main(String[] args) throws Exception {
+        String levelsFile = args.length > 0 ? args[0] : DEF_LEVELS_FILE;
+        long frames = args.length > 1 ? Long.parseLong(args[1]) : DEF_FRAMES;
+        String script = args.length > 2 ? args[2] : "";
+        boolean render = args.length > 3 && Boolean.parseBoolean(args[3]);
+        String framePath = args.length > 4 ? args[4] : null;
+
+        KeyboardSensor keyboard = ScriptedKeyboardSensor.parse(script);
+        HeadlessDisplay display = new HeadlessDisplay(WIDTH, HEIGHT, keyboard,
+                render || (framePath != null));
+        AnimationRunner runner = new AnimationRunner(display);
+        runner.setRealTime(false);
+        runner.setFrameLimit(frames);
+
+        Counter lives = new Counter();
+        lives.increase(GameFlow.LIVES);
+        Counter score = new Counter();
+        long startTime = System.nanoTime();
+        for (LevelInformation levelInfo : readLevels(levelsFile)) {
+            long levelStart = System.nanoTime();
+            long levelFrames = runner.getFramesShown();
+            GameLevel level = new GameLevel(levelInfo, keyboard, runner, lives,
+                    score);
+            level.initialize();
+            while ((level.getRemainingLives() > 0)
+                    && (level.getRemainingBlocks() > 0)
+                    && !runner.hasReachedFrameLimit()) {
+                level.playOneTurn();
+            }
+            System.out.printf("level=\"%s\" frames=%d blocks=%d lives=%d"
+                    + " score=%d ms=%.1f%n", levelInfo.levelName().trim(),
+                    runner.getFramesShown() - levelFrames,
+                    level.getRemainingBlocks(), lives.getValue(),
+                    score.getValue(), (System.nanoTime() - levelStart) / 1e6);
+            if ((lives.getValue() == 0) || runner.hasReachedFrameLimit()) {
+                break;
+            }
+        }
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        System.out.printf("frames=%d score=%d lives=%d draws=%d fps=%.0f%n",
+                runner.getFramesShown(), score.getValue(), lives.getValue(),
+                display.getDrawCalls(), runner.getFramesShown() / seconds);
+        FrameCapture capture = runner.getCapture();
+        if (capture != null) {
+            capture.close();
+            System.out.printf("captured=%d dropped=%d written=%d%n",
+                    capture.getFrames(), capture.getDropped(),
+                    capture.getWritten());
+        }
+        if ((framePath != null) && (display.getFrame() != null)) {
+            ImageIO.write(display.getFrame(), "png", new File(framePath));
+        }
+    }
+
+    /**
+     * Read the levels of a level definitions file.
+     * @param levelsFile The path of the file resource.
+     * @return The levels.
+     * @throws Exception If the levels could not be read.
+     */
+    private static List<LevelInformation> readLevels(String levelsFile)
+            throws Exception {
+        InputStream fileStream = ClassLoader.getSystemClassLoader()
+                .getResourceAsStream(levelsFile);
+        if (fileStream == null) {
+            throw new IllegalArgumentException("No such levels file: "
+                    + levelsFile);
+        }
+        return new LevelSpecificationReader().fromReader(
+                new InputStreamReader(fileStream));
+    }
+}
@@ -0,0 +1,198 @@
+package benchmarks;
+
+import geometryprimitives.Point;
+import geometryprimitives.Rectangle;
+import management.GameEnvironment;
+import management.SweepAndPrune;
+import sprites.Ball;
+import sprites.BallSystem;
+import sprites.Block;
+import sprites.Fill;
+import sprites.Velocity;
+
+import java.awt.Color;
+import java.util.Random;
+
+/**
+ * Measures how ball to ball collisions scale with the number of balls.
+ * The arena grows with the number of balls, so the balls are always as
+ * crowded as 500 balls in an 800x600 screen.
+ * For every number of balls it first finds the pairs of balls whose paths
+ * overlap, both with a sweep and prune and by checking every pair, on the
+ * same balls moving in straight lines between the walls, and then runs a
+ * ball system with and without ball collisions.
+ * Usage: BallCollisionBenchmark [max balls] [frames].
+ */
+public class BallCollisionBenchmark {
+
+    public static final int DEF_MAX_BALLS = 8000;
+    public static final int DEF_FRAMES = 200;
+    public static final int MIN_BALLS = 500;
+    public static final double AREA_PER_BALL = 800.0 * 600.0 / MIN_BALLS;
+    public static final double RADIUS = 5;
+    public static final double FRAME_DT = 1.0 / 60;
+    public static final double WALL = 25;
+
+    /**
+     * Runs the benchmark.
+     * @param args The maximal number of balls and the number of frames.
+     */
+    public static void main(String[] args) {
+        int maxBalls = args.length > 0 ? Integer.parseInt(args[0]) : DEF_MAX_BALLS;
+        int frames = args.length > 1 ? Integer.parseInt(args[1]) : DEF_FRAMES;
+        for (int n = MIN_BALLS; n <= maxBalls; n *= 2) {
+            double side = Math.sqrt(n * AREA_PER_BALL);
+            comparePairSearches(n, side, frames);
+            compareBallSystems(n, side, frames);
+        }
+    }
+
+    /**
+     * Find the overlapping pairs of n balls for a number of frames, with a
+     * sweep and prune and by checking every pair.
+     * @param n The number of balls.
+     * @param side The side of the arena.
+     * @param frames The number of frames.
+     */
+    private static void comparePairSearches(int n, double side, int frames) {
+        Random random = new Random(n);
+        double[] x = new double[n];
+        double[] y = new double[n];
+        double[] dx = new double[n];
+        double[] dy = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = RADIUS + random.nextDouble() * (side - 2 * RADIUS);
+            y[i] = RADIUS + random.nextDouble() * (side - 2 * RADIUS);
+            double angle = random.nextDouble() * 2 * Math.PI;
+            double speed = 200 + random.nextInt(300);
+            dx[i] = Math.cos(angle) * speed;
+            dy[i] = Math.sin(angle) * speed;
+        }
+        double[] minX = new double[n];
+        double[] minY = new double[n];
+        double[] maxX = new double[n];
+        double[] maxY = new double[n];
+        SweepAndPrune sweep = new SweepAndPrune();
+        for (int i = 0; i < n; i++) {
+            sweep.add(i);
+        }
+
+        long sweepTime = 0;
+        long bruteTime = 0;
+        long pairs = 0;
+        int mismatches = 0;
+        for (int f = 0; f < frames; f++) {
+            for (int i = 0; i < n; i++) {
+                double endX = x[i] + dx[i] * FRAME_DT;
+                double endY = y[i] + dy[i] * FRAME_DT;
+                minX[i] = Math.min(x[i], endX) - RADIUS;
+                minY[i] = Math.min(y[i], endY) - RADIUS;
+                maxX[i] = Math.max(x[i], endX) + RADIUS;
+                maxY[i] = Math.max(y[i], endY) + RADIUS;
+            }
+            long start = System.nanoTime();
+            sweep.update(minX, minY, maxX, maxY);
+            sweepTime += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int brutePairs = 0;
+            for (int i = 0; i < n; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    if ((minX[j] <= maxX[i]) && (minX[i] <= maxX[j])
+                            && (minY[j] <= maxY[i]) && (minY[i] <= maxY[j])) {
+                        brutePairs++;
+                    }
+                }
+            }
+            bruteTime += System.nanoTime() - start;
+            if (brutePairs != sweep.pairCount()) {
+                mismatches++;
+            }
+            pairs += sweep.pairCount();
+
+            for (int i = 0; i < n; i++) {
+                x[i] += dx[i] * FRAME_DT;
+                y[i] += dy[i] * FRAME_DT;
+                if ((x[i] < RADIUS) || (x[i] > side - RADIUS)) {
+                    dx[i] = -dx[i];
+                }
+                if ((y[i] < RADIUS) || (y[i] > side - RADIUS)) {
+                    dy[i] = -dy[i];
+                }
+            }
+        }
+        System.out.printf("balls=%d pairs/frame=%.1f swaps/frame=%.1f"
+                        + " sweep ms/frame=%.3f brute ms/frame=%.3f"
+                        + " mismatches=%d%n", n, (double) pairs / frames,
+                (double) sweep.getSwaps() / frames, sweepTime / 1e6 / frames,
+                bruteTime / 1e6 / frames, mismatches);
+    }
+
+    /**
+     * Run n balls in a walled arena for a number of frames, with and without
+     * ball collisions.
+     * @param n The number of balls.
+     * @param side The side of the arena.
+     * @param frames The number of frames.
+     */
+    private static void compareBallSystems(int n, double side, int frames) {
+        double without = timeBallSystem(n, side, frames, false);
+        double with = timeBallSystem(n, side, frames, true);
+        System.out.printf("balls=%d system ms/frame=%.3f with ball collisions"
+                + " ms/frame=%.3f%n", n, without, with);
+    }
+
+    /**
+     * Run n balls in a walled arena, and time their frames.
+     * @param n The number of balls.
+     * @param side The side of the arena.
+     * @param frames The number of frames.
+     * @param ballCollisions True to let the balls bounce off each other.
+     * @return The milliseconds per frame.
+     */
+    private static double timeBallSystem(int n, double side, int frames,
+                                         boolean ballCollisions) {
+        GameEnvironment env = new GameEnvironment();
+        addWall(env, -WALL, -WALL, side + 2 * WALL, WALL);
+        addWall(env, -WALL, side, side + 2 * WALL, WALL);
+        addWall(env, -WALL, 0, WALL, side);
+        addWall(env, side, 0, WALL, side);
+        env.freeze();
+        BallSystem balls = new BallSystem(env);
+        balls.setParallel(false);
+        balls.setBallCollisions(ballCollisions);
+        Random random = new Random(n);
+        for (int i = 0; i < n; i++) {
+            Ball ball = new Ball(new Point(
+                    RADIUS + random.nextDouble() * (side - 2 * RADIUS),
+                    RADIUS + random.nextDouble() * (side - 2 * RADIUS)),
+                    (int) RADIUS, Color.WHITE, env);
+            ball.setVelocity(Velocity.fromAngleAndSpeed(random.nextInt(360),
+                    200 + random.nextInt(300)));
+            balls.add(ball);
+        }
+        for (int f = 0; f < frames; f++) {
+            balls.timePassed(FRAME_DT);
+        }
+        long start = System.nanoTime();
+        for (int f = 0; f < frames; f++) {
+            balls.timePassed(FRAME_DT);
+        }
+        return (System.nanoTime() - start) / 1e6 / frames;
+    }
+
+    /**
+     * Add a wall that never breaks to the environment.
+     * @param env The game environment.
+     * @param x The wall left X.
+     * @param y The wall upper Y.
+     * @param width The wall width.
+     * @param height The wall height.
+     */
+    private static void addWall(GameEnvironment env, double x, double y,
+                                double width, double height) {
+        Block wall = new Block(new Rectangle(new Point(x, y), width, height),
+                new Fill[] {new Fill(Color.GRAY)}, null, Integer.MAX_VALUE);
+        env.addCollidable(wall);
+    }
+}
@@ -0,0 +1,116 @@
+package benchmarks;
+
+import geometryprimitives.Point;
+import geometryprimitives.Rectangle;
+import management.GameEnvironment;
+import sprites.Ball;
+import sprites.BallSystem;
+import sprites.Block;
+import sprites.Fill;
+import sprites.Paddle;
+import sprites.Velocity;
+
+import java.awt.Color;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Measures how many bytes the collision code allocates per frame. A field of
+ * blocks that never break is hit by many balls, while the paddle moves on
+ * every frame, and the bytes allocated by the thread are sampled before and
+ * after a number of frames.
+ * Usage: CollisionAllocationBenchmark [balls] [frames].
+ */
+public class CollisionAllocationBenchmark {
+
+    public static final int DEF_BALLS = 1000;
+    public static final int DEF_FRAMES = 3000;
+    public static final int WARMUP_FRAMES = 1000;
+    public static final double FRAME_DT = 1.0 / 60;
+
+    /**
+     * Runs the benchmark.
+     * @param args The number of balls and the number of measured frames.
+     */
+    public static void main(String[] args) {
+        int numOfBalls = args.length > 0 ? Integer.parseInt(args[0]) : DEF_BALLS;
+        int frames = args.length > 1 ? Integer.parseInt(args[1]) : DEF_FRAMES;
+
+        GameEnvironment env = new GameEnvironment();
+        addBlock(env, 0, 20, 25, 580);
+        addBlock(env, 775, 20, 25, 580);
+        addBlock(env, 0, 20, 800, 25);
+        addBlock(env, 0, 590, 800, 10);
+        for (int i = 0; i < 15; i++) {
+            for (int j = 0; j < 6; j++) {
+                addBlock(env, 25 + 50 * i, 100 + 20 * j, 50, 20);
+            }
+        }
+        Paddle paddle = new Paddle(new Point(400, 570), 100, 20, Color.ORANGE,
+                null, 300);
+        env.addDynamicCollidable(paddle);
+        env.freeze();
+
+        BallSystem balls = new BallSystem(env);
+        balls.setParallel(false);
+        Random random = new Random(1);
+        for (int i = 0; i < numOfBalls; i++) {
+            Ball ball = new Ball(new Point(50 + random.nextInt(700),
+                    250 + random.nextInt(250)), 5, Color.WHITE, env);
+            ball.setVelocity(Velocity.fromAngleAndSpeed(random.nextInt(360),
+                    200 + random.nextInt(300)));
+            balls.add(ball);
+        }
+
+        runFrames(env, paddle, balls, WARMUP_FRAMES);
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory
+                        .getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long startBytes = threads.getThreadAllocatedBytes(threadId);
+        long startTime = System.nanoTime();
+        runFrames(env, paddle, balls, frames);
+        long elapsed = System.nanoTime() - startTime;
+        long bytes = threads.getThreadAllocatedBytes(threadId) - startBytes;
+
+        System.out.printf("balls=%d frames=%d%n", numOfBalls, frames);
+        System.out.printf("bytes/frame=%.0f bytes/ball-step=%.1f ms/frame=%.3f%n",
+                (double) bytes / frames, (double) bytes / frames / numOfBalls,
+                elapsed / 1e6 / frames);
+    }
+
+    /**
+     * Simulate the given number of frames, moving the paddle back and forth.
+     * @param env The game environment.
+     * @param paddle The paddle.
+     * @param balls The balls.
+     * @param frames The number of frames.
+     */
+    private static void runFrames(GameEnvironment env, Paddle paddle,
+                                  BallSystem balls, int frames) {
+        for (int f = 0; f < frames; f++) {
+            if ((f / 60) % 2 == 0) {
+                paddle.moveLeft(FRAME_DT);
+            } else {
+                paddle.moveRight(FRAME_DT);
+            }
+            env.updateCollidable(paddle);
+            balls.timePassed(FRAME_DT);
+        }
+    }
+
+    /**
+     * Add a block that never breaks to the environment.
+     * @param env The game environment.
+     * @param x The block left X.
+     * @param y The block upper Y.
+     * @param width The block width.
+     * @param height The block height.
+     */
+    private static void addBlock(GameEnvironment env, double x, double y,
+                                 double width, double height) {
+        Block block = new Block(new Rectangle(new Point(x, y), width, height),
+                new Fill[] {new Fill(Color.GRAY)}, null, Integer.MAX_VALUE);
+        env.addCollidable(block);
+    }
+}
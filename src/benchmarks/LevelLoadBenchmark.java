@@ -0,0 +1,67 @@
+package benchmarks;
+
+import io.ImageCache;
+import io.LevelSpecificationReader;
+import io.ParsedLevelSet;
+import management.LevelInformation;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.List;
+
+/**
+ * Measures how long loading the levels of every level set takes. Every
+ * pass reads the level definitions, and creates the blocks and background
+ * of every level, the way a game does when it starts a level. The images
+ * of the fills are decoded by the first pass, and found in the shared image
+ * cache by the later ones, unless it is disabled with
+ * -Darkanoid.imagecachemb=0.
+ * Usage: LevelLoadBenchmark [passes].
+ */
+public class LevelLoadBenchmark {
+
+    public static final int DEF_PASSES = 5;
+    public static final String LEVEL_SETS = "level_sets.txt";
+
+    /**
+     * Runs the benchmark.
+     * @param args The number of passes.
+     * @throws Exception If a level could not be read.
+     */
+    public static void main(String[] args) throws Exception {
+        int passes = args.length > 0 ? Integer.parseInt(args[0]) : DEF_PASSES;
+        ParsedLevelSet levelSets = new ParsedLevelSet(open(LEVEL_SETS));
+        ImageCache cache = ImageCache.getShared();
+
+        for (int pass = 0; pass < passes; pass++) {
+            long startTime = System.nanoTime();
+            long startMisses = cache.getMisses();
+            int levels = 0;
+            for (String key : levelSets.getLevels().keySet()) {
+                List<LevelInformation> infos = new LevelSpecificationReader()
+                        .fromReader(open(levelSets.getLevelFile(key)));
+                for (LevelInformation info : infos) {
+                    info.blocks();
+                    info.getBackground();
+                    levels++;
+                }
+            }
+            long elapsed = System.nanoTime() - startTime;
+            System.out.printf("pass=%d levels=%d decodes=%d ms=%.1f%n", pass,
+                    levels, cache.getMisses() - startMisses, elapsed / 1e6);
+        }
+        System.out.printf("hits=%d misses=%d evictions=%d images=%d bytes=%d%n",
+                cache.getHits(), cache.getMisses(), cache.getEvictions(),
+                cache.size(), cache.getBytes());
+    }
+
+    /**
+     * Open a resource for reading.
+     * @param path The path of the resource.
+     * @return A reader of the resource.
+     */
+    private static Reader open(String path) {
+        return new InputStreamReader(ClassLoader.getSystemClassLoader()
+                .getResourceAsStream(path));
+    }
+}
@@ -1,13 +1,15 @@
 package driver;
 
 import biuoop.DrawSurface;
-import biuoop.GUI;
 import biuoop.KeyboardSensor;
 import management.Counter;
+import management.Display;
 import management.SpriteCollection;
+import management.StaticLayer;
+import management.DirtyRectRenderer;
 import management.GameEnvironment;
 import management.LevelInformation;
-import management.Animation;
+import management.FixedStepAnimation;
 import management.AnimationRunner;
 import management.ScoreTrackingListener;
 import management.BlockRemover;
@@ -18,11 +20,13 @@ import management.PauseScreen;
 import management.ScoreIndicator;
 import management.LivesIndicator;
 import management.LevelNameIndicator;
+import sprites.Background;
 import sprites.Block;
 import sprites.Sprite;
 import sprites.Collidable;
 import sprites.Fill;
 import sprites.Ball;
+import sprites.BallSystem;
 import sprites.Paddle;
 import geometryprimitives.Rectangle;
 import geometryprimitives.Point;
@@ -33,11 +37,12 @@ import java.util.List;
 /**
  * Represents a game.
  */
-public class GameLevel implements Animation {
+public class GameLevel implements FixedStepAnimation {
 
     private SpriteCollection sprites;
+    private StaticLayer staticLayer;
     private GameEnvironment environment;
-    private GUI gui;
+    private Display display;
     private Counter remainingBlocks;
     private Counter remainingBalls;
     private Counter score;
@@ -47,6 +52,7 @@ public class GameLevel implements Animation {
     private KeyboardSensor keyboard;
     private LevelInformation levelInfo;
     private Paddle paddle;
+    private BallSystem balls;
     private int numberOfBlocksToRemove;
 
     /**
@@ -56,16 +62,24 @@ public class GameLevel implements Animation {
      * @param ar The animation runner.
      * @param lives The lives counter.
      * @param score The score counter.
+     * @throws Exception If the blocks of the level could not be read.
      */
     public GameLevel(LevelInformation levelInfo, KeyboardSensor ks,
-                     AnimationRunner ar, Counter lives, Counter score) {
-        this.sprites = new SpriteCollection();
-        this.environment = new GameEnvironment();
+                     AnimationRunner ar, Counter lives, Counter score)
+            throws Exception {
+        this.sprites = new SpriteCollection(
+                DirtyRectRenderer.isEnabledByDefault());
+        if (StaticLayer.isEnabledByDefault()) {
+            this.staticLayer = new StaticLayer();
+        }
+        this.environment = new GameEnvironment(levelInfo.blockLayout());
+        this.balls = new BallSystem(this.environment);
+        this.balls.setPhysics(levelInfo.physics());
         this.levelInfo = levelInfo;
         initializeCounters(lives, score);
         this.runner = ar;
-        this.gui = runner.getGui();
-        this.keyboard = this.gui.getKeyboardSensor();
+        this.display = runner.getDisplay();
+        this.keyboard = this.display.getKeyboardSensor();
         this.numberOfBlocksToRemove = levelInfo.numberOfBlocksToRemove();
     }
 
@@ -77,6 +91,14 @@ public class GameLevel implements Animation {
         this.environment.addCollidable(c);
     }
 
+    /**
+     * Add the given moving collidable to the game environment.
+     * @param c The given collidable.
+     */
+    public void addDynamicCollidable(Collidable c) {
+        this.environment.addDynamicCollidable(c);
+    }
+
     /**
      * Add the given sprite to sprite collection.
      * @param s The given sprite.
@@ -85,6 +107,20 @@ public class GameLevel implements Animation {
         this.sprites.addSprite(s);
     }
 
+    /**
+     * Add the given sprite that does not move, such as a background or a
+     * block, to the static layer, which draws it once into an off-screen
+     * image.
+     * @param s The given sprite.
+     */
+    public void addStaticSprite(Sprite s) {
+        if (this.staticLayer == null) {
+            this.sprites.addSprite(s);
+        } else {
+            this.staticLayer.addSprite(s);
+        }
+    }
+
     public static final int PADDLE_OFFSET = 2;
 
     /**
@@ -93,13 +129,24 @@ public class GameLevel implements Animation {
      * @throws Exception Exception.
      */
     public void initialize() throws Exception {
-        this.sprites.addSprite(this.levelInfo.getBackground());
+        if (this.staticLayer != null) {
+            this.sprites.addSprite(this.staticLayer);
+        }
+        Sprite background = this.levelInfo.getBackground();
+        if (background instanceof Background) {
+            ((Background) background).prepare(
+                    this.display.getWidth(),
+                    this.display.getHeight());
+        }
+        this.addStaticSprite(background);
         initializeGameIndicators();
         BallRemover ballRemover = new BallRemover(this, this.remainingBalls);
         addBlockBounds(ballRemover);
         this.addBlockPattern();
 
         initializePaddle();
+        this.sprites.addSprite(this.balls);
+        this.environment.freeze();
     }
 
     /**
@@ -117,7 +164,7 @@ public class GameLevel implements Animation {
      */
     public void playOneTurn() {
 
-        this.paddle.setLeftXCoor((this.gui.getDrawSurface().getWidth() / 2)
+        this.paddle.setLeftXCoor((this.display.getWidth() / 2)
                 - (this.levelInfo.paddleWidth() / 2));
         initializeBalls();
         this.running = true;
@@ -162,18 +209,21 @@ public class GameLevel implements Animation {
      */
     public void addBlockBounds(BallRemover ballremover) {
         Block leftBound = new Block(new Rectangle(new Point(0, 20),
-                VERT_BLOCK_BOUND_WIDTH, gui.getDrawSurface().getHeight()),
+                VERT_BLOCK_BOUND_WIDTH, this.display.getHeight()),
                 new Fill(Color.DARK_GRAY), Color.DARK_GRAY, 0);
+        leftBound.setCollisionLayer(Collidable.WALL_LAYER);
         leftBound.addToGame(this);
         Block rightBound = new Block(new Rectangle(new Point(
-                gui.getDrawSurface().getWidth()
+                this.display.getWidth()
                         - VERT_BLOCK_BOUND_WIDTH, 20),
-                VERT_BLOCK_BOUND_WIDTH, gui.getDrawSurface().getHeight()),
+                VERT_BLOCK_BOUND_WIDTH, this.display.getHeight()),
                 new Fill(Color.DARK_GRAY), Color.DARK_GRAY, 0);
+        rightBound.setCollisionLayer(Collidable.WALL_LAYER);
         rightBound.addToGame(this);
         Block upperBound = new Block(new Rectangle(new Point(0, 20),
-                gui.getDrawSurface().getWidth(), HORIZ_BLOCK_BOUND_HEIGHT),
+                this.display.getWidth(), HORIZ_BLOCK_BOUND_HEIGHT),
                 new Fill(Color.DARK_GRAY), Color.DARK_GRAY, 0);
+        upperBound.setCollisionLayer(Collidable.WALL_LAYER);
         upperBound.addToGame(this);
         addDeathBlock(ballremover);
     }
@@ -187,12 +237,23 @@ public class GameLevel implements Animation {
         return this.environment.removeCollidable(c);
     }
 
+    /**
+     * Notify the game environment that a collidable object has moved.
+     * @param c The collidable that moved.
+     */
+    public void updateCollidable(Collidable c) {
+        this.environment.updateCollidable(c);
+    }
+
     /**
      * Removes a sprite object.
      * @param s The sprite to remove.
      * @return True if removed, false otherwise.
      */
     public boolean removeSprite(Sprite s) {
+        if ((this.staticLayer != null) && this.staticLayer.removeSprite(s)) {
+            return true;
+        }
         return this.sprites.removeSprite(s);
     }
 
@@ -203,10 +264,11 @@ public class GameLevel implements Animation {
      */
     public void addDeathBlock(BallRemover ballRemover) {
         Block lowerBound = new Block(new Rectangle(new Point(0,
-                gui.getDrawSurface().getHeight()
+                this.display.getHeight()
                         + HORIZ_BLOCK_BOUND_HEIGHT),
-                gui.getDrawSurface().getWidth(), HORIZ_BLOCK_BOUND_HEIGHT),
+                this.display.getWidth(), HORIZ_BLOCK_BOUND_HEIGHT),
                 new Fill(Color.DARK_GRAY), Color.DARK_GRAY, 0);
+        lowerBound.setCollisionLayer(Collidable.KILLZONE_LAYER);
         lowerBound.addToGame(this);
         lowerBound.addHitListener(ballRemover);
     }
@@ -232,10 +294,10 @@ public class GameLevel implements Animation {
      */
     public void initializeBalls() {
         for (int i = 0; i < this.levelInfo.numberOfBalls(); i++) {
-            Ball ball = new Ball(new Point(this.gui.getDrawSurface().getWidth()
+            Ball ball = new Ball(new Point(this.display.getWidth()
                     / 2, 480), 5, Color.WHITE, this.environment);
             ball.setVelocity(this.levelInfo.initialBallVelocities().get(i));
-            ball.addToGame(this);
+            this.balls.add(ball);
             this.remainingBalls.increase(1);
         }
     }
@@ -244,7 +306,7 @@ public class GameLevel implements Animation {
      * Initialize the game level paddle.
      */
     public void initializePaddle() {
-        this.paddle = new Paddle(new Point(this.gui.getDrawSurface().getWidth()
+        this.paddle = new Paddle(new Point(this.display.getWidth()
                 / 2, 590), this.levelInfo.paddleWidth(), 10, Color.ORANGE,
                 this.keyboard, this.levelInfo.paddleSpeed());
         this.paddle.addToGame(this);
@@ -257,7 +319,7 @@ public class GameLevel implements Animation {
      * of the screen.
      */
     private void setPaddleAtCenter() {
-        this.paddle.setLeftXCoor((this.gui.getDrawSurface().getWidth() / 2)
+        this.paddle.setLeftXCoor((this.display.getWidth() / 2)
         - (this.levelInfo.paddleWidth() / 2));
     }
 
@@ -277,6 +339,34 @@ public class GameLevel implements Animation {
      */
     @Override
     public void doOneFrame(DrawSurface d, double dt) {
+        this.checkPause();
+        this.sprites.drawAllOn(d);
+        this.stepSprites(dt);
+    }
+
+    /**
+     * Advance the game level by one simulation step.
+     * @param dt The amount of seconds the step simulates.
+     */
+    @Override
+    public void doOneStep(double dt) {
+        this.checkPause();
+        this.stepSprites(dt);
+    }
+
+    /**
+     * Draw the game level as it is now.
+     * @param d The draw surface.
+     */
+    @Override
+    public void drawFrame(DrawSurface d) {
+        this.sprites.drawAllOn(d);
+    }
+
+    /**
+     * Show the pause screen if the pause key is pressed.
+     */
+    private void checkPause() {
         if (this.keyboard.isPressed("p")) {
             PauseScreen pauseScreen = new PauseScreen();
             KeyPressStoppableAnimation keyPressStoppableAnimation =
@@ -284,7 +374,13 @@ public class GameLevel implements Animation {
                             KeyboardSensor.SPACE_KEY, pauseScreen);
             this.runner.run(keyPressStoppableAnimation);
         }
-        this.sprites.drawAllOn(d);
+    }
+
+    /**
+     * Notify all sprites that time has passed, and check if the turn ended.
+     * @param dt The amount of seconds passed.
+     */
+    private void stepSprites(double dt) {
         this.sprites.notifyAllTimePassed(dt);
 
         if (checkTurnEndConditions()) {
@@ -0,0 +1,431 @@
+package geometryprimitives;
+
+/**
+ * 16.16 fixed point arithmetic, and the swept circle test of SlabTest done
+ * in it. A fixed point number is kept in a long, as the real number times
+ * 2^16, so every operation is exact integer arithmetic and gives the same
+ * bits on every platform and at every JIT tier.
+ * Every 16.16 number of up to 2^37 is exactly a double, so the fixed point
+ * numbers can also be kept in doubles. raw() gets back the fixed point
+ * number of such a double exactly, and snap() moves any double to the
+ * closest fixed point number.
+ */
+public final class FixedPoint {
+
+    public static final int FRACTION_BITS = 16;
+    public static final long ONE = 1L << FRACTION_BITS;
+
+    private static final double SCALE = ONE;
+    private static final long NO_ENTRY = Long.MAX_VALUE;
+
+    /**
+     * Not instantiable.
+     */
+    private FixedPoint() {
+    }
+
+    /**
+     * Returns the fixed point number closest to the given number.
+     * @param num The number.
+     * @return The fixed point number.
+     */
+    public static long fromDouble(double num) {
+        return Math.round(num * SCALE);
+    }
+
+    /**
+     * Returns the fixed point number of a double that holds one exactly.
+     * @param num The double holding a fixed point number.
+     * @return The fixed point number.
+     */
+    public static long raw(double num) {
+        return (long) (num * SCALE);
+    }
+
+    /**
+     * Returns the given fixed point number as a double, exactly.
+     * @param raw The fixed point number.
+     * @return The number as a double.
+     */
+    public static double toDouble(long raw) {
+        return raw / SCALE;
+    }
+
+    /**
+     * Returns the closest fixed point number to the given number, as a double.
+     * @param num The number.
+     * @return The number, moved to the fixed point grid.
+     */
+    public static double snap(double num) {
+        return toDouble(fromDouble(num));
+    }
+
+    /**
+     * Multiply two fixed point numbers, rounding down.
+     * @param a The first number.
+     * @param b The second number.
+     * @return The product.
+     */
+    public static long mul(long a, long b) {
+        return (a * b) >> FRACTION_BITS;
+    }
+
+    /**
+     * Divide two fixed point numbers, rounding down.
+     * @param a The dividend.
+     * @param b The divisor, not 0.
+     * @return The quotient.
+     */
+    public static long div(long a, long b) {
+        return Math.floorDiv(a << FRACTION_BITS, b);
+    }
+
+    /**
+     * Returns the integer square root of a non negative long, rounded down.
+     * The square root of a squared fixed point number is a fixed point
+     * number.
+     * @param num The number.
+     * @return The integer square root.
+     */
+    public static long sqrt(long num) {
+        // A correctly rounded double square root is at most one off, and is
+        // the same everywhere, so correcting it keeps the result exact.
+        long root = (long) Math.sqrt((double) num);
+        while (root * root > num) {
+            root--;
+        }
+        while ((root + 1) * (root + 1) <= num) {
+            root++;
+        }
+        return root;
+    }
+
+    /**
+     * Same as SlabTest.intersect, in fixed point. The coordinate along the
+     * hit edge is not rounded to two decimals, as fixed point numbers are
+     * already on a grid.
+     * @param x0 The segment start X.
+     * @param y0 The segment start Y.
+     * @param x1 The segment end X.
+     * @param y1 The segment end Y.
+     * @param minX The rectangle left X.
+     * @param minY The rectangle upper Y.
+     * @param maxX The rectangle right X.
+     * @param maxY The rectangle lower Y.
+     * @param hit The result, set only if the segment hits the rectangle, with
+     *            fixed point numbers as doubles.
+     * @return True if the segment hits one of the rectangle edges.
+     */
+    public static boolean intersect(long x0, long y0, long x1, long y1,
+                                    long minX, long minY, long maxX, long maxY,
+                                    SegmentHit hit) {
+        long dx = x1 - x0;
+        long dy = y1 - y0;
+        long tNear = Long.MIN_VALUE;
+        long tFar = Long.MAX_VALUE;
+        int nearEdge = -1;
+        int farEdge = -1;
+
+        if (dx == 0) {
+            if ((x0 < minX) || (x0 > maxX)) {
+                return false;
+            }
+        } else {
+            long tLeft = div(minX - x0, dx);
+            long tRight = div(maxX - x0, dx);
+            if (dx > 0) {
+                tNear = tLeft;
+                nearEdge = Rectangle.LEFT_EDGE;
+                tFar = tRight;
+                farEdge = Rectangle.RIGHT_EDGE;
+            } else {
+                tNear = tRight;
+                nearEdge = Rectangle.RIGHT_EDGE;
+                tFar = tLeft;
+                farEdge = Rectangle.LEFT_EDGE;
+            }
+        }
+
+        if (dy == 0) {
+            if ((y0 < minY) || (y0 > maxY)) {
+                return false;
+            }
+        } else {
+            long tUpper = div(minY - y0, dy);
+            long tLower = div(maxY - y0, dy);
+            long tNearY = dy > 0 ? tUpper : tLower;
+            long tFarY = dy > 0 ? tLower : tUpper;
+            if (tNearY > tNear) {
+                tNear = tNearY;
+                nearEdge = dy > 0 ? Rectangle.UPPER_EDGE : Rectangle.LOWER_EDGE;
+            }
+            if (tFarY < tFar) {
+                tFar = tFarY;
+                farEdge = dy > 0 ? Rectangle.LOWER_EDGE : Rectangle.UPPER_EDGE;
+            }
+        }
+
+        if ((tNear > tFar) || (tFar < 0)) {
+            return false;
+        }
+        if (tNear >= 0) {
+            if (tNear > ONE) {
+                return false;
+            }
+            setHit(hit, tNear, nearEdge, x0, y0, dx, dy, minX, minY, maxX,
+                    maxY);
+            return true;
+        }
+        if ((tFar > ONE) || (tFar == 0)) {
+            return false;
+        }
+        setHit(hit, tFar, farEdge, x0, y0, dx, dy, minX, minY, maxX, maxY);
+        return true;
+    }
+
+    /**
+     * Same as SlabTest.sweepCircle, in fixed point. The corners are entered
+     * by measuring along the unit direction of the segment rather than by
+     * solving the quadratic, which keeps every product within a long.
+     * @param x0 The segment start X.
+     * @param y0 The segment start Y.
+     * @param x1 The segment end X.
+     * @param y1 The segment end Y.
+     * @param radius The circle radius.
+     * @param minX The rectangle left X.
+     * @param minY The rectangle upper Y.
+     * @param maxX The rectangle right X.
+     * @param maxY The rectangle lower Y.
+     * @param hit The result, set only if the circle hits the rectangle, with
+     *            fixed point numbers as doubles.
+     * @return True if the circle hits the rectangle.
+     */
+    public static boolean sweepCircle(long x0, long y0, long x1, long y1,
+                                      long radius, long minX, long minY,
+                                      long maxX, long maxY, SegmentHit hit) {
+        // Most candidates are nowhere near the segment, and comparing their
+        // bounds with the bounds of the swept circle needs no division.
+        if ((Math.max(x0, x1) + radius < minX)
+                || (Math.min(x0, x1) - radius > maxX)
+                || (Math.max(y0, y1) + radius < minY)
+                || (Math.min(y0, y1) - radius > maxY)) {
+            return false;
+        }
+        if (radius <= 0) {
+            return intersect(x0, y0, x1, y1, minX, minY, maxX, maxY, hit);
+        }
+        long dx = x1 - x0;
+        long dy = y1 - y0;
+        long offX = x0 - clamp(x0, minX, maxX);
+        long offY = y0 - clamp(y0, minY, maxY);
+        long distSq = offX * offX + offY * offY;
+        long rSq = radius * radius;
+
+        if (distSq < rSq) {
+            if (distSq == 0) {
+                if (!intersect(x0, y0, x1, y1, minX - radius, minY - radius,
+                        maxX + radius, maxY + radius, hit)) {
+                    return false;
+                }
+                long t = raw(hit.getT());
+                setContact(hit, t, x0 + mul(t, dx), y0 + mul(t, dy), minX,
+                        minY, maxX, maxY);
+                return true;
+            }
+            if (offX * dx + offY * dy >= 0) {
+                return false;
+            }
+            setContact(hit, 0, x0, y0, minX, minY, maxX, maxY);
+            return true;
+        }
+
+        if (entry(x0, y0, dx, dy, minX - radius, minY - radius, maxX + radius,
+                maxY + radius) > ONE) {
+            return false;
+        }
+        long t = Math.min(
+                entry(x0, y0, dx, dy, minX - radius, minY, maxX + radius, maxY),
+                entry(x0, y0, dx, dy, minX, minY - radius, maxX, maxY + radius));
+        t = Math.min(t, circleEntry(x0, y0, dx, dy, minX, minY, rSq));
+        t = Math.min(t, circleEntry(x0, y0, dx, dy, maxX, minY, rSq));
+        t = Math.min(t, circleEntry(x0, y0, dx, dy, minX, maxY, rSq));
+        t = Math.min(t, circleEntry(x0, y0, dx, dy, maxX, maxY, rSq));
+        if (t > ONE) {
+            return false;
+        }
+        setContact(hit, t, x0 + mul(t, dx), y0 + mul(t, dy), minX, minY, maxX,
+                maxY);
+        return true;
+    }
+
+    /**
+     * Returns the parameter in [0, ONE] at which a segment that starts
+     * outside of a rectangle enters it, or NO_ENTRY if it does not. Moving
+     * along an edge is not entering.
+     * @param x0 The segment start X.
+     * @param y0 The segment start Y.
+     * @param dx The segment change in X.
+     * @param dy The segment change in Y.
+     * @param minX The rectangle left X.
+     * @param minY The rectangle upper Y.
+     * @param maxX The rectangle right X.
+     * @param maxY The rectangle lower Y.
+     * @return The entry parameter, or NO_ENTRY.
+     */
+    private static long entry(long x0, long y0, long dx, long dy, long minX,
+                              long minY, long maxX, long maxY) {
+        long tNear = 0;
+        long tFar = ONE;
+        if (dx == 0) {
+            if ((x0 <= minX) || (x0 >= maxX)) {
+                return NO_ENTRY;
+            }
+        } else {
+            long t1 = div(minX - x0, dx);
+            long t2 = div(maxX - x0, dx);
+            tNear = Math.max(tNear, Math.min(t1, t2));
+            tFar = Math.min(tFar, Math.max(t1, t2));
+        }
+        if (dy == 0) {
+            if ((y0 <= minY) || (y0 >= maxY)) {
+                return NO_ENTRY;
+            }
+        } else {
+            long t1 = div(minY - y0, dy);
+            long t2 = div(maxY - y0, dy);
+            tNear = Math.max(tNear, Math.min(t1, t2));
+            tFar = Math.min(tFar, Math.max(t1, t2));
+        }
+        if ((tNear > tFar) || (tFar == 0)) {
+            return NO_ENTRY;
+        }
+        return tNear;
+    }
+
+    /**
+     * Returns the parameter in [0, ONE] at which a segment that does not
+     * start inside a circle enters it, or NO_ENTRY if it does not. Touching
+     * the circle is not entering it.
+     * @param x0 The segment start X.
+     * @param y0 The segment start Y.
+     * @param dx The segment change in X.
+     * @param dy The segment change in Y.
+     * @param cx The circle center X.
+     * @param cy The circle center Y.
+     * @param rSq The squared circle radius.
+     * @return The entry parameter, or NO_ENTRY.
+     */
+    private static long circleEntry(long x0, long y0, long dx, long dy,
+                                    long cx, long cy, long rSq) {
+        long mx = x0 - cx;
+        long my = y0 - cy;
+        long dot = mx * dx + my * dy;
+        if (dot >= 0) {
+            return NO_ENTRY;
+        }
+        long length = sqrt(dx * dx + dy * dy);
+        if (length == 0) {
+            return NO_ENTRY;
+        }
+        // The distance from the start to the point of the line closest to
+        // the center, and from that point to the circle, along the segment.
+        long closest = -dot / length;
+        long halfChordSq = rSq - (mx * mx + my * my - closest * closest);
+        if (halfChordSq <= 0) {
+            return NO_ENTRY;
+        }
+        long t = Math.max(0, div(closest - sqrt(halfChordSq), length));
+        return t <= ONE ? t : NO_ENTRY;
+    }
+
+    /**
+     * Set the hit result of a circle whose center is at (px,py) when it
+     * touches the rectangle, like SlabTest does, without rounding.
+     * @param hit The result.
+     * @param t The segment parameter of the hit.
+     * @param px The circle center X.
+     * @param py The circle center Y.
+     * @param minX The rectangle left X.
+     * @param minY The rectangle upper Y.
+     * @param maxX The rectangle right X.
+     * @param maxY The rectangle lower Y.
+     */
+    private static void setContact(SegmentHit hit, long t, long px, long py,
+                                   long minX, long minY, long maxX,
+                                   long maxY) {
+        long outX = px < minX ? px - minX : (px > maxX ? px - maxX : 0);
+        long outY = py < minY ? py - minY : (py > maxY ? py - maxY : 0);
+        if ((outX == 0) && (outY == 0)) {
+            long toLeft = px - minX;
+            long toRight = maxX - px;
+            long toUpper = py - minY;
+            long toLower = maxY - py;
+            if (Math.min(toLeft, toRight) <= Math.min(toUpper, toLower)) {
+                outX = toLeft <= toRight ? -1 : 1;
+            } else {
+                outY = toUpper <= toLower ? -1 : 1;
+            }
+        }
+        long x;
+        long y;
+        int edge;
+        if ((outX != 0) && (outY != 0)) {
+            x = outX < 0 ? minX : maxX;
+            y = outY < 0 ? minY : maxY;
+            if (Math.abs(outX) >= Math.abs(outY)) {
+                edge = outX < 0 ? Rectangle.LEFT_EDGE : Rectangle.RIGHT_EDGE;
+            } else {
+                edge = outY < 0 ? Rectangle.UPPER_EDGE : Rectangle.LOWER_EDGE;
+            }
+        } else if (outX != 0) {
+            x = outX < 0 ? minX : maxX;
+            y = clamp(py, minY, maxY);
+            edge = outX < 0 ? Rectangle.LEFT_EDGE : Rectangle.RIGHT_EDGE;
+        } else {
+            x = clamp(px, minX, maxX);
+            y = outY < 0 ? minY : maxY;
+            edge = outY < 0 ? Rectangle.UPPER_EDGE : Rectangle.LOWER_EDGE;
+        }
+        hit.set(toDouble(t), edge, toDouble(x), toDouble(y));
+    }
+
+    /**
+     * Set the hit result, placing the hit point exactly on the hit edge.
+     * @param hit The result.
+     * @param t The segment parameter of the hit.
+     * @param edge The hit edge.
+     * @param x0 The segment start X.
+     * @param y0 The segment start Y.
+     * @param dx The segment change in X.
+     * @param dy The segment change in Y.
+     * @param minX The rectangle left X.
+     * @param minY The rectangle upper Y.
+     * @param maxX The rectangle right X.
+     * @param maxY The rectangle lower Y.
+     */
+    private static void setHit(SegmentHit hit, long t, int edge, long x0,
+                               long y0, long dx, long dy, long minX, long minY,
+                               long maxX, long maxY) {
+        long x;
+        long y;
+        if ((edge == Rectangle.LEFT_EDGE) || (edge == Rectangle.RIGHT_EDGE)) {
+            x = edge == Rectangle.LEFT_EDGE ? minX : maxX;
+            y = clamp(y0 + mul(t, dy), minY, maxY);
+        } else {
+            x = clamp(x0 + mul(t, dx), minX, maxX);
+            y = edge == Rectangle.UPPER_EDGE ? minY : maxY;
+        }
+        hit.set(toDouble(t), edge, toDouble(x), toDouble(y));
+    }
+
+    /**
+     * Clamp a number into a range.
+     * @param num The number.
+     * @param min The range minimum.
+     * @param max The range maximum.
+     * @return The clamped number.
+     */
+    private static long clamp(long num, long min, long max) {
+        return Math.max(min, Math.min(max, num));
+    }
+}
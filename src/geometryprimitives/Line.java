@@ -1,8 +1,5 @@
 package geometryprimitives;
 
-import java.util.List;
-
-
 /**
  * Represents a line segment in the plain.
  */
@@ -302,21 +299,13 @@ public class Line {
      * if such is non existent.
      */
     public Point closestIntersectionToStartOfLine(Rectangle rect) {
-        List<Point> intersections = rect.intersectionPoints(this);
+        SegmentHit hit = new SegmentHit();
 
-        if (intersections.isEmpty()) {
-            return null;
-        } else if (intersections.size() == 1) {
-            return (Point) intersections.get(0);
-        } else {
-             double distance0 = this.start.distance((Point) intersections.get(0));
-             double distance1 = this.start.distance((Point) intersections.get(1));
-             if (distance0 > distance1) {
-                 return (Point) intersections.get(1);
-             }
-             return (Point) intersections.get(0);
+        if (rect.intersectSegment(this.start.getX(), this.start.getY(),
+                this.end.getX(), this.end.getY(), hit)) {
+            return hit.toPoint();
         }
-
+        return null;
     }
 
 }
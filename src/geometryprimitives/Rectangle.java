@@ -77,13 +77,131 @@ public class Rectangle {
         List<Point> list = new ArrayList<Point>();
 
         for (int i = 0; i < this.NUM_RECT_EDGES; i++) {
-            if (line.isIntersecting(this.edges[i])) {
-                list.add(line.intersectionWith(this.edges[i]));
+            Point intersection = line.intersectionWith(this.edges[i]);
+            if (intersection != null) {
+                list.add(intersection);
             }
         }
         return list;
     }
 
+    /**
+     * Intersect the segment (x0,y0)-(x1,y1) with the rectangle, without
+     * allocating. See SlabTest.intersect.
+     * @param x0 The segment start X.
+     * @param y0 The segment start Y.
+     * @param x1 The segment end X.
+     * @param y1 The segment end Y.
+     * @param hit The result, set only if the segment hits the rectangle.
+     * @return True if the segment hits one of the rectangle edges.
+     */
+    public boolean intersectSegment(double x0, double y0, double x1,
+                                    double y1, SegmentHit hit) {
+        return SlabTest.intersect(x0, y0, x1, y1, this.getMinX(),
+                this.getMinY(), this.getMaxX(), this.getMaxY(), hit);
+    }
+
+    /**
+     * Intersect a circle of the given radius, whose center moves along the
+     * segment (x0,y0)-(x1,y1), with the rectangle, without allocating. See
+     * SlabTest.sweepCircle.
+     * @param x0 The segment start X.
+     * @param y0 The segment start Y.
+     * @param x1 The segment end X.
+     * @param y1 The segment end Y.
+     * @param radius The circle radius.
+     * @param hit The result, set only if the circle hits the rectangle.
+     * @return True if the circle hits the rectangle.
+     */
+    public boolean sweepCircle(double x0, double y0, double x1, double y1,
+                               double radius, SegmentHit hit) {
+        return SlabTest.sweepCircle(x0, y0, x1, y1, radius, this.getMinX(),
+                this.getMinY(), this.getMaxX(), this.getMaxY(), hit);
+    }
+
+    /**
+     * Same as sweepCircle, in fixed point (see FixedPoint.sweepCircle). The
+     * bounds of the rectangle are moved to the closest fixed point numbers
+     * for the test, and a hit point on a moved bound is put back on the
+     * bound itself, so isCorner and isOnEdge see it exactly.
+     * @param x0 The segment start X, in fixed point.
+     * @param y0 The segment start Y, in fixed point.
+     * @param x1 The segment end X, in fixed point.
+     * @param y1 The segment end Y, in fixed point.
+     * @param radius The circle radius, in fixed point.
+     * @param hit The result, set only if the circle hits the rectangle.
+     * @return True if the circle hits the rectangle.
+     */
+    public boolean sweepCircleFixed(long x0, long y0, long x1, long y1,
+                                    long radius, SegmentHit hit) {
+        long minX = FixedPoint.fromDouble(this.getMinX());
+        long minY = FixedPoint.fromDouble(this.getMinY());
+        long maxX = FixedPoint.fromDouble(this.getMaxX());
+        long maxY = FixedPoint.fromDouble(this.getMaxY());
+        if (!FixedPoint.sweepCircle(x0, y0, x1, y1, radius, minX, minY, maxX,
+                maxY, hit)) {
+            return false;
+        }
+        hit.set(hit.getT(), hit.getEdge(),
+                toBound(hit.getX(), minX, this.getMinX(), maxX, this.getMaxX()),
+                toBound(hit.getY(), minY, this.getMinY(), maxY, this.getMaxY()));
+        return true;
+    }
+
+    /**
+     * Put a fixed point coordinate that lies on a bound moved to fixed point
+     * back on the bound.
+     * @param coordinate The coordinate.
+     * @param fixedMin The lower bound, in fixed point.
+     * @param min The lower bound.
+     * @param fixedMax The upper bound, in fixed point.
+     * @param max The upper bound.
+     * @return The coordinate.
+     */
+    private static double toBound(double coordinate, long fixedMin, double min,
+                                  long fixedMax, double max) {
+        long raw = FixedPoint.raw(coordinate);
+        if (raw == fixedMin) {
+            return min;
+        }
+        if (raw == fixedMax) {
+            return max;
+        }
+        return coordinate;
+    }
+
+    /**
+     * Returns the X coordinate of the left edge.
+     * @return The X coordinate of the left edge.
+     */
+    public double getMinX() {
+        return this.upperLeft.getX();
+    }
+
+    /**
+     * Returns the Y coordinate of the upper edge.
+     * @return The Y coordinate of the upper edge.
+     */
+    public double getMinY() {
+        return this.upperLeft.getY();
+    }
+
+    /**
+     * Returns the X coordinate of the right edge.
+     * @return The X coordinate of the right edge.
+     */
+    public double getMaxX() {
+        return this.upperLeft.getX() + this.width;
+    }
+
+    /**
+     * Returns the Y coordinate of the lower edge.
+     * @return The Y coordinate of the lower edge.
+     */
+    public double getMaxY() {
+        return this.upperLeft.getY() + this.height;
+    }
+
     /**
      * Returns the rectangle's width.
      * @return The rectangle's width
@@ -177,12 +295,59 @@ public class Rectangle {
      * @return True if the given point is on the corner of the rectangle.
      */
     public boolean isPointOnCorner(Point p) {
-        if ((p.equals(this.getUpperLeft())) || (p.equals(this.getUpperRight()))
-                || (p.equals(this.getLowerLeft()))
-                || (p.equals(this.getLowerRight()))) {
-            return true;
+        return this.isCorner(p.getX(), p.getY());
+    }
+
+    /**
+     * Returns true if (x,y) is exactly one of the corners of the rectangle.
+     * @param x The X coordinate.
+     * @param y The Y coordinate.
+     * @return True if (x,y) is a corner of the rectangle.
+     */
+    public boolean isCorner(double x, double y) {
+        return ((x == this.getMinX()) || (x == this.getMaxX()))
+                && ((y == this.getMinY()) || (y == this.getMaxY()));
+    }
+
+    /**
+     * Returns true if (x,y) is exactly on the given edge of the rectangle,
+     * ends included.
+     * @param edge One of UPPER_EDGE, LOWER_EDGE, LEFT_EDGE and RIGHT_EDGE.
+     * @param x The X coordinate.
+     * @param y The Y coordinate.
+     * @return True if (x,y) is on the edge.
+     */
+    public boolean isOnEdge(int edge, double x, double y) {
+        switch (edge) {
+            case UPPER_EDGE:
+                return (y == this.getMinY()) && this.isInXRange(x);
+            case LOWER_EDGE:
+                return (y == this.getMaxY()) && this.isInXRange(x);
+            case LEFT_EDGE:
+                return (x == this.getMinX()) && this.isInYRange(y);
+            case RIGHT_EDGE:
+                return (x == this.getMaxX()) && this.isInYRange(y);
+            default:
+                return false;
         }
-        return false;
+    }
+
+    /**
+     * Returns true if the X coordinate is between the left and right edges.
+     * @param x The X coordinate.
+     * @return True if x is in the rectangle's X range.
+     */
+    private boolean isInXRange(double x) {
+        return (this.getMinX() <= x) && (x <= this.getMaxX());
+    }
+
+    /**
+     * Returns true if the Y coordinate is between the upper and lower edges.
+     * @param y The Y coordinate.
+     * @return True if y is in the rectangle's Y range.
+     */
+    private boolean isInYRange(double y) {
+        return (this.getMinY() <= y) && (y <= this.getMaxY());
     }
 
     /**
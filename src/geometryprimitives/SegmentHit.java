@@ -0,0 +1,70 @@
+package geometryprimitives;
+
+/**
+ * Represents the result of a segment and rectangle intersection test. The
+ * result is kept in primitive fields so that a single instance can be
+ * reused for many tests without allocating.
+ */
+public class SegmentHit {
+
+    private double t;
+    private int edge;
+    private double x;
+    private double y;
+
+    /**
+     * Set the result of a test.
+     * @param param The segment parameter of the hit.
+     * @param hitEdge The rectangle edge that was hit.
+     * @param hitX The X coordinate of the hit point.
+     * @param hitY The Y coordinate of the hit point.
+     */
+    void set(double param, int hitEdge, double hitX, double hitY) {
+        this.t = param;
+        this.edge = hitEdge;
+        this.x = hitX;
+        this.y = hitY;
+    }
+
+    /**
+     * Returns the segment parameter of the hit, between 0 (the start of the
+     * segment) and 1 (its end).
+     * @return The segment parameter of the hit.
+     */
+    public double getT() {
+        return this.t;
+    }
+
+    /**
+     * Returns the rectangle edge that was hit, one of Rectangle.UPPER_EDGE,
+     * LOWER_EDGE, LEFT_EDGE and RIGHT_EDGE.
+     * @return The rectangle edge that was hit.
+     */
+    public int getEdge() {
+        return this.edge;
+    }
+
+    /**
+     * Returns the X coordinate of the hit point.
+     * @return The X coordinate of the hit point.
+     */
+    public double getX() {
+        return this.x;
+    }
+
+    /**
+     * Returns the Y coordinate of the hit point.
+     * @return The Y coordinate of the hit point.
+     */
+    public double getY() {
+        return this.y;
+    }
+
+    /**
+     * Returns a new point at the hit location.
+     * @return The hit point.
+     */
+    public Point toPoint() {
+        return new Point(this.x, this.y);
+    }
+}
@@ -0,0 +1,416 @@
+package geometryprimitives;
+
+/**
+ * Intersection of a line segment with an axis aligned rectangle, computed
+ * with the slab method on primitives only.
+ */
+public final class SlabTest {
+
+    // Hit points are rounded to two decimals, like Line intersections.
+    private static final double ROUNDING = 100;
+    private static final double HUGE_INVERSE = 1e300;
+
+    /**
+     * Not instantiable.
+     */
+    private SlabTest() {
+    }
+
+    /**
+     * Intersect the segment (x0,y0)-(x1,y1) with the rectangle bounded by
+     * minX, minY, maxX and maxY. If the segment starts outside of the
+     * rectangle, the hit is where it enters it. If it starts inside, the hit
+     * is where it leaves it (the first edge it crosses). A segment that
+     * starts on an edge and moves away from the rectangle does not hit it.
+     * The coordinate along the hit edge is rounded to two decimals, and the
+     * other coordinate is exactly the edge, so the hit point is always on
+     * the hit edge.
+     * @param x0 The segment start X.
+     * @param y0 The segment start Y.
+     * @param x1 The segment end X.
+     * @param y1 The segment end Y.
+     * @param minX The rectangle left X.
+     * @param minY The rectangle upper Y.
+     * @param maxX The rectangle right X.
+     * @param maxY The rectangle lower Y.
+     * @param hit The result, set only if the segment hits the rectangle.
+     * @return True if the segment hits one of the rectangle edges.
+     */
+    public static boolean intersect(double x0, double y0, double x1,
+                                    double y1, double minX, double minY,
+                                    double maxX, double maxY, SegmentHit hit) {
+        double dx = x1 - x0;
+        double dy = y1 - y0;
+        double tNear = Double.NEGATIVE_INFINITY;
+        double tFar = Double.POSITIVE_INFINITY;
+        int nearEdge = -1;
+        int farEdge = -1;
+
+        if (dx == 0) {
+            if ((x0 < minX) || (x0 > maxX)) {
+                return false;
+            }
+        } else {
+            double tLeft = (minX - x0) / dx;
+            double tRight = (maxX - x0) / dx;
+            if (dx > 0) {
+                tNear = tLeft;
+                nearEdge = Rectangle.LEFT_EDGE;
+                tFar = tRight;
+                farEdge = Rectangle.RIGHT_EDGE;
+            } else {
+                tNear = tRight;
+                nearEdge = Rectangle.RIGHT_EDGE;
+                tFar = tLeft;
+                farEdge = Rectangle.LEFT_EDGE;
+            }
+        }
+
+        if (dy == 0) {
+            if ((y0 < minY) || (y0 > maxY)) {
+                return false;
+            }
+        } else {
+            double tUpper = (minY - y0) / dy;
+            double tLower = (maxY - y0) / dy;
+            double tNearY = dy > 0 ? tUpper : tLower;
+            double tFarY = dy > 0 ? tLower : tUpper;
+            if (tNearY > tNear) {
+                tNear = tNearY;
+                nearEdge = dy > 0 ? Rectangle.UPPER_EDGE : Rectangle.LOWER_EDGE;
+            }
+            if (tFarY < tFar) {
+                tFar = tFarY;
+                farEdge = dy > 0 ? Rectangle.LOWER_EDGE : Rectangle.UPPER_EDGE;
+            }
+        }
+
+        if ((tNear > tFar) || (tFar < 0)) {
+            return false;
+        }
+        if (tNear >= 0) {
+            if (tNear > 1) {
+                return false;
+            }
+            setHit(hit, tNear, nearEdge, x0, y0, dx, dy, minX, minY, maxX,
+                    maxY);
+            return true;
+        }
+        if ((tFar > 1) || (tFar == 0)) {
+            return false;
+        }
+        setHit(hit, tFar, farEdge, x0, y0, dx, dy, minX, minY, maxX, maxY);
+        return true;
+    }
+
+    /**
+     * Intersect a circle of the given radius, whose center moves along the
+     * segment (x0,y0)-(x1,y1), with the rectangle bounded by minX, minY, maxX
+     * and maxY. This is the same as intersecting the segment with the
+     * rectangle expanded by the radius, with rounded corners.
+     * The hit parameter is where the circle first touches the rectangle, and
+     * the hit point is the touching point on the rectangle: on the hit edge
+     * like in intersect, or exactly on a corner when the circle touches one.
+     * A circle that already overlaps the rectangle hits it at once if it
+     * moves towards it, and does not hit it if it moves away. A circle whose
+     * center is inside the rectangle hits it where it leaves the expanded
+     * rectangle, like a segment that starts inside a rectangle.
+     * @param x0 The segment start X.
+     * @param y0 The segment start Y.
+     * @param x1 The segment end X.
+     * @param y1 The segment end Y.
+     * @param radius The circle radius.
+     * @param minX The rectangle left X.
+     * @param minY The rectangle upper Y.
+     * @param maxX The rectangle right X.
+     * @param maxY The rectangle lower Y.
+     * @param hit The result, set only if the circle hits the rectangle.
+     * @return True if the circle hits the rectangle.
+     */
+    public static boolean sweepCircle(double x0, double y0, double x1,
+                                      double y1, double radius, double minX,
+                                      double minY, double maxX, double maxY,
+                                      SegmentHit hit) {
+        if (radius <= 0) {
+            return intersect(x0, y0, x1, y1, minX, minY, maxX, maxY, hit);
+        }
+        double dx = x1 - x0;
+        double dy = y1 - y0;
+        double offX = x0 - clamp(x0, minX, maxX);
+        double offY = y0 - clamp(y0, minY, maxY);
+        double distSq = offX * offX + offY * offY;
+        double rSq = radius * radius;
+
+        if (distSq < rSq) {
+            if (distSq == 0) {
+                if (!intersect(x0, y0, x1, y1, minX - radius, minY - radius,
+                        maxX + radius, maxY + radius, hit)) {
+                    return false;
+                }
+                double t = hit.getT();
+                setContact(hit, t, x0 + t * dx, y0 + t * dy, minX, minY, maxX,
+                        maxY);
+                return true;
+            }
+            if (offX * dx + offY * dy >= 0) {
+                return false;
+            }
+            setContact(hit, 0, x0, y0, minX, minY, maxX, maxY);
+            return true;
+        }
+
+        if (entry(x0, y0, dx, dy, minX - radius, minY - radius, maxX + radius,
+                maxY + radius) > 1) {
+            return false;
+        }
+        double t = Math.min(
+                entry(x0, y0, dx, dy, minX - radius, minY, maxX + radius, maxY),
+                entry(x0, y0, dx, dy, minX, minY - radius, maxX, maxY + radius));
+        t = Math.min(t, circleEntry(x0, y0, dx, dy, minX, minY, rSq));
+        t = Math.min(t, circleEntry(x0, y0, dx, dy, maxX, minY, rSq));
+        t = Math.min(t, circleEntry(x0, y0, dx, dy, minX, maxY, rSq));
+        t = Math.min(t, circleEntry(x0, y0, dx, dy, maxX, maxY, rSq));
+        if (t > 1) {
+            return false;
+        }
+        setContact(hit, t, x0 + t * dx, y0 + t * dy, minX, minY, maxX, maxY);
+        return true;
+    }
+
+    /**
+     * Test the segment (x0,y0)-(x1,y1) against many rectangles at once. The
+     * rectangles are given as packed columns of their bounds, and each is
+     * expanded by the given radius. For every rectangle, the parameters at
+     * which the line of the segment enters and leaves it are written to near
+     * and far. The segment touches rectangle i if near[i] <= far[i],
+     * far[i] >= 0 and near[i] <= 1.
+     * The loop reads the columns in order and has no branches, only
+     * arithmetic, min and max, so the JIT compiles it to SIMD instructions.
+     * It is meant to drop most of the candidates before the exact test: it
+     * never misses a rectangle the segment hits, and treats a segment that
+     * runs exactly along an edge as touching it.
+     * @param x0 The segment start X.
+     * @param y0 The segment start Y.
+     * @param x1 The segment end X.
+     * @param y1 The segment end Y.
+     * @param radius The amount the rectangles are expanded by.
+     * @param minX The rectangles left X.
+     * @param minY The rectangles upper Y.
+     * @param maxX The rectangles right X.
+     * @param maxY The rectangles lower Y.
+     * @param count The number of rectangles.
+     * @param near The entry parameters.
+     * @param far The exit parameters.
+     */
+    public static void entryBatch(double x0, double y0, double x1, double y1,
+                                  double radius, double[] minX, double[] minY,
+                                  double[] maxX, double[] maxY, int count,
+                                  double[] near, double[] far) {
+        double invDx = inverse(x1 - x0);
+        double invDy = inverse(y1 - y0);
+        // Expanding the bounds is the same as moving the start away from
+        // them, which keeps the loop to one subtraction per bound.
+        double x0ToMin = x0 + radius;
+        double x0ToMax = x0 - radius;
+        double y0ToMin = y0 + radius;
+        double y0ToMax = y0 - radius;
+        for (int i = 0; i < count; i++) {
+            double t1 = (minX[i] - x0ToMin) * invDx;
+            double t2 = (maxX[i] - x0ToMax) * invDx;
+            double t3 = (minY[i] - y0ToMin) * invDy;
+            double t4 = (maxY[i] - y0ToMax) * invDy;
+            near[i] = Math.max(Math.min(t1, t2), Math.min(t3, t4));
+            far[i] = Math.min(Math.max(t1, t2), Math.max(t3, t4));
+        }
+    }
+
+    /**
+     * Returns 1 / d, or a huge finite number if d is 0. Unlike infinity, it
+     * gives 0 rather than NaN when multiplied by 0, so a segment that runs
+     * along a bound is seen as touching it, and no NaN reaches min and max.
+     * @param d The number.
+     * @return Its inverse.
+     */
+    private static double inverse(double d) {
+        return d == 0 ? HUGE_INVERSE : 1 / d;
+    }
+
+    /**
+     * Returns the parameter in [0, 1] at which a segment that starts outside
+     * of a rectangle enters it, or infinity if it does not. Moving along an
+     * edge is not entering.
+     * @param x0 The segment start X.
+     * @param y0 The segment start Y.
+     * @param dx The segment change in X.
+     * @param dy The segment change in Y.
+     * @param minX The rectangle left X.
+     * @param minY The rectangle upper Y.
+     * @param maxX The rectangle right X.
+     * @param maxY The rectangle lower Y.
+     * @return The entry parameter, or infinity.
+     */
+    private static double entry(double x0, double y0, double dx, double dy,
+                                double minX, double minY, double maxX,
+                                double maxY) {
+        double tNear = 0;
+        double tFar = 1;
+        if (dx == 0) {
+            if ((x0 <= minX) || (x0 >= maxX)) {
+                return Double.POSITIVE_INFINITY;
+            }
+        } else {
+            double t1 = (minX - x0) / dx;
+            double t2 = (maxX - x0) / dx;
+            tNear = Math.max(tNear, Math.min(t1, t2));
+            tFar = Math.min(tFar, Math.max(t1, t2));
+        }
+        if (dy == 0) {
+            if ((y0 <= minY) || (y0 >= maxY)) {
+                return Double.POSITIVE_INFINITY;
+            }
+        } else {
+            double t1 = (minY - y0) / dy;
+            double t2 = (maxY - y0) / dy;
+            tNear = Math.max(tNear, Math.min(t1, t2));
+            tFar = Math.min(tFar, Math.max(t1, t2));
+        }
+        if ((tNear > tFar) || (tFar == 0)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return tNear;
+    }
+
+    /**
+     * Returns the parameter in [0, 1] at which a segment that does not start
+     * inside a circle enters it, or infinity if it does not. Touching the
+     * circle is not entering it.
+     * @param x0 The segment start X.
+     * @param y0 The segment start Y.
+     * @param dx The segment change in X.
+     * @param dy The segment change in Y.
+     * @param cx The circle center X.
+     * @param cy The circle center Y.
+     * @param rSq The squared circle radius.
+     * @return The entry parameter, or infinity.
+     */
+    private static double circleEntry(double x0, double y0, double dx,
+                                      double dy, double cx, double cy,
+                                      double rSq) {
+        double mx = x0 - cx;
+        double my = y0 - cy;
+        double b = mx * dx + my * dy;
+        if (b >= 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double a = dx * dx + dy * dy;
+        double c = mx * mx + my * my - rSq;
+        double disc = b * b - a * c;
+        if (disc <= 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double t = Math.max(0, (-b - Math.sqrt(disc)) / a);
+        return t <= 1 ? t : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Set the hit result of a circle whose center is at (px,py) when it
+     * touches the rectangle. The hit point is the point of the rectangle
+     * closest to the center: a corner, or a point on the hit edge rounded to
+     * two decimals along it.
+     * @param hit The result.
+     * @param t The segment parameter of the hit.
+     * @param px The circle center X.
+     * @param py The circle center Y.
+     * @param minX The rectangle left X.
+     * @param minY The rectangle upper Y.
+     * @param maxX The rectangle right X.
+     * @param maxY The rectangle lower Y.
+     */
+    private static void setContact(SegmentHit hit, double t, double px,
+                                   double py, double minX, double minY,
+                                   double maxX, double maxY) {
+        double outX = px < minX ? px - minX : (px > maxX ? px - maxX : 0);
+        double outY = py < minY ? py - minY : (py > maxY ? py - maxY : 0);
+        if ((outX == 0) && (outY == 0)) {
+            double toLeft = px - minX;
+            double toRight = maxX - px;
+            double toUpper = py - minY;
+            double toLower = maxY - py;
+            if (Math.min(toLeft, toRight) <= Math.min(toUpper, toLower)) {
+                outX = toLeft <= toRight ? -1 : 1;
+            } else {
+                outY = toUpper <= toLower ? -1 : 1;
+            }
+        }
+        double x;
+        double y;
+        int edge;
+        if ((outX != 0) && (outY != 0)) {
+            x = outX < 0 ? minX : maxX;
+            y = outY < 0 ? minY : maxY;
+            if (Math.abs(outX) >= Math.abs(outY)) {
+                edge = outX < 0 ? Rectangle.LEFT_EDGE : Rectangle.RIGHT_EDGE;
+            } else {
+                edge = outY < 0 ? Rectangle.UPPER_EDGE : Rectangle.LOWER_EDGE;
+            }
+        } else if (outX != 0) {
+            x = outX < 0 ? minX : maxX;
+            y = clamp(round(py), minY, maxY);
+            edge = outX < 0 ? Rectangle.LEFT_EDGE : Rectangle.RIGHT_EDGE;
+        } else {
+            x = clamp(round(px), minX, maxX);
+            y = outY < 0 ? minY : maxY;
+            edge = outY < 0 ? Rectangle.UPPER_EDGE : Rectangle.LOWER_EDGE;
+        }
+        hit.set(t, edge, x, y);
+    }
+
+    /**
+     * Set the hit result, placing the hit point exactly on the hit edge.
+     * @param hit The result.
+     * @param t The segment parameter of the hit.
+     * @param edge The hit edge.
+     * @param x0 The segment start X.
+     * @param y0 The segment start Y.
+     * @param dx The segment change in X.
+     * @param dy The segment change in Y.
+     * @param minX The rectangle left X.
+     * @param minY The rectangle upper Y.
+     * @param maxX The rectangle right X.
+     * @param maxY The rectangle lower Y.
+     */
+    private static void setHit(SegmentHit hit, double t, int edge, double x0,
+                               double y0, double dx, double dy, double minX,
+                               double minY, double maxX, double maxY) {
+        double x;
+        double y;
+        if ((edge == Rectangle.LEFT_EDGE) || (edge == Rectangle.RIGHT_EDGE)) {
+            x = edge == Rectangle.LEFT_EDGE ? minX : maxX;
+            y = clamp(round(y0 + t * dy), minY, maxY);
+        } else {
+            x = clamp(round(x0 + t * dx), minX, maxX);
+            y = edge == Rectangle.UPPER_EDGE ? minY : maxY;
+        }
+        hit.set(t, edge, x, y);
+    }
+
+    /**
+     * Round to two decimals.
+     * @param num The number.
+     * @return The rounded number.
+     */
+    private static double round(double num) {
+        return Math.round(num * ROUNDING) / ROUNDING;
+    }
+
+    /**
+     * Clamp a number into a range.
+     * @param num The number.
+     * @param min The range minimum.
+     * @param max The range maximum.
+     * @return The clamped number.
+     */
+    private static double clamp(double num, double min, double max) {
+        return Math.max(min, Math.min(max, num));
+    }
+}
@@ -1,11 +1,17 @@
 package io;
 
+import java.awt.image.BufferedImage;
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Represents a block definitions reader.
@@ -22,6 +28,7 @@ public class BlocksDefinitionReader {
     private static final String HIT_POINTS = "hit_points";
     private static final String FILL = "fill";
     private static final String FILL_1 = "fill-1";
+    private static final String FILL_K = "fill-";
     private static final String STROKE = "stroke";
     private static final String KEY_VAL_DELIMITER = ":";
     private static final String FIELD_DELIMITER = " ";
@@ -53,6 +60,7 @@ public class BlocksDefinitionReader {
         Map<String, BlockCreator> blockCreators = new HashMap<>();
         Map<String, Integer> spacerWidths = new HashMap<>();
         Map<String, String> defaultValues = new HashMap<>();
+        List<Map<String, String>> blockDefinitions = new ArrayList<>();
 
         try {
             while ((strLine = bReader.readLine()) != null) {
@@ -68,7 +76,7 @@ public class BlocksDefinitionReader {
 
                     validateBlockDefinitions(blockDefs);
 
-                    addBlockCreator(blockCreators, blockDefs);
+                    blockDefinitions.add(blockDefs);
 
                 } else if (strLine.startsWith(SPACER_DEFINITIONS)) {
                     Map<String, String> spacerDefs = new HashMap<>();
@@ -82,6 +90,15 @@ public class BlocksDefinitionReader {
             e.printStackTrace();
         }
 
+        preloadImages(blockDefinitions);
+        List<ParsedBlockCreator> creators = new ArrayList<>();
+        for (Map<String, String> blockDefs : blockDefinitions) {
+            creators.add(addBlockCreator(blockCreators, blockDefs));
+        }
+        if (TextureAtlas.isEnabledByDefault()) {
+            packFills(creators);
+        }
+
         BlocksFromSymbolsFactory blocksFactory = new BlocksFromSymbolsFactory(blockCreators, spacerWidths);
         return blocksFactory;
     }
@@ -101,12 +118,69 @@ public class BlocksDefinitionReader {
      * Add block creators.
      * @param blockCreators The block creators.
      * @param blockDefs The block definitions.
+     * @return The new block creator.
      */
-    private static void addBlockCreator(Map<String, BlockCreator> blockCreators, Map<String, String> blockDefs) {
+    private static ParsedBlockCreator addBlockCreator(Map<String, BlockCreator> blockCreators,
+                                                      Map<String, String> blockDefs) {
         String blockSymbol = blockDefs.get(SYMBOL);
-        BlockCreator creator = new ParsedBlockCreator(blockDefs);
+        ParsedBlockCreator creator = new ParsedBlockCreator(blockDefs);
 
         blockCreators.put(blockSymbol, creator);
+        return creator;
+    }
+
+    /**
+     * Decode the images of every image fill of the blocks in parallel, into
+     * the shared image cache, so creating the blocks finds them decoded.
+     * Images that cannot be read are reported when their fills are created.
+     * @param blockDefinitions The block definitions.
+     */
+    private static void preloadImages(List<Map<String, String>> blockDefinitions) {
+        Set<String> imageFileNames = new LinkedHashSet<>();
+        for (Map<String, String> blockDefs : blockDefinitions) {
+            for (Map.Entry<String, String> entry : blockDefs.entrySet()) {
+                if (entry.getKey().equals(FILL) || entry.getKey().startsWith(FILL_K)) {
+                    String imageFileName = FillParser.imageFileName(entry.getValue());
+                    if (imageFileName != null) {
+                        imageFileNames.add(imageFileName);
+                    }
+                }
+            }
+        }
+        if (imageFileNames.size() < 2) {
+            return;
+        }
+        List<Callable<Void>> loads = new ArrayList<>();
+        for (String imageFileName : imageFileNames) {
+            loads.add(() -> {
+                try {
+                    ImageCache.getShared().load(imageFileName);
+                } catch (IOException | IllegalArgumentException e) {
+                    // Reported again when the fill of the image is created.
+                }
+                return null;
+            });
+        }
+        ForkJoinPool.commonPool().invokeAll(loads);
+    }
+
+    /**
+     * Pack the image fills of all of the blocks into a single atlas, and draw
+     * them from it.
+     * @param creators The block creators.
+     */
+    private static void packFills(List<ParsedBlockCreator> creators) {
+        List<BufferedImage> images = new ArrayList<>();
+        for (ParsedBlockCreator creator : creators) {
+            images.addAll(creator.getFillImages());
+        }
+        if (images.isEmpty()) {
+            return;
+        }
+        TextureAtlas atlas = TextureAtlas.getShared(images);
+        for (ParsedBlockCreator creator : creators) {
+            creator.useAtlas(atlas);
+        }
     }
 
     /**
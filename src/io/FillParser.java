@@ -24,15 +24,25 @@ public class FillParser {
             Color color = parser.colorFromString(fillPattern);
             fill = new Fill(color);
         } else if (fillPattern.startsWith(IMAGE_FILL)) {
-            String fileNamePattern = fillPattern.split(IMAGE_FILL, 2)[1];
-            String imageFileName = fileNamePattern.substring(1, fileNamePattern.length() - 1);
-
-            fill = new Fill(imageFileName);
+            fill = new Fill(imageFileName(fillPattern));
         }
 
         return fill;
     }
 
+    /**
+     * Returns the image file name of an image fill pattern.
+     * @param fillPattern The fill pattern.
+     * @return The image file name, or null if the fill is not an image.
+     */
+    public static String imageFileName(String fillPattern) {
+        if (!fillPattern.startsWith(IMAGE_FILL)) {
+            return null;
+        }
+        String fileNamePattern = fillPattern.split(IMAGE_FILL, 2)[1];
+        return fileNamePattern.substring(1, fileNamePattern.length() - 1);
+    }
+
 
 
 }
@@ -0,0 +1,24 @@
+package io;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Represents where captured frames of the game are written.
+ */
+public interface FrameWriter {
+    /**
+     * Write a frame.
+     * @param frame The frame, an image of integer RGB pixels.
+     * @param index The number of the frame since the capture started.
+     *              Frames that were dropped leave gaps in the numbers.
+     * @throws IOException If the frame could not be written.
+     */
+    void write(BufferedImage frame, long index) throws IOException;
+
+    /**
+     * Finish writing, and release the files written to.
+     * @throws IOException If the frames could not be finished.
+     */
+    void close() throws IOException;
+}
@@ -0,0 +1,293 @@
+package io;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Represents a cache of decoded images, keyed by the path of their resource,
+ * so an image used by many fills and levels is decoded only once.
+ * Images are held by soft references, so the garbage collector may still
+ * reclaim them when memory runs low, and the cache drops the least recently
+ * used images once the images it holds take more memory than its capacity.
+ * Images are shared between everything that loads them, and must not be
+ * drawn into.
+ * The cache may be used by many threads at once. An image is decoded outside
+ * of the lock of the cache, so different images may be decoded in parallel.
+ */
+public class ImageCache {
+
+    // Run with -Darkanoid.imagecachemb=0 to decode an image every time it is
+    // loaded.
+    public static final String CAPACITY_PROPERTY = "arkanoid.imagecachemb";
+    public static final long DEF_CAPACITY_MB = 64;
+
+    private static final long BYTES_PER_MB = 1024 * 1024;
+    private static final int BITS_PER_BYTE = 8;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private static ImageCache shared;
+
+    private long capacity;
+    private LinkedHashMap<String, Entry> entries;
+    private ReferenceQueue<BufferedImage> reclaimed;
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Create a new, empty image cache.
+     * @param capacity The most bytes of decoded images the cache holds.
+     */
+    public ImageCache(long capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("The capacity must not be"
+                    + " negative, got: " + capacity);
+        }
+        this.capacity = capacity;
+        // Iterated from the least recently used image.
+        this.entries = new LinkedHashMap<String, Entry>(INITIAL_CAPACITY,
+                LOAD_FACTOR, true);
+        this.reclaimed = new ReferenceQueue<BufferedImage>();
+        this.bytes = 0;
+        this.hits = 0;
+        this.misses = 0;
+        this.evictions = 0;
+    }
+
+    /**
+     * Returns the cache shared by the whole game, whose capacity is chosen
+     * by the arkanoid.imagecachemb system property, in megabytes
+     * (DEF_CAPACITY_MB by default).
+     * @return The shared image cache.
+     */
+    public static synchronized ImageCache getShared() {
+        if (shared == null) {
+            String megabytes = System.getProperty(CAPACITY_PROPERTY,
+                    Long.toString(DEF_CAPACITY_MB));
+            shared = new ImageCache(Long.parseLong(megabytes) * BYTES_PER_MB);
+        }
+        return shared;
+    }
+
+    /**
+     * Returns the image of the given resource, decoding it only if it is not
+     * in the cache.
+     * @param path The path of the image resource.
+     * @return The decoded image, or null if its format is unknown.
+     * @throws IOException If the image could not be read.
+     */
+    public BufferedImage load(String path) throws IOException {
+        BufferedImage image = this.lookup(path);
+        if (image != null) {
+            return image;
+        }
+        try (InputStream stream = ClassLoader.getSystemClassLoader()
+                .getResourceAsStream(path)) {
+            image = ImageIO.read(stream);
+        }
+        if (image == null) {
+            return null;
+        }
+        return this.store(path, image);
+    }
+
+    /**
+     * Drop every image from the cache. The statistics are kept.
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+        this.bytes = 0;
+    }
+
+    /**
+     * Returns the number of loads answered from the cache.
+     * @return The number of cache hits.
+     */
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * Returns the number of loads that decoded their image.
+     * @return The number of cache misses.
+     */
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * Returns the number of images dropped to stay within the capacity.
+     * @return The number of evictions.
+     */
+    public synchronized long getEvictions() {
+        return this.evictions;
+    }
+
+    /**
+     * Returns the number of bytes the images in the cache take.
+     * @return The number of bytes held.
+     */
+    public synchronized long getBytes() {
+        this.purgeReclaimed();
+        return this.bytes;
+    }
+
+    /**
+     * Returns the most bytes of decoded images the cache holds.
+     * @return The capacity in bytes.
+     */
+    public long getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Returns the number of images in the cache.
+     * @return The number of images.
+     */
+    public synchronized int size() {
+        this.purgeReclaimed();
+        return this.entries.size();
+    }
+
+    /**
+     * Returns the cached image of the given resource, counting a hit, or
+     * null after counting a miss.
+     * @param path The path of the image resource.
+     * @return The cached image, or null.
+     */
+    private synchronized BufferedImage lookup(String path) {
+        this.purgeReclaimed();
+        Entry entry = this.entries.get(path);
+        BufferedImage image = null;
+        if (entry != null) {
+            image = entry.get();
+        }
+        if (image == null) {
+            this.misses++;
+        } else {
+            this.hits++;
+        }
+        return image;
+    }
+
+    /**
+     * Add a decoded image to the cache, unless another thread added the same
+     * image meanwhile, and drop the least recently used images beyond the
+     * capacity.
+     * @param path The path of the image resource.
+     * @param image The decoded image.
+     * @return The image now cached for the path, or the given image if it is
+     *         larger than the whole cache.
+     */
+    private synchronized BufferedImage store(String path, BufferedImage image) {
+        this.purgeReclaimed();
+        Entry existing = this.entries.get(path);
+        BufferedImage cached = null;
+        if (existing != null) {
+            cached = existing.get();
+        }
+        if (cached != null) {
+            return cached;
+        }
+        long size = sizeOf(image);
+        if (size > this.capacity) {
+            return image;
+        }
+        this.remove(existing);
+        this.entries.put(path, new Entry(path, image, size, this.reclaimed));
+        this.bytes += size;
+        Iterator<Entry> leastRecent = this.entries.values().iterator();
+        while (this.bytes > this.capacity) {
+            Entry evicted = leastRecent.next();
+            leastRecent.remove();
+            this.bytes -= evicted.getSize();
+            this.evictions++;
+        }
+        return image;
+    }
+
+    /**
+     * Remove the given entry from the cache, if it is still there.
+     * @param entry The entry, or null.
+     */
+    private void remove(Entry entry) {
+        if ((entry != null) && (this.entries.get(entry.getPath()) == entry)) {
+            this.entries.remove(entry.getPath());
+            this.bytes -= entry.getSize();
+        }
+    }
+
+    /**
+     * Remove the entries whose images the garbage collector reclaimed.
+     */
+    private void purgeReclaimed() {
+        Entry entry = (Entry) this.reclaimed.poll();
+        while (entry != null) {
+            // Removed only if its path still maps to it, without looking it
+            // up, which would make a newer entry the most recently used.
+            if (this.entries.remove(entry.getPath(), entry)) {
+                this.bytes -= entry.getSize();
+            }
+            entry = (Entry) this.reclaimed.poll();
+        }
+    }
+
+    /**
+     * Returns the number of bytes the pixels of the given image take.
+     * @param image The image.
+     * @return The size of the image in bytes.
+     */
+    private static long sizeOf(BufferedImage image) {
+        DataBuffer data = image.getRaster().getDataBuffer();
+        return (long) data.getSize() * data.getNumBanks()
+                * DataBuffer.getDataTypeSize(data.getDataType()) / BITS_PER_BYTE;
+    }
+
+    /**
+     * Represents a cached image, held by a soft reference.
+     */
+    private static final class Entry extends SoftReference<BufferedImage> {
+        private final String path;
+        private final long size;
+
+        /**
+         * Create a new entry.
+         * @param path The path of the image resource.
+         * @param image The decoded image.
+         * @param size The number of bytes the image takes.
+         * @param queue The queue the entry is put on once its image is
+         *              reclaimed.
+         */
+        Entry(String path, BufferedImage image, long size,
+              ReferenceQueue<BufferedImage> queue) {
+            super(image, queue);
+            this.path = path;
+            this.size = size;
+        }
+
+        /**
+         * Returns the path of the image resource.
+         * @return The path.
+         */
+        String getPath() {
+            return this.path;
+        }
+
+        /**
+         * Returns the number of bytes the image takes.
+         * @return The size of the image.
+         */
+        long getSize() {
+            return this.size;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package io;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Represents a cache of images prepared to be drawn at a given size, keyed
+ * by the image they were prepared from and that size.
+ * A prepared image has exactly the size it is drawn at, and the pixel format
+ * of the screen (or an integer RGB format without a screen), without an
+ * alpha channel if it is opaque everywhere, so drawing it every frame is a
+ * straight copy instead of a conversion, a scaling and a blend.
+ * The prepared images of an image are dropped once the image itself is no
+ * longer used. Prepared images are shared, and must not be drawn into.
+ */
+public class ImagePreparer {
+
+    // The image is scaled to the size.
+    public static final int SCALE = 0;
+    // The image is drawn at its own size, and what falls outside is cut.
+    public static final int CROP = 1;
+
+    private static final int ALPHA_SHIFT = 24;
+    private static final int OPAQUE_ALPHA = 0xff;
+    private static final int HASH_MULTIPLIER = 31;
+
+    private static ImagePreparer shared;
+
+    private Map<Image, Map<Key, BufferedImage>> prepared;
+    private long hits;
+    private long misses;
+
+    /**
+     * Create a new, empty image preparer.
+     */
+    public ImagePreparer() {
+        this.prepared = new WeakHashMap<Image, Map<Key, BufferedImage>>();
+        this.hits = 0;
+        this.misses = 0;
+    }
+
+    /**
+     * Returns the preparer shared by the whole game.
+     * @return The shared image preparer.
+     */
+    public static synchronized ImagePreparer getShared() {
+        if (shared == null) {
+            shared = new ImagePreparer();
+        }
+        return shared;
+    }
+
+    /**
+     * Returns the given image prepared to be drawn at the given size,
+     * preparing it only if it was not prepared at that size before.
+     * @param image The image.
+     * @param width The width it is drawn at.
+     * @param height The height it is drawn at.
+     * @param mode SCALE or CROP.
+     * @return The prepared image.
+     */
+    public synchronized BufferedImage prepare(Image image, int width,
+                                              int height, int mode) {
+        if ((width <= 0) || (height <= 0)) {
+            throw new IllegalArgumentException("The size must be positive,"
+                    + " got: " + width + "x" + height);
+        }
+        if ((mode != SCALE) && (mode != CROP)) {
+            throw new IllegalArgumentException("Unknown mode: " + mode);
+        }
+        Map<Key, BufferedImage> sizes = this.prepared.get(image);
+        if (sizes == null) {
+            sizes = new HashMap<Key, BufferedImage>();
+            this.prepared.put(image, sizes);
+        }
+        Key key = new Key(width, height, mode);
+        BufferedImage result = sizes.get(key);
+        if (result != null) {
+            this.hits++;
+            return result;
+        }
+        this.misses++;
+        result = convert(image, width, height, mode);
+        sizes.put(key, result);
+        return result;
+    }
+
+    /**
+     * Drop every prepared image. The statistics are kept.
+     */
+    public synchronized void clear() {
+        this.prepared.clear();
+    }
+
+    /**
+     * Returns the number of preparations answered from the cache.
+     * @return The number of cache hits.
+     */
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * Returns the number of images prepared.
+     * @return The number of cache misses.
+     */
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * Draw the given image into a new image of the given size, of the
+     * format the screen draws fastest.
+     * @param image The image.
+     * @param width The new width.
+     * @param height The new height.
+     * @param mode SCALE or CROP.
+     * @return The new image.
+     */
+    private static BufferedImage convert(Image image, int width, int height,
+                                         int mode) {
+        int imageWidth = image.getWidth(null);
+        int imageHeight = image.getHeight(null);
+        boolean covers = (mode == SCALE)
+                || ((imageWidth >= width) && (imageHeight >= height));
+        boolean opaque = covers && isOpaque(image);
+        BufferedImage result = createCompatibleImage(width, height, opaque);
+        Graphics2D g = result.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        if ((mode == SCALE) && ((imageWidth != width)
+                || (imageHeight != height))) {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                    RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, width, height, null);
+        } else {
+            g.drawImage(image, 0, 0, null);
+        }
+        g.dispose();
+        return result;
+    }
+
+    /**
+     * Returns a new image of the given size, in the format of the screen, or
+     * in an integer RGB format if there is no screen.
+     * @param width The width.
+     * @param height The height.
+     * @param opaque True if every pixel will be opaque.
+     * @return The new image.
+     */
+    static BufferedImage createCompatibleImage(int width, int height,
+                                              boolean opaque) {
+        if (!GraphicsEnvironment.isHeadless()) {
+            GraphicsConfiguration config = GraphicsEnvironment
+                    .getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                    .getDefaultConfiguration();
+            return config.createCompatibleImage(width, height, opaque
+                    ? Transparency.OPAQUE : Transparency.TRANSLUCENT);
+        }
+        return new BufferedImage(width, height, opaque
+                ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB_PRE);
+    }
+
+    /**
+     * Returns true if every pixel of the given image is opaque.
+     * @param image The image.
+     * @return True if the image is opaque.
+     */
+    private static boolean isOpaque(Image image) {
+        if (!(image instanceof BufferedImage)) {
+            return false;
+        }
+        BufferedImage buffered = (BufferedImage) image;
+        if (buffered.getColorModel().getTransparency() == Transparency.OPAQUE) {
+            return true;
+        }
+        // Images with an alpha channel are often opaque anyway.
+        int[] row = new int[buffered.getWidth()];
+        for (int y = 0; y < buffered.getHeight(); y++) {
+            buffered.getRGB(0, y, row.length, 1, row, 0, row.length);
+            for (int argb : row) {
+                if ((argb >>> ALPHA_SHIFT) != OPAQUE_ALPHA) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Represents the size and mode an image was prepared for.
+     */
+    private static final class Key {
+        private final int width;
+        private final int height;
+        private final int mode;
+
+        /**
+         * Create a new key.
+         * @param width The width.
+         * @param height The height.
+         * @param mode SCALE or CROP.
+         */
+        Key(int width, int height, int mode) {
+            this.width = width;
+            this.height = height;
+            this.mode = mode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return (this.width == other.width) && (this.height == other.height)
+                    && (this.mode == other.mode);
+        }
+
+        @Override
+        public int hashCode() {
+            return (this.width * HASH_MULTIPLIER + this.height) * HASH_MULTIPLIER
+                    + this.mode;
+        }
+    }
+}
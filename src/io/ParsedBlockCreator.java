@@ -6,6 +6,9 @@ import sprites.Block;
 import sprites.Fill;
 
 import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 public class ParsedBlockCreator implements BlockCreator {
@@ -77,9 +80,44 @@ public class ParsedBlockCreator implements BlockCreator {
             }
         }
 
+        // Prepared once here, so every block draws its images straight.
+        for (int fillIndex = 0; fillIndex < fils.length; fillIndex++) {
+            if (fils[fillIndex] != null) {
+                fils[fillIndex] = fils[fillIndex].prepare(this.width,
+                        this.height);
+            }
+        }
+
         return fils;
     }
 
+    /**
+     * Returns the images of the image fills of the blocks.
+     * @return The fill images.
+     */
+    public List<BufferedImage> getFillImages() {
+        List<BufferedImage> images = new ArrayList<BufferedImage>();
+        for (Fill fill : this.fills) {
+            if ((fill != null) && (fill.getImage() instanceof BufferedImage)) {
+                images.add((BufferedImage) fill.getImage());
+            }
+        }
+        return images;
+    }
+
+    /**
+     * Draw the image fills of the blocks from their regions of the given
+     * atlas.
+     * @param atlas An atlas the fill images were packed into.
+     */
+    public void useAtlas(TextureAtlas atlas) {
+        for (int fillIndex = 0; fillIndex < this.fills.length; fillIndex++) {
+            if (this.fills[fillIndex] != null) {
+                this.fills[fillIndex] = this.fills[fillIndex].fromAtlas(atlas);
+            }
+        }
+    }
+
     @Override
     public Block create(int xpos, int ypos) {
         Rectangle rect = new Rectangle(new Point(xpos, ypos), this.width, this.height);
@@ -1,6 +1,8 @@
 package io;
 
+import management.GridLayout;
 import management.LevelInformation;
+import sprites.BallSystem;
 import sprites.Block;
 import sprites.Velocity;
 import sprites.Background;
@@ -21,6 +23,7 @@ public class ParsedLevel implements LevelInformation {
     private Map<String, String> levelProperties;
     private ArrayList<String> blocksPattern;
     private boolean levelIsLegal = true;
+    private BlocksFromSymbolsFactory blocksFactory;
 
     private static final String LEVEL_NAME = "level_name";
     private static final String BALL_VELOCITIES = "ball_velocities";
@@ -32,6 +35,7 @@ public class ParsedLevel implements LevelInformation {
     private static final String BLOCKS_START_Y = "blocks_start_y";
     private static final String ROW_HEIGHT = "row_height";
     private static final String NUM_BLOCKS = "num_blocks";
+    private static final String PHYSICS = "physics";
 
     private static final Set<String> REQUIRED_KEYS = new HashSet<>();
 
@@ -169,8 +173,25 @@ public class ParsedLevel implements LevelInformation {
         return value;
     }
 
-    @Override
-    public List<Block> blocks() throws Exception {
+    /**
+     * Returns the blocks factory of the block definitions of the level,
+     * reading the definitions only the first time.
+     * @return The blocks factory of the definitions.
+     * @throws Exception Exception.
+     */
+    private BlocksFromSymbolsFactory getBlocksFactory() throws Exception {
+        if (this.blocksFactory == null) {
+            this.blocksFactory = readBlocksFactory();
+        }
+        return this.blocksFactory;
+    }
+
+    /**
+     * Read the block definitions of the level.
+     * @return The blocks factory of the definitions.
+     * @throws Exception Exception.
+     */
+    private BlocksFromSymbolsFactory readBlocksFactory() throws Exception {
         String definitionsFile = levelProperties.get(BLOCK_DEFINITIONS);
 
         InputStream fileStream = ClassLoader.getSystemClassLoader().getResourceAsStream(definitionsFile);
@@ -178,7 +199,12 @@ public class ParsedLevel implements LevelInformation {
         //Reader fileReader = getBufferedReader(definitionsFile);
 
         BlocksDefinitionReader definitionReader = new BlocksDefinitionReader();
-        BlocksFromSymbolsFactory blocksFactory = definitionReader.fromReader(fileReader);
+        return definitionReader.fromReader(fileReader);
+    }
+
+    @Override
+    public List<Block> blocks() throws Exception {
+        BlocksFromSymbolsFactory blocksFactory = getBlocksFactory();
 
         int posX = getBlocksStartX();
         int posY = getBlocksStartY();
@@ -205,10 +231,79 @@ public class ParsedLevel implements LevelInformation {
         return blocksList;
     }
 
+    /**
+     * Returns the rows and columns of the blocks pattern. Rows are
+     * row_height apart, and columns are as wide as the greatest common
+     * divisor of the widths of the blocks and spacers in the pattern, so
+     * every block fills whole cells.
+     * @return The layout of the blocks, or null.
+     * @throws Exception If the block definitions could not be read.
+     */
+    @Override
+    public GridLayout blockLayout() throws Exception {
+        BlocksFromSymbolsFactory blocksFactory = getBlocksFactory();
+
+        int rowHeight = getRowHeight();
+        int cellWidth = 0;
+        int maxRowWidth = 0;
+        int maxBottom = 0;
+        int rowTop = 0;
+
+        for (String blockLine: this.blocksPattern) {
+            int rowWidth = 0;
+            for (int symbolIndex = 0; symbolIndex < blockLine.length(); symbolIndex++) {
+                String symbol = String.valueOf(blockLine.charAt(symbolIndex));
+                int width = 0;
+                if (blocksFactory.isSpaceSymbol(symbol)) {
+                    width = blocksFactory.getSpaceWidth(symbol);
+                } else if (blocksFactory.isBlockSymbol(symbol)) {
+                    Block block = blocksFactory.getBlock(symbol, 0, 0);
+                    width = (int) block.getWidth();
+                    maxBottom = Math.max(maxBottom, rowTop + (int) block.getHeight());
+                }
+                cellWidth = gcd(cellWidth, width);
+                rowWidth += width;
+            }
+            maxRowWidth = Math.max(maxRowWidth, rowWidth);
+            rowTop += rowHeight;
+        }
+
+        if ((cellWidth <= 0) || (rowHeight <= 0)) {
+            return null;
+        }
+        int columns = (maxRowWidth + cellWidth - 1) / cellWidth;
+        int rows = (maxBottom + rowHeight - 1) / rowHeight;
+        return new GridLayout(getBlocksStartX(), getBlocksStartY(), cellWidth,
+                rowHeight, columns, rows);
+    }
+
+    /**
+     * Returns the greatest common divisor of two widths.
+     * @param a The first width.
+     * @param b The second width.
+     * @return The greatest common divisor, or the other width if one is 0.
+     */
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int rest = a % b;
+            a = b;
+            b = rest;
+        }
+        return a;
+    }
+
     @Override
     public int numberOfBlocksToRemove() {
 
         int value = Integer.valueOf(levelProperties.get(NUM_BLOCKS));
         return value;
     }
+
+    @Override
+    public String physics() {
+        if (this.levelProperties.containsKey(PHYSICS)) {
+            return this.levelProperties.get(PHYSICS);
+        }
+        return BallSystem.defaultPhysics();
+    }
 }
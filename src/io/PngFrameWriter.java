@@ -0,0 +1,42 @@
+package io;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Represents a frame writer that writes every frame as a PNG image of its
+ * own, numbered by the frame, in a directory.
+ */
+public class PngFrameWriter implements FrameWriter {
+
+    public static final String FILE_NAME_FORMAT = "frame%06d.png";
+
+    private File directory;
+
+    /**
+     * Create a writer into the given directory, creating it if needed.
+     * @param directory The directory.
+     * @throws IOException If the directory could not be created.
+     */
+    public PngFrameWriter(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create directory: " + directory);
+        }
+        this.directory = directory;
+    }
+
+    @Override
+    public void write(BufferedImage frame, long index) throws IOException {
+        File file = new File(this.directory, String.format(FILE_NAME_FORMAT,
+                index));
+        if (!ImageIO.write(frame, "png", file)) {
+            throw new IOException("No PNG writer for frame " + index);
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,66 @@
+package io;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Represents a frame writer that appends every frame to a single file as
+ * raw video: three bytes of red, green and blue per pixel, row after row,
+ * with no header, such as a video encoder reads with the rgb24 pixel format.
+ * Frames that were dropped are not written, so every frame must have the
+ * size of the first.
+ */
+public class RawFrameWriter implements FrameWriter {
+
+    private static final int BYTES_PER_PIXEL = 3;
+    private static final int RED_SHIFT = 16;
+    private static final int GREEN_SHIFT = 8;
+
+    private FileChannel channel;
+    private ByteBuffer buffer;
+
+    /**
+     * Create a writer into the given file, replacing it if it exists.
+     * @param file The file.
+     * @throws IOException If the file could not be opened.
+     */
+    public RawFrameWriter(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.buffer = null;
+    }
+
+    @Override
+    public void write(BufferedImage frame, long index) throws IOException {
+        int pixelCount = frame.getWidth() * frame.getHeight();
+        if (this.buffer == null) {
+            this.buffer = ByteBuffer.allocateDirect(pixelCount * BYTES_PER_PIXEL);
+        } else if (this.buffer.capacity() != pixelCount * BYTES_PER_PIXEL) {
+            throw new IOException("Frame " + index + " is not of the size of"
+                    + " the first frame");
+        }
+        int[] pixels = ((DataBufferInt) frame.getRaster().getDataBuffer())
+                .getData();
+        this.buffer.clear();
+        for (int i = 0; i < pixelCount; i++) {
+            int rgb = pixels[i];
+            this.buffer.put((byte) (rgb >> RED_SHIFT));
+            this.buffer.put((byte) (rgb >> GREEN_SHIFT));
+            this.buffer.put((byte) rgb);
+        }
+        this.buffer.flip();
+        while (this.buffer.hasRemaining()) {
+            this.channel.write(this.buffer);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+}
@@ -0,0 +1,239 @@
+package io;
+
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Represents a single image that holds many small images side by side, such
+ * as the fills of the blocks of a level, so they are all drawn from the same
+ * source image.
+ * The images are packed in shelves: from the tallest to the shortest, each
+ * is put to the right of the previous one, and a new shelf is started below
+ * once a shelf is full. Every image is then copied into its region by the
+ * workers of the common pool.
+ * The region of an image is returned as a sub-image, which shares the
+ * pixels of the atlas. Atlases are shared by everything that packs the same
+ * images, and must not be drawn into.
+ */
+public class TextureAtlas {
+
+    // Run with -Darkanoid.atlas=false to draw every fill from its own image.
+    public static final String ATLAS_PROPERTY = "arkanoid.atlas";
+    // Shelves are no wider than this, unless an image is wider.
+    public static final int MAX_SHELF_WIDTH = 1024;
+
+    // The atlases of this many different sets of images are kept.
+    private static final int MAX_SHARED = 8;
+
+    private static LinkedHashMap<List<BufferedImage>,
+            SoftReference<TextureAtlas>> shared =
+            new LinkedHashMap<List<BufferedImage>, SoftReference<TextureAtlas>>();
+
+    private BufferedImage image;
+    private Map<BufferedImage, BufferedImage> regions;
+
+    /**
+     * Pack the given images into a new atlas.
+     * @param images The images. Each image is packed once however many
+     *               times it appears.
+     */
+    public TextureAtlas(List<BufferedImage> images) {
+        List<BufferedImage> distinct = distinct(images);
+        Map<BufferedImage, Rectangle> places = place(distinct);
+        int width = 1;
+        int height = 1;
+        boolean opaque = true;
+        for (BufferedImage img : distinct) {
+            Rectangle r = places.get(img);
+            width = Math.max(width, r.x + r.width);
+            height = Math.max(height, r.y + r.height);
+            opaque &= img.getColorModel().getTransparency()
+                    == Transparency.OPAQUE;
+        }
+        this.image = ImagePreparer.createCompatibleImage(width, height, opaque);
+        copyAll(distinct, places, this.image);
+        this.regions = new IdentityHashMap<BufferedImage, BufferedImage>();
+        for (BufferedImage img : distinct) {
+            Rectangle r = places.get(img);
+            this.regions.put(img, this.image.getSubimage(r.x, r.y, r.width,
+                    r.height));
+        }
+    }
+
+    /**
+     * Returns true if levels draw the fills of their blocks from an atlas,
+     * as chosen by the arkanoid.atlas system property (true by default).
+     * @return True if atlases are used.
+     */
+    public static boolean isEnabledByDefault() {
+        return Boolean.parseBoolean(System.getProperty(ATLAS_PROPERTY, "true"));
+    }
+
+    /**
+     * Returns an atlas of the given images, packing them only if the same
+     * images were not packed recently.
+     * @param images The images.
+     * @return The atlas.
+     */
+    public static TextureAtlas getShared(List<BufferedImage> images) {
+        List<BufferedImage> key = Collections.unmodifiableList(
+                distinct(images));
+        synchronized (shared) {
+            SoftReference<TextureAtlas> ref = shared.remove(key);
+            TextureAtlas atlas = null;
+            if (ref != null) {
+                atlas = ref.get();
+            }
+            if (atlas == null) {
+                atlas = new TextureAtlas(key);
+            }
+            // Reinserted, so the map is ordered from the least recently used.
+            shared.put(key, new SoftReference<TextureAtlas>(atlas));
+            if (shared.size() > MAX_SHARED) {
+                shared.remove(shared.keySet().iterator().next());
+            }
+            return atlas;
+        }
+    }
+
+    /**
+     * Returns the image that holds all of the packed images.
+     * @return The atlas image.
+     */
+    public BufferedImage getImage() {
+        return this.image;
+    }
+
+    /**
+     * Returns the region of the atlas that holds a copy of the given image,
+     * as a sub-image that shares the pixels of the atlas.
+     * @param img A packed image.
+     * @return The region, or null if the image was not packed.
+     */
+    public BufferedImage getRegion(BufferedImage img) {
+        return this.regions.get(img);
+    }
+
+    /**
+     * Returns the number of images packed.
+     * @return The number of images.
+     */
+    public int size() {
+        return this.regions.size();
+    }
+
+    /**
+     * Returns the given images without repetitions, in their order.
+     * @param images The images.
+     * @return The distinct images.
+     */
+    private static List<BufferedImage> distinct(List<BufferedImage> images) {
+        Map<BufferedImage, Boolean> seen =
+                new IdentityHashMap<BufferedImage, Boolean>();
+        List<BufferedImage> result = new ArrayList<BufferedImage>();
+        for (BufferedImage img : images) {
+            if (seen.put(img, Boolean.TRUE) == null) {
+                result.add(img);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Find where every image goes in the atlas.
+     * @param images The distinct images.
+     * @return The region of every image.
+     */
+    private static Map<BufferedImage, Rectangle> place(
+            List<BufferedImage> images) {
+        List<BufferedImage> tallestFirst = new ArrayList<BufferedImage>(images);
+        tallestFirst.sort(Comparator.comparingInt(
+                (BufferedImage img) -> img.getHeight()).reversed());
+        int shelfWidth = MAX_SHELF_WIDTH;
+        for (BufferedImage img : images) {
+            shelfWidth = Math.max(shelfWidth, img.getWidth());
+        }
+        Map<BufferedImage, Rectangle> places =
+                new IdentityHashMap<BufferedImage, Rectangle>();
+        int x = 0;
+        int shelfY = 0;
+        int shelfHeight = 0;
+        for (BufferedImage img : tallestFirst) {
+            if (x + img.getWidth() > shelfWidth) {
+                x = 0;
+                shelfY += shelfHeight;
+                shelfHeight = 0;
+            }
+            places.put(img, new Rectangle(x, shelfY, img.getWidth(),
+                    img.getHeight()));
+            x += img.getWidth();
+            shelfHeight = Math.max(shelfHeight, img.getHeight());
+        }
+        return places;
+    }
+
+    /**
+     * Copy every image into its region of the atlas, in parallel. The
+     * regions never overlap, so the copies do not interfere.
+     * @param images The distinct images.
+     * @param places The region of every image.
+     * @param atlas The atlas image.
+     */
+    private static void copyAll(List<BufferedImage> images,
+                                Map<BufferedImage, Rectangle> places,
+                                BufferedImage atlas) {
+        List<Callable<Void>> copies = new ArrayList<Callable<Void>>();
+        for (BufferedImage img : images) {
+            Rectangle r = places.get(img);
+            copies.add(() -> {
+                copy(img, atlas, r.x, r.y);
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> copy : ForkJoinPool.commonPool()
+                    .invokeAll(copies)) {
+                copy.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while packing", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not pack an image",
+                    e.getCause());
+        }
+    }
+
+    /**
+     * Copy an image into the atlas, pixel for pixel.
+     * @param img The image.
+     * @param atlas The atlas image.
+     * @param x The left X of its region.
+     * @param y The upper Y of its region.
+     */
+    private static void copy(BufferedImage img, BufferedImage atlas, int x,
+                             int y) {
+        if (img.getColorModel().equals(atlas.getColorModel())) {
+            atlas.getRaster().setDataElements(x, y, img.getRaster());
+        } else {
+            int[] row = new int[img.getWidth()];
+            for (int j = 0; j < img.getHeight(); j++) {
+                img.getRGB(0, j, row.length, 1, row, 0, row.length);
+                atlas.setRGB(x, y + j, row.length, 1, row, 0, row.length);
+            }
+        }
+    }
+}
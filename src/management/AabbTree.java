@@ -0,0 +1,555 @@
+package management;
+
+import geometryprimitives.Rectangle;
+import sprites.Collidable;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Represents a dynamic bounding volume hierarchy of collidables (an AABB
+ * tree). Every collidable is a leaf, and every inner node bounds both of its
+ * children. The tree is kept balanced with rotations, so adding and removing
+ * a collidable takes O(log n), and a trajectory only descends into nodes
+ * whose bounds it crosses.
+ * A leaf that moves (the paddle) is refit with enlarged bounds, so small
+ * moves within them cost nothing, and only the bounds of its ancestors are
+ * recomputed once it leaves them.
+ */
+public class AabbTree implements CollidableIndex {
+
+    public static final double DEF_LEAF_MARGIN = 10;
+
+    private static final int NULL_NODE = -1;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private double leafMargin;
+    private int root;
+    private int capacity;
+    private int freeList;
+    private double[] minX;
+    private double[] minY;
+    private double[] maxX;
+    private double[] maxY;
+    private int[] parent;
+    private int[] left;
+    private int[] right;
+    private int[] height;
+    // The collision layers of the collidables under every node.
+    private int[] layers;
+    private Collidable[] items;
+    private long[] orders;
+    private Map<Collidable, Integer> leaves;
+    private long nextOrder;
+
+    /**
+     * Create a new tree with the default leaf margin.
+     */
+    public AabbTree() {
+        this(DEF_LEAF_MARGIN);
+    }
+
+    /**
+     * Create a new tree.
+     * @param leafMargin The margin moving leaves are enlarged by.
+     */
+    public AabbTree(double leafMargin) {
+        this.leafMargin = leafMargin;
+        this.root = NULL_NODE;
+        this.allocateArrays(INITIAL_CAPACITY);
+        this.leaves = new IdentityHashMap<Collidable, Integer>();
+        this.nextOrder = 0;
+    }
+
+    @Override
+    public void add(Collidable c) {
+        int leaf = this.allocateNode();
+        this.items[leaf] = c;
+        this.orders[leaf] = this.nextOrder++;
+        this.layers[leaf] = c.getCollisionLayer();
+        this.setLeafBounds(leaf, c.getCollisionRectangle(), 0);
+        this.leaves.put(c, leaf);
+        this.insertLeaf(leaf);
+    }
+
+    @Override
+    public boolean remove(Collidable c) {
+        Integer leaf = this.leaves.remove(c);
+        if (leaf == null) {
+            return false;
+        }
+        this.removeLeaf(leaf);
+        this.freeNode(leaf);
+        return true;
+    }
+
+    @Override
+    public boolean contains(Collidable c) {
+        return this.leaves.containsKey(c);
+    }
+
+    /**
+     * Refit the leaf of the given collidable if it moved out of its
+     * enlarged bounds. Only the bounds of its ancestors are recomputed, the
+     * structure of the tree is left as is.
+     * @param c The collidable that moved.
+     */
+    @Override
+    public void update(Collidable c) {
+        Integer leaf = this.leaves.get(c);
+        if (leaf == null) {
+            return;
+        }
+        Rectangle rect = c.getCollisionRectangle();
+        if ((rect.getMinX() - BOUNDS_PADDING >= this.minX[leaf])
+                && (rect.getMinY() - BOUNDS_PADDING >= this.minY[leaf])
+                && (rect.getMaxX() + BOUNDS_PADDING <= this.maxX[leaf])
+                && (rect.getMaxY() + BOUNDS_PADDING <= this.maxY[leaf])) {
+            return;
+        }
+        this.setLeafBounds(leaf, rect, this.leafMargin);
+        int index = this.parent[leaf];
+        while (index != NULL_NODE) {
+            this.fitToChildren(index);
+            index = this.parent[index];
+        }
+    }
+
+    @Override
+    public int size() {
+        return this.leaves.size();
+    }
+
+    /**
+     * Offer the query every leaf whose bounds are crossed by its trajectory,
+     * skipping every subtree that starts past the closest hit found so far.
+     * The tree itself is only read, so queries may run concurrently.
+     * @param query The closest collision query.
+     */
+    @Override
+    public void query(ClosestCollisionQuery query) {
+        if (this.root == NULL_NODE) {
+            return;
+        }
+        double x0 = query.startX();
+        double y0 = query.startY();
+        double dx = query.endX() - x0;
+        double dy = query.endY() - y0;
+        double radius = query.radius();
+
+        int[] stack = query.traversalStack(this.getHeight() + 2);
+        int top = 0;
+        stack[top++] = this.root;
+        while (top > 0) {
+            int node = stack[--top];
+            double tEnter = this.segmentEntry(node, x0, y0, dx, dy, radius);
+            if ((tEnter < 0) || query.isBeyondClosest(tEnter)
+                    || !query.collidesWithAny(this.layers[node])) {
+                continue;
+            }
+            if (this.isLeaf(node)) {
+                query.consider(this.items[node], this.orders[node]);
+            } else {
+                stack[top++] = this.right[node];
+                stack[top++] = this.left[node];
+            }
+        }
+    }
+
+    /**
+     * Add to the cache every leaf whose bounds overlap its region, skipping
+     * every subtree whose bounds do not.
+     * @param cache The candidate cache being filled.
+     * @param query The query that lends its traversal stack.
+     */
+    @Override
+    public void collect(CandidateCache cache, ClosestCollisionQuery query) {
+        if (this.root == NULL_NODE) {
+            return;
+        }
+        int[] stack = query.traversalStack(this.getHeight() + 2);
+        int top = 0;
+        stack[top++] = this.root;
+        while (top > 0) {
+            int node = stack[--top];
+            if (!cache.overlapsRegion(this.minX[node], this.minY[node],
+                    this.maxX[node], this.maxY[node])) {
+                continue;
+            }
+            if (this.isLeaf(node)) {
+                cache.add(this.items[node], this.orders[node], this.minX[node],
+                        this.minY[node], this.maxX[node], this.maxY[node]);
+            } else {
+                stack[top++] = this.right[node];
+                stack[top++] = this.left[node];
+            }
+        }
+    }
+
+    /**
+     * Returns the height of the tree. A single leaf has height 0.
+     * @return The height of the tree.
+     */
+    public int getHeight() {
+        if (this.root == NULL_NODE) {
+            return 0;
+        }
+        return this.height[this.root];
+    }
+
+    /**
+     * Returns the trajectory parameter in [0, 1] at which the segment enters
+     * the node bounds expanded by the given radius (0 if it starts inside),
+     * or -1 if it misses them.
+     * @param node The node.
+     * @param x0 The segment start X.
+     * @param y0 The segment start Y.
+     * @param dx The segment change in X.
+     * @param dy The segment change in Y.
+     * @param radius The radius of the moving circle, 0 for a point.
+     * @return The entry parameter or -1.
+     */
+    private double segmentEntry(int node, double x0, double y0, double dx,
+                                double dy, double radius) {
+        double tMin = 0;
+        double tMax = 1;
+        double nodeMinX = this.minX[node] - radius;
+        double nodeMaxX = this.maxX[node] + radius;
+        double nodeMinY = this.minY[node] - radius;
+        double nodeMaxY = this.maxY[node] + radius;
+        if (dx == 0) {
+            if ((x0 < nodeMinX) || (x0 > nodeMaxX)) {
+                return -1;
+            }
+        } else {
+            double t1 = (nodeMinX - x0) / dx;
+            double t2 = (nodeMaxX - x0) / dx;
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+        }
+        if (dy == 0) {
+            if ((y0 < nodeMinY) || (y0 > nodeMaxY)) {
+                return -1;
+            }
+        } else {
+            double t1 = (nodeMinY - y0) / dy;
+            double t2 = (nodeMaxY - y0) / dy;
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+        }
+        if (tMin > tMax) {
+            return -1;
+        }
+        return tMin;
+    }
+
+    /**
+     * Insert a leaf into the tree, next to the sibling that enlarges the
+     * tree the least.
+     * @param leaf The leaf.
+     */
+    private void insertLeaf(int leaf) {
+        if (this.root == NULL_NODE) {
+            this.root = leaf;
+            this.parent[leaf] = NULL_NODE;
+            return;
+        }
+
+        int index = this.root;
+        while (!this.isLeaf(index)) {
+            double area = this.perimeter(index);
+            double combined = this.unionPerimeter(index, leaf);
+            double cost = 2 * combined;
+            double inheritance = 2 * (combined - area);
+            double costLeft = this.descendCost(this.left[index], leaf,
+                    inheritance);
+            double costRight = this.descendCost(this.right[index], leaf,
+                    inheritance);
+            if ((cost < costLeft) && (cost < costRight)) {
+                break;
+            }
+            index = costLeft < costRight ? this.left[index] : this.right[index];
+        }
+
+        int sibling = index;
+        int oldParent = this.parent[sibling];
+        int newParent = this.allocateNode();
+        this.parent[newParent] = oldParent;
+        this.left[newParent] = sibling;
+        this.right[newParent] = leaf;
+        this.parent[sibling] = newParent;
+        this.parent[leaf] = newParent;
+        if (oldParent == NULL_NODE) {
+            this.root = newParent;
+        } else if (this.left[oldParent] == sibling) {
+            this.left[oldParent] = newParent;
+        } else {
+            this.right[oldParent] = newParent;
+        }
+        this.rebalanceFrom(newParent);
+    }
+
+    /**
+     * Remove a leaf from the tree. Its sibling takes the place of their
+     * parent.
+     * @param leaf The leaf.
+     */
+    private void removeLeaf(int leaf) {
+        if (leaf == this.root) {
+            this.root = NULL_NODE;
+            return;
+        }
+        int leafParent = this.parent[leaf];
+        int grandParent = this.parent[leafParent];
+        int sibling = this.left[leafParent] == leaf ? this.right[leafParent]
+                : this.left[leafParent];
+
+        this.parent[sibling] = grandParent;
+        if (grandParent == NULL_NODE) {
+            this.root = sibling;
+        } else if (this.left[grandParent] == leafParent) {
+            this.left[grandParent] = sibling;
+        } else {
+            this.right[grandParent] = sibling;
+        }
+        this.freeNode(leafParent);
+
+        this.rebalanceFrom(grandParent);
+    }
+
+    /**
+     * Walk from the given node up to the root, balancing every node and
+     * refitting its bounds and height.
+     * @param node The first node to balance.
+     */
+    private void rebalanceFrom(int node) {
+        int index = node;
+        while (index != NULL_NODE) {
+            index = this.balance(index);
+            this.fitToChildren(index);
+            index = this.parent[index];
+        }
+    }
+
+    /**
+     * Perform a left or right rotation if the given node is unbalanced.
+     * @param a The node.
+     * @return The node that took the place of the given node.
+     */
+    private int balance(int a) {
+        if (this.isLeaf(a) || (this.height[a] < 2)) {
+            return a;
+        }
+        int b = this.left[a];
+        int c = this.right[a];
+        int balance = this.height[c] - this.height[b];
+        if (balance > 1) {
+            return this.rotateUp(a, c, b, false);
+        }
+        if (balance < -1) {
+            return this.rotateUp(a, b, c, true);
+        }
+        return a;
+    }
+
+    /**
+     * Rotate the taller child of a node up in its place.
+     * @param a The unbalanced node.
+     * @param up The taller child, that will replace the node.
+     * @param other The other child, that stays under the node.
+     * @param upIsLeft True if the taller child is the left child.
+     * @return The child that took the place of the node.
+     */
+    private int rotateUp(int a, int up, int other, boolean upIsLeft) {
+        int f = this.left[up];
+        int g = this.right[up];
+
+        this.parent[up] = this.parent[a];
+        this.parent[a] = up;
+        if (this.parent[up] == NULL_NODE) {
+            this.root = up;
+        } else if (this.left[this.parent[up]] == a) {
+            this.left[this.parent[up]] = up;
+        } else {
+            this.right[this.parent[up]] = up;
+        }
+
+        int keep = this.height[f] > this.height[g] ? f : g;
+        int move = keep == f ? g : f;
+        this.left[up] = a;
+        this.right[up] = keep;
+        if (upIsLeft) {
+            this.left[a] = move;
+            this.right[a] = other;
+        } else {
+            this.left[a] = other;
+            this.right[a] = move;
+        }
+        this.parent[move] = a;
+
+        this.fitToChildren(a);
+        this.fitToChildren(up);
+        return up;
+    }
+
+    /**
+     * Returns the cost of descending into the given child when inserting the
+     * given leaf.
+     * @param child The child.
+     * @param leaf The inserted leaf.
+     * @param inheritance The cost inherited from the ancestors.
+     * @return The descent cost.
+     */
+    private double descendCost(int child, int leaf, double inheritance) {
+        if (this.isLeaf(child)) {
+            return this.unionPerimeter(child, leaf) + inheritance;
+        }
+        return this.unionPerimeter(child, leaf) - this.perimeter(child)
+                + inheritance;
+    }
+
+    /**
+     * Recompute the bounds, height and layers of an inner node from its
+     * children.
+     * @param node The inner node.
+     */
+    private void fitToChildren(int node) {
+        int l = this.left[node];
+        int r = this.right[node];
+        this.minX[node] = Math.min(this.minX[l], this.minX[r]);
+        this.minY[node] = Math.min(this.minY[l], this.minY[r]);
+        this.maxX[node] = Math.max(this.maxX[l], this.maxX[r]);
+        this.maxY[node] = Math.max(this.maxY[l], this.maxY[r]);
+        this.height[node] = 1 + Math.max(this.height[l], this.height[r]);
+        this.layers[node] = this.layers[l] | this.layers[r];
+    }
+
+    /**
+     * Set the bounds of a leaf to the given rectangle, enlarged by the
+     * given margin.
+     * @param leaf The leaf.
+     * @param rect The collision rectangle.
+     * @param margin The margin.
+     */
+    private void setLeafBounds(int leaf, Rectangle rect, double margin) {
+        double pad = BOUNDS_PADDING + margin;
+        this.minX[leaf] = rect.getMinX() - pad;
+        this.minY[leaf] = rect.getMinY() - pad;
+        this.maxX[leaf] = rect.getMaxX() + pad;
+        this.maxY[leaf] = rect.getMaxY() + pad;
+    }
+
+    /**
+     * Returns the perimeter of a node bounds.
+     * @param node The node.
+     * @return The perimeter.
+     */
+    private double perimeter(int node) {
+        return 2 * ((this.maxX[node] - this.minX[node])
+                + (this.maxY[node] - this.minY[node]));
+    }
+
+    /**
+     * Returns the perimeter of the union of two node bounds.
+     * @param a The first node.
+     * @param b The second node.
+     * @return The perimeter of the union.
+     */
+    private double unionPerimeter(int a, int b) {
+        double width = Math.max(this.maxX[a], this.maxX[b])
+                - Math.min(this.minX[a], this.minX[b]);
+        double h = Math.max(this.maxY[a], this.maxY[b])
+                - Math.min(this.minY[a], this.minY[b]);
+        return 2 * (width + h);
+    }
+
+    /**
+     * Returns true if the node is a leaf.
+     * @param node The node.
+     * @return True if the node is a leaf.
+     */
+    private boolean isLeaf(int node) {
+        return this.left[node] == NULL_NODE;
+    }
+
+    /**
+     * Take a node out of the free list, growing the node pool if needed.
+     * @return The new node.
+     */
+    private int allocateNode() {
+        if (this.freeList == NULL_NODE) {
+            this.growArrays();
+        }
+        int node = this.freeList;
+        this.freeList = this.parent[node];
+        this.parent[node] = NULL_NODE;
+        this.left[node] = NULL_NODE;
+        this.right[node] = NULL_NODE;
+        this.height[node] = 0;
+        return node;
+    }
+
+    /**
+     * Return a node to the free list.
+     * @param node The node.
+     */
+    private void freeNode(int node) {
+        this.items[node] = null;
+        this.parent[node] = this.freeList;
+        this.freeList = node;
+    }
+
+    /**
+     * Allocate the node arrays, all nodes are free.
+     * @param size The number of nodes.
+     */
+    private void allocateArrays(int size) {
+        this.capacity = size;
+        this.minX = new double[size];
+        this.minY = new double[size];
+        this.maxX = new double[size];
+        this.maxY = new double[size];
+        this.parent = new int[size];
+        this.left = new int[size];
+        this.right = new int[size];
+        this.height = new int[size];
+        this.layers = new int[size];
+        this.items = new Collidable[size];
+        this.orders = new long[size];
+        this.linkFreeNodes(0);
+    }
+
+    /**
+     * Double the size of the node arrays.
+     */
+    private void growArrays() {
+        int oldCapacity = this.capacity;
+        this.capacity = oldCapacity * 2;
+        this.minX = Arrays.copyOf(this.minX, this.capacity);
+        this.minY = Arrays.copyOf(this.minY, this.capacity);
+        this.maxX = Arrays.copyOf(this.maxX, this.capacity);
+        this.maxY = Arrays.copyOf(this.maxY, this.capacity);
+        this.parent = Arrays.copyOf(this.parent, this.capacity);
+        this.left = Arrays.copyOf(this.left, this.capacity);
+        this.right = Arrays.copyOf(this.right, this.capacity);
+        this.height = Arrays.copyOf(this.height, this.capacity);
+        this.layers = Arrays.copyOf(this.layers, this.capacity);
+        this.items = Arrays.copyOf(this.items, this.capacity);
+        this.orders = Arrays.copyOf(this.orders, this.capacity);
+        this.linkFreeNodes(oldCapacity);
+    }
+
+    /**
+     * Link all the nodes from the given index to the end of the arrays into
+     * the free list.
+     * @param from The first free node.
+     */
+    private void linkFreeNodes(int from) {
+        for (int i = from; i < this.capacity - 1; i++) {
+            this.parent[i] = i + 1;
+        }
+        this.parent[this.capacity - 1] = NULL_NODE;
+        this.freeList = from;
+    }
+}
@@ -6,24 +6,142 @@ import biuoop.Sleeper;
 
 /**
  * Represent an animation runner.
+ * By default every frame advances the animation by 1 / framesPerSecond
+ * seconds. In fixed timestep mode, animations that support it are simulated
+ * in fixed steps measured against the real elapsed time, and drawn once per
+ * frame, so the simulation rate does not depend on the frame rate and the
+ * game does not slow down when a frame overruns.
+ * A runner that does not run in real time never sleeps, and counts every
+ * frame as 1 / framesPerSecond seconds however long it took, so a game runs
+ * as fast as it can, and the same way every time.
  */
 public class AnimationRunner {
-    private GUI gui;
+    private Display display;
     private int framesPerSecond;
     private Sleeper sleeper;
     private double dt;
+    private boolean fixedTimestep;
+    private double stepDt;
+    private int maxCatchUpSteps;
+    private boolean realTime;
+    private long frameLimit;
+    private long framesShown;
+    private FrameCapture capture;
 
     public static final int MILLI_SECONDS_PER_SECOND = 1000;
+    public static final double NANO_SECONDS_PER_SECOND = 1e9;
+    public static final int DEF_MAX_CATCH_UP_STEPS = 8;
+    // Run with -Darkanoid.stepspersecond=240 to simulate in fixed steps.
+    public static final String STEPS_PER_SECOND_PROPERTY = "arkanoid.stepspersecond";
 
     /**
      * Creates a new animation runner.
      * @param gui The GUI to run.
      */
     public AnimationRunner(GUI gui) {
-        this.gui = gui;
+        this(new GuiDisplay(gui));
+    }
+
+    /**
+     * Creates a new animation runner that shows frames on the given display.
+     * @param display The display.
+     */
+    public AnimationRunner(Display display) {
+        this.display = display;
+        this.realTime = true;
+        this.frameLimit = Long.MAX_VALUE;
+        this.framesShown = 0;
+        this.capture = FrameCapture.fromProperties(display.getWidth(),
+                display.getHeight());
         this.framesPerSecond = 60;
         this.sleeper = new Sleeper();
         this.dt = 1.0 / this.framesPerSecond;
+        this.fixedTimestep = false;
+        String stepsPerSecond = System.getProperty(STEPS_PER_SECOND_PROPERTY);
+        if (stepsPerSecond != null) {
+            this.setFixedTimestep(Integer.parseInt(stepsPerSecond),
+                    DEF_MAX_CATCH_UP_STEPS);
+        }
+    }
+
+    /**
+     * Set the number of frames drawn per second.
+     * @param fps The number of frames per second.
+     */
+    public void setFramesPerSecond(int fps) {
+        this.framesPerSecond = fps;
+        this.dt = 1.0 / this.framesPerSecond;
+    }
+
+    /**
+     * Simulate animations that support it in fixed steps.
+     * @param stepsPerSecond The number of simulation steps per second.
+     * @param maxCatchUp The maximal number of steps simulated before a
+     *                   frame is drawn. Time beyond that is dropped, and the
+     *                   game slows down instead of falling further behind.
+     */
+    public void setFixedTimestep(int stepsPerSecond, int maxCatchUp) {
+        this.fixedTimestep = true;
+        this.stepDt = 1.0 / stepsPerSecond;
+        this.maxCatchUpSteps = maxCatchUp;
+    }
+
+    /**
+     * Go back to advancing animations once per frame.
+     */
+    public void disableFixedTimestep() {
+        this.fixedTimestep = false;
+    }
+
+    /**
+     * Choose whether frames are paced by the clock.
+     * @param enabled True to sleep between frames and measure the real
+     *                elapsed time, false to run as fast as possible.
+     */
+    public void setRealTime(boolean enabled) {
+        this.realTime = enabled;
+    }
+
+    /**
+     * Stop running animations once the given number of frames were shown.
+     * Every run then returns at once, whether its animation stopped or not.
+     * @param maxFrames The most frames shown.
+     */
+    public void setFrameLimit(long maxFrames) {
+        this.frameLimit = maxFrames;
+    }
+
+    /**
+     * Returns true if the runner showed as many frames as it may.
+     * @return True if the frame limit was reached.
+     */
+    public boolean hasReachedFrameLimit() {
+        return this.framesShown >= this.frameLimit;
+    }
+
+    /**
+     * Record every frame shown from now on with the given capture, or stop
+     * recording.
+     * @param frameCapture The capture, or null.
+     */
+    public void setCapture(FrameCapture frameCapture) {
+        this.capture = frameCapture;
+    }
+
+    /**
+     * Returns the capture recording the frames shown.
+     * @return The capture, or null if the frames are not recorded.
+     */
+    public FrameCapture getCapture() {
+        return this.capture;
+    }
+
+    /**
+     * Returns the number of frames shown so far.
+     * @return The number of frames.
+     */
+    public long getFramesShown() {
+        return this.framesShown;
     }
 
     /**
@@ -31,13 +149,20 @@ public class AnimationRunner {
      * @param animation Animation object.
      */
     public void run(Animation animation) {
+        if (this.fixedTimestep && (animation instanceof FixedStepAnimation)) {
+            this.runInFixedSteps((FixedStepAnimation) animation);
+            return;
+        }
         int millisecondsPerFrame = MILLI_SECONDS_PER_SECOND
                 / this.framesPerSecond;
-        while (!animation.shouldStop()) {
+        while (!animation.shouldStop() && !this.hasReachedFrameLimit()) {
             long startTime = System.currentTimeMillis(); // timing
-            DrawSurface d = gui.getDrawSurface();
+            DrawSurface d = this.beginFrame();
             animation.doOneFrame(d, this.dt);
-            gui.show(d);
+            this.show(d);
+            if (!this.realTime) {
+                continue;
+            }
             long usedTime = System.currentTimeMillis() - startTime;
             long milliSecondLeftToSleep = millisecondsPerFrame - usedTime;
             if (milliSecondLeftToSleep > 0) {
@@ -46,12 +171,101 @@ public class AnimationRunner {
         }
     }
 
+    /**
+     * Runs an animation, simulating it in fixed steps that keep up with the
+     * real elapsed time, and drawing it once per frame.
+     * @param animation The animation.
+     */
+    private void runInFixedSteps(FixedStepAnimation animation) {
+        long nanosPerFrame = (long) (NANO_SECONDS_PER_SECOND
+                / this.framesPerSecond);
+        double accumulator = 0;
+        long previousTime = System.nanoTime();
+        while (!animation.shouldStop() && !this.hasReachedFrameLimit()) {
+            long frameStart = System.nanoTime();
+            if (this.realTime) {
+                accumulator += (frameStart - previousTime)
+                        / NANO_SECONDS_PER_SECOND;
+            } else {
+                accumulator += this.dt;
+            }
+            previousTime = frameStart;
+
+            int steps = 0;
+            while ((accumulator >= this.stepDt) && (steps < this.maxCatchUpSteps)
+                    && !animation.shouldStop()) {
+                animation.doOneStep(this.stepDt);
+                accumulator -= this.stepDt;
+                steps++;
+            }
+            if (steps == this.maxCatchUpSteps) {
+                accumulator = Math.min(accumulator, this.stepDt);
+            }
+            // A step may run a nested animation (the pause screen), whose
+            // time should not be simulated.
+            long afterSteps = System.nanoTime();
+            if (afterSteps - frameStart > nanosPerFrame * this.maxCatchUpSteps) {
+                previousTime = afterSteps;
+            }
+
+            DrawSurface d = this.beginFrame();
+            animation.drawFrame(d);
+            this.show(d);
+            if (!this.realTime) {
+                continue;
+            }
+
+            long milliSecondLeftToSleep = (frameStart + nanosPerFrame
+                    - System.nanoTime()) / (long) (NANO_SECONDS_PER_SECOND
+                    / MILLI_SECONDS_PER_SECOND);
+            if (milliSecondLeftToSleep > 0) {
+                this.sleeper.sleepFor(milliSecondLeftToSleep);
+            }
+        }
+    }
+
+    /**
+     * Returns the surface to draw the next frame on, which the capture
+     * records too if there is one.
+     * @return The draw surface.
+     */
+    private DrawSurface beginFrame() {
+        DrawSurface d = this.display.getDrawSurface();
+        if (this.capture != null) {
+            d = this.capture.beginFrame(d);
+        }
+        return d;
+    }
+
+    /**
+     * Show a frame, hand it to the capture, and count it.
+     * @param d The draw surface returned by beginFrame().
+     */
+    private void show(DrawSurface d) {
+        if (this.capture != null) {
+            d = this.capture.endFrame(d);
+        }
+        this.display.show(d);
+        this.framesShown++;
+    }
+
     /**
      * Get the animation's GUI.
-     * @return The animation's GUI.
+     * @return The animation's GUI, or null if it runs without a window.
      */
     public GUI getGui() {
-        return this.gui;
+        if (this.display instanceof GuiDisplay) {
+            return ((GuiDisplay) this.display).getGui();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the display the frames are shown on.
+     * @return The display.
+     */
+    public Display getDisplay() {
+        return this.display;
     }
 
     /**
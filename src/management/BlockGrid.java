@@ -0,0 +1,389 @@
+package management;
+
+import geometryprimitives.Rectangle;
+import sprites.Collidable;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Represents a row and column occupancy grid of collidables, for levels
+ * whose blocks are laid out on a grid. Every cell holds at most one
+ * collidable, so a cell is just a slot in a flat array: a trajectory steps
+ * through the cells it crosses and reads their occupants directly, and
+ * removing a collidable clears its cells. A collidable that does not fit
+ * the grid, because it lies outside of it or shares a cell with another
+ * one, such as the walls around the level, is kept in a short list that
+ * every query checks.
+ */
+public class BlockGrid implements CollidableIndex {
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int EMPTY = -1;
+    private static final int NOT_ON_GRID = -1;
+
+    private double originX;
+    private double originY;
+    private double cellWidth;
+    private double rowHeight;
+    private int columns;
+    private int rows;
+    private int[] cells;
+    private Collidable[] items;
+    private int[] layers;
+    private int[] firstColumn;
+    private int[] lastColumn;
+    private int[] firstRow;
+    private int[] lastRow;
+    private int nextId;
+    private Map<Collidable, Integer> ids;
+    private int[] overflow;
+    private int numOfOverflow;
+
+    /**
+     * Create a new, empty grid.
+     * @param layout The rows and columns of the grid.
+     */
+    public BlockGrid(GridLayout layout) {
+        this.originX = layout.getOriginX();
+        this.originY = layout.getOriginY();
+        this.cellWidth = layout.getCellWidth();
+        this.rowHeight = layout.getRowHeight();
+        this.columns = layout.getColumns();
+        this.rows = layout.getRows();
+        this.cells = new int[this.columns * this.rows];
+        Arrays.fill(this.cells, EMPTY);
+        this.items = new Collidable[INITIAL_CAPACITY];
+        this.layers = new int[INITIAL_CAPACITY];
+        this.firstColumn = new int[INITIAL_CAPACITY];
+        this.lastColumn = new int[INITIAL_CAPACITY];
+        this.firstRow = new int[INITIAL_CAPACITY];
+        this.lastRow = new int[INITIAL_CAPACITY];
+        this.nextId = 0;
+        this.ids = new IdentityHashMap<Collidable, Integer>();
+        this.overflow = new int[INITIAL_CAPACITY];
+        this.numOfOverflow = 0;
+    }
+
+    /**
+     * Add the given collidable to the grid, in the cells its collision
+     * rectangle covers if they are all free, or to the overflow list.
+     * @param c The collidable that will be added.
+     */
+    @Override
+    public void add(Collidable c) {
+        if (this.nextId == this.items.length) {
+            this.growEntries();
+        }
+        int id = this.nextId++;
+        this.items[id] = c;
+        this.layers[id] = c.getCollisionLayer();
+        this.ids.put(c, id);
+        this.place(id);
+    }
+
+    /**
+     * Remove the given collidable from the grid, clearing its cells.
+     * @param c The collidable that will be removed.
+     * @return True if removed, false otherwise.
+     */
+    @Override
+    public boolean remove(Collidable c) {
+        Integer id = this.ids.remove(c);
+        if (id == null) {
+            return false;
+        }
+        this.unplace(id);
+        this.items[id] = null;
+        return true;
+    }
+
+    @Override
+    public boolean contains(Collidable c) {
+        return this.ids.containsKey(c);
+    }
+
+    /**
+     * Move the given collidable to the cells its collision rectangle
+     * currently covers. Should be called whenever the collidable moves.
+     * @param c The collidable that moved.
+     */
+    @Override
+    public void update(Collidable c) {
+        Integer id = this.ids.get(c);
+        if (id == null) {
+            return;
+        }
+        this.unplace(id);
+        this.layers[id] = c.getCollisionLayer();
+        this.place(id);
+    }
+
+    @Override
+    public int size() {
+        return this.ids.size();
+    }
+
+    /**
+     * Offer the query every collidable of the overflow list, and every
+     * collidable in a cell within its radius of the cells its trajectory
+     * crosses, walking the cells from the start of the trajectory (DDA).
+     * The grid itself is only read, so queries may run concurrently.
+     * @param query The closest collision query.
+     */
+    @Override
+    public void query(ClosestCollisionQuery query) {
+        for (int i = 0; i < this.numOfOverflow; i++) {
+            int id = this.overflow[i];
+            if (query.collidesWithAny(this.layers[id])) {
+                query.consider(this.items[id], id);
+            }
+        }
+        double x0 = query.startX() - this.originX;
+        double y0 = query.startY() - this.originY;
+        double dx = query.endX() - query.startX();
+        double dy = query.endY() - query.startY();
+        // Collidables fill their cells exactly, so the cells to visit
+        // around the path reach the radius plus the padding of the bounds.
+        double reachDistance = query.radius() + BOUNDS_PADDING;
+        int reachX = (int) Math.ceil(reachDistance / this.cellWidth);
+        int reachY = (int) Math.ceil(reachDistance / this.rowHeight);
+
+        int cx = (int) Math.floor(x0 / this.cellWidth);
+        int cy = (int) Math.floor(y0 / this.rowHeight);
+        int endCx = (int) Math.floor((x0 + dx) / this.cellWidth);
+        int endCy = (int) Math.floor((y0 + dy) / this.rowHeight);
+        int stepX = Integer.signum(endCx - cx);
+        int stepY = Integer.signum(endCy - cy);
+        double tMaxX = firstBoundary(cx, stepX, x0, dx, this.cellWidth);
+        double tMaxY = firstBoundary(cy, stepY, y0, dy, this.rowHeight);
+        double tDeltaX = stepX == 0 ? Double.POSITIVE_INFINITY
+                : this.cellWidth / Math.abs(dx);
+        double tDeltaY = stepY == 0 ? Double.POSITIVE_INFINITY
+                : this.rowHeight / Math.abs(dy);
+
+        this.visitRange(cx - reachX, cy - reachY, cx + reachX, cy + reachY,
+                query);
+        while ((cx != endCx) || (cy != endCy)) {
+            double tEnter;
+            boolean alongX = (cy == endCy)
+                    || ((cx != endCx) && (tMaxX < tMaxY));
+            if (alongX) {
+                cx += stepX;
+                tEnter = tMaxX;
+                tMaxX += tDeltaX;
+            } else {
+                cy += stepY;
+                tEnter = tMaxY;
+                tMaxY += tDeltaY;
+            }
+            if (query.isBeyondClosest(tEnter)) {
+                return;
+            }
+            if (alongX) {
+                int column = cx + stepX * reachX;
+                this.visitRange(column, cy - reachY, column, cy + reachY,
+                        query);
+            } else {
+                int row = cy + stepY * reachY;
+                this.visitRange(cx - reachX, row, cx + reachX, row, query);
+            }
+        }
+    }
+
+    /**
+     * Add to the cache every collidable of the overflow list and in the
+     * cells its region overlaps, once each, if its bounds overlap the
+     * region too.
+     * @param cache The candidate cache being filled.
+     * @param query The query that lends its visit stamps.
+     */
+    @Override
+    public void collect(CandidateCache cache, ClosestCollisionQuery query) {
+        for (int i = 0; i < this.numOfOverflow; i++) {
+            this.collectEntry(this.overflow[i], cache);
+        }
+        int minCx = Math.max(0, (int) Math.floor(
+                (cache.regionMinX() - this.originX) / this.cellWidth));
+        int minCy = Math.max(0, (int) Math.floor(
+                (cache.regionMinY() - this.originY) / this.rowHeight));
+        int maxCx = Math.min(this.columns - 1, (int) Math.floor(
+                (cache.regionMaxX() - this.originX) / this.cellWidth));
+        int maxCy = Math.min(this.rows - 1, (int) Math.floor(
+                (cache.regionMaxY() - this.originY) / this.rowHeight));
+        for (int cy = minCy; cy <= maxCy; cy++) {
+            for (int cx = minCx; cx <= maxCx; cx++) {
+                int id = this.cells[cy * this.columns + cx];
+                if ((id != EMPTY) && query.firstVisit(id)) {
+                    this.collectEntry(id, cache);
+                }
+            }
+        }
+    }
+
+    /**
+     * Add the collidable of the given entry to the cache, if its padded
+     * bounds overlap the region of the cache.
+     * @param id The entry id.
+     * @param cache The candidate cache being filled.
+     */
+    private void collectEntry(int id, CandidateCache cache) {
+        Rectangle rect = this.items[id].getCollisionRectangle();
+        double minX = rect.getMinX() - BOUNDS_PADDING;
+        double minY = rect.getMinY() - BOUNDS_PADDING;
+        double maxX = rect.getMaxX() + BOUNDS_PADDING;
+        double maxY = rect.getMaxY() + BOUNDS_PADDING;
+        if (cache.overlapsRegion(minX, minY, maxX, maxY)) {
+            cache.add(this.items[id], id, minX, minY, maxX, maxY);
+        }
+    }
+
+    /**
+     * Visit every cell of the grid in the given range of cells.
+     * @param minCx The first column.
+     * @param minCy The first row.
+     * @param maxCx The last column.
+     * @param maxCy The last row.
+     * @param query The closest collision query.
+     */
+    private void visitRange(int minCx, int minCy, int maxCx, int maxCy,
+                            ClosestCollisionQuery query) {
+        int fromCx = Math.max(0, minCx);
+        int toCx = Math.min(this.columns - 1, maxCx);
+        int fromCy = Math.max(0, minCy);
+        int toCy = Math.min(this.rows - 1, maxCy);
+        for (int cy = fromCy; cy <= toCy; cy++) {
+            int rowStart = cy * this.columns;
+            for (int cx = fromCx; cx <= toCx; cx++) {
+                int id = this.cells[rowStart + cx];
+                if ((id != EMPTY) && query.collidesWithAny(this.layers[id])
+                        && query.firstVisit(id)) {
+                    query.consider(this.items[id], id);
+                }
+            }
+        }
+    }
+
+    /**
+     * Put the entry in the cells its collision rectangle covers, or in the
+     * overflow list if any of them is taken or outside of the grid.
+     * @param id The entry id.
+     */
+    private void place(int id) {
+        Rectangle rect = this.items[id].getCollisionRectangle();
+        int minCx = (int) Math.floor((rect.getMinX() - this.originX)
+                / this.cellWidth);
+        int minCy = (int) Math.floor((rect.getMinY() - this.originY)
+                / this.rowHeight);
+        int maxCx = (int) Math.ceil((rect.getMaxX() - this.originX)
+                / this.cellWidth) - 1;
+        int maxCy = (int) Math.ceil((rect.getMaxY() - this.originY)
+                / this.rowHeight) - 1;
+        maxCx = Math.max(minCx, maxCx);
+        maxCy = Math.max(minCy, maxCy);
+        if (this.isFree(minCx, minCy, maxCx, maxCy)) {
+            this.firstColumn[id] = minCx;
+            this.lastColumn[id] = maxCx;
+            this.firstRow[id] = minCy;
+            this.lastRow[id] = maxCy;
+            this.fill(id, id);
+            return;
+        }
+        this.firstColumn[id] = NOT_ON_GRID;
+        if (this.numOfOverflow == this.overflow.length) {
+            this.overflow = Arrays.copyOf(this.overflow,
+                    this.overflow.length * 2);
+        }
+        this.overflow[this.numOfOverflow++] = id;
+    }
+
+    /**
+     * Take the entry off the grid, clearing its cells, or out of the
+     * overflow list.
+     * @param id The entry id.
+     */
+    private void unplace(int id) {
+        if (this.firstColumn[id] != NOT_ON_GRID) {
+            this.fill(id, EMPTY);
+            return;
+        }
+        for (int i = 0; i < this.numOfOverflow; i++) {
+            if (this.overflow[i] == id) {
+                this.overflow[i] = this.overflow[--this.numOfOverflow];
+                return;
+            }
+        }
+    }
+
+    /**
+     * Set every cell of the entry to the given value.
+     * @param id The entry id.
+     * @param value The entry id to set, or EMPTY to clear the cells.
+     */
+    private void fill(int id, int value) {
+        for (int cy = this.firstRow[id]; cy <= this.lastRow[id]; cy++) {
+            int rowStart = cy * this.columns;
+            for (int cx = this.firstColumn[id]; cx <= this.lastColumn[id]; cx++) {
+                this.cells[rowStart + cx] = value;
+            }
+        }
+    }
+
+    /**
+     * Returns true if the given range of cells is inside the grid, and
+     * none of its cells is taken.
+     * @param minCx The first column.
+     * @param minCy The first row.
+     * @param maxCx The last column.
+     * @param maxCy The last row.
+     * @return True if the range is free.
+     */
+    private boolean isFree(int minCx, int minCy, int maxCx, int maxCy) {
+        if ((minCx < 0) || (minCy < 0) || (maxCx >= this.columns)
+                || (maxCy >= this.rows)) {
+            return false;
+        }
+        for (int cy = minCy; cy <= maxCy; cy++) {
+            int rowStart = cy * this.columns;
+            for (int cx = minCx; cx <= maxCx; cx++) {
+                if (this.cells[rowStart + cx] != EMPTY) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Double the size of the entry arrays.
+     */
+    private void growEntries() {
+        int capacity = this.items.length * 2;
+        this.items = Arrays.copyOf(this.items, capacity);
+        this.layers = Arrays.copyOf(this.layers, capacity);
+        this.firstColumn = Arrays.copyOf(this.firstColumn, capacity);
+        this.lastColumn = Arrays.copyOf(this.lastColumn, capacity);
+        this.firstRow = Arrays.copyOf(this.firstRow, capacity);
+        this.lastRow = Arrays.copyOf(this.lastRow, capacity);
+    }
+
+    /**
+     * Returns the trajectory parameter at which the first cell boundary is
+     * crossed along one axis.
+     * @param cell The starting cell index along the axis.
+     * @param step The step direction along the axis.
+     * @param start The starting coordinate along the axis, from the origin.
+     * @param delta The change of the coordinate along the trajectory.
+     * @param size The size of a cell along the axis.
+     * @return The trajectory parameter of the first boundary.
+     */
+    private static double firstBoundary(int cell, int step, double start,
+                                        double delta, double size) {
+        if (step == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double boundary = (step > 0 ? cell + 1 : cell) * size;
+        return (boundary - start) / delta;
+    }
+}
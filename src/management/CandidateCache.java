@@ -0,0 +1,255 @@
+package management;
+
+import sprites.Collidable;
+
+import java.util.Arrays;
+
+/**
+ * Represents the static collidables around one mover, kept from one tick to
+ * the next. The cache holds every static collidable that overlaps a region
+ * around the path of the mover, enlarged by a safe margin. As long as the
+ * next paths of the mover stay inside that region, they can only hit the
+ * cached collidables, so the broad phase is skipped and just those few are
+ * considered. Once a path leaves the region, or the static collidables
+ * change, the cache is filled again around the new path.
+ * Collidables removed from a frozen environment stay in the cache, and are
+ * skipped by the query like the ones left in the static index.
+ * A cache belongs to a single mover, and is only used by the thread that
+ * runs the queries of that mover.
+ */
+public class CandidateCache {
+
+    public static final double DEF_MARGIN = 40;
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final long NO_VERSION = -1;
+
+    private double margin;
+    private double regionMinX;
+    private double regionMinY;
+    private double regionMaxX;
+    private double regionMaxY;
+    private long version;
+    private Collidable[] items;
+    private long[] orders;
+    private double[] minX;
+    private double[] minY;
+    private double[] maxX;
+    private double[] maxY;
+    private int size;
+    private long hits;
+    private long misses;
+
+    /**
+     * Create a new, empty cache with the default margin.
+     */
+    public CandidateCache() {
+        this(DEF_MARGIN);
+    }
+
+    /**
+     * Create a new, empty cache.
+     * @param margin How far around the path of the mover the region of the
+     *               cache reaches.
+     */
+    public CandidateCache(double margin) {
+        if (margin < 0) {
+            throw new IllegalArgumentException("The margin must not be"
+                    + " negative, got: " + margin);
+        }
+        this.margin = margin;
+        this.version = NO_VERSION;
+        this.items = new Collidable[INITIAL_CAPACITY];
+        this.orders = new long[INITIAL_CAPACITY];
+        this.minX = new double[INITIAL_CAPACITY];
+        this.minY = new double[INITIAL_CAPACITY];
+        this.maxX = new double[INITIAL_CAPACITY];
+        this.maxY = new double[INITIAL_CAPACITY];
+        this.size = 0;
+        this.hits = 0;
+        this.misses = 0;
+    }
+
+    /**
+     * Returns true if the cache holds every static collidable the given
+     * swept bounds may touch: they are inside its region, and the static
+     * collidables did not change since it was filled.
+     * @param sweptMinX The left X of the swept bounds.
+     * @param sweptMinY The upper Y of the swept bounds.
+     * @param sweptMaxX The right X of the swept bounds.
+     * @param sweptMaxY The lower Y of the swept bounds.
+     * @param staticVersion The current version of the static collidables.
+     * @return True if the cache covers the swept bounds.
+     */
+    public boolean covers(double sweptMinX, double sweptMinY, double sweptMaxX,
+                          double sweptMaxY, long staticVersion) {
+        return (this.version == staticVersion)
+                && (sweptMinX >= this.regionMinX)
+                && (sweptMinY >= this.regionMinY)
+                && (sweptMaxX <= this.regionMaxX)
+                && (sweptMaxY <= this.regionMaxY);
+    }
+
+    /**
+     * Empty the cache, and move its region around the given swept bounds.
+     * The index then adds the collidables that overlap the new region.
+     * @param sweptMinX The left X of the swept bounds.
+     * @param sweptMinY The upper Y of the swept bounds.
+     * @param sweptMaxX The right X of the swept bounds.
+     * @param sweptMaxY The lower Y of the swept bounds.
+     * @param staticVersion The current version of the static collidables.
+     */
+    public void refill(double sweptMinX, double sweptMinY, double sweptMaxX,
+                       double sweptMaxY, long staticVersion) {
+        for (int i = 0; i < this.size; i++) {
+            this.items[i] = null;
+        }
+        this.size = 0;
+        this.regionMinX = sweptMinX - this.margin;
+        this.regionMinY = sweptMinY - this.margin;
+        this.regionMaxX = sweptMaxX + this.margin;
+        this.regionMaxY = sweptMaxY + this.margin;
+        this.version = staticVersion;
+    }
+
+    /**
+     * Make the next query fill the cache again.
+     */
+    public void invalidate() {
+        this.version = NO_VERSION;
+    }
+
+    /**
+     * Returns true if the given bounds overlap the region of the cache.
+     * @param boundsMinX The left X of the bounds.
+     * @param boundsMinY The upper Y of the bounds.
+     * @param boundsMaxX The right X of the bounds.
+     * @param boundsMaxY The lower Y of the bounds.
+     * @return True if the bounds overlap the region.
+     */
+    public boolean overlapsRegion(double boundsMinX, double boundsMinY,
+                                  double boundsMaxX, double boundsMaxY) {
+        return (boundsMinX <= this.regionMaxX) && (this.regionMinX <= boundsMaxX)
+                && (boundsMinY <= this.regionMaxY)
+                && (this.regionMinY <= boundsMaxY);
+    }
+
+    /**
+     * Returns the left X of the region of the cache.
+     * @return The left X of the region.
+     */
+    public double regionMinX() {
+        return this.regionMinX;
+    }
+
+    /**
+     * Returns the upper Y of the region of the cache.
+     * @return The upper Y of the region.
+     */
+    public double regionMinY() {
+        return this.regionMinY;
+    }
+
+    /**
+     * Returns the right X of the region of the cache.
+     * @return The right X of the region.
+     */
+    public double regionMaxX() {
+        return this.regionMaxX;
+    }
+
+    /**
+     * Returns the lower Y of the region of the cache.
+     * @return The lower Y of the region.
+     */
+    public double regionMaxY() {
+        return this.regionMaxY;
+    }
+
+    /**
+     * Add a collidable to the cache. Called by the index while it fills it.
+     * @param c The collidable.
+     * @param order The order the index breaks ties by.
+     * @param boundsMinX The left X of the padded collidable bounds.
+     * @param boundsMinY The upper Y of the padded collidable bounds.
+     * @param boundsMaxX The right X of the padded collidable bounds.
+     * @param boundsMaxY The lower Y of the padded collidable bounds.
+     */
+    public void add(Collidable c, long order, double boundsMinX,
+                    double boundsMinY, double boundsMaxX, double boundsMaxY) {
+        if (this.size == this.items.length) {
+            int capacity = this.items.length * 2;
+            this.items = Arrays.copyOf(this.items, capacity);
+            this.orders = Arrays.copyOf(this.orders, capacity);
+            this.minX = Arrays.copyOf(this.minX, capacity);
+            this.minY = Arrays.copyOf(this.minY, capacity);
+            this.maxX = Arrays.copyOf(this.maxX, capacity);
+            this.maxY = Arrays.copyOf(this.maxY, capacity);
+        }
+        this.items[this.size] = c;
+        this.orders[this.size] = order;
+        this.minX[this.size] = boundsMinX;
+        this.minY[this.size] = boundsMinY;
+        this.maxX[this.size] = boundsMaxX;
+        this.maxY[this.size] = boundsMaxY;
+        this.size++;
+    }
+
+    /**
+     * Offer the query every cached collidable whose bounds overlap the
+     * given swept bounds.
+     * @param query The query.
+     * @param sweptMinX The left X of the swept bounds.
+     * @param sweptMinY The upper Y of the swept bounds.
+     * @param sweptMaxX The right X of the swept bounds.
+     * @param sweptMaxY The lower Y of the swept bounds.
+     */
+    public void query(ClosestCollisionQuery query, double sweptMinX,
+                      double sweptMinY, double sweptMaxX, double sweptMaxY) {
+        for (int i = 0; i < this.size; i++) {
+            if ((this.minX[i] <= sweptMaxX) && (sweptMinX <= this.maxX[i])
+                    && (this.minY[i] <= sweptMaxY)
+                    && (sweptMinY <= this.maxY[i])) {
+                query.consider(this.items[i], this.orders[i]);
+            }
+        }
+    }
+
+    /**
+     * Count a query answered from the cache.
+     */
+    void countHit() {
+        this.hits++;
+    }
+
+    /**
+     * Count a query that had to fill the cache again.
+     */
+    void countMiss() {
+        this.misses++;
+    }
+
+    /**
+     * Returns the number of collidables in the cache.
+     * @return The number of collidables in the cache.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the number of queries answered from the cache.
+     * @return The number of cache hits.
+     */
+    public long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * Returns the number of queries that had to fill the cache again.
+     * @return The number of cache misses.
+     */
+    public long getMisses() {
+        return this.misses;
+    }
+}
@@ -0,0 +1,397 @@
+package management;
+
+import geometryprimitives.FixedPoint;
+import geometryprimitives.Line;
+import geometryprimitives.Point;
+import geometryprimitives.Rectangle;
+import geometryprimitives.SegmentHit;
+import sprites.Collidable;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Represents a single closest collision query. Candidates are offered to the
+ * query one by one, and it keeps the collision that is closest to the start
+ * of the trajectory. Ties are broken by the order in which the candidates
+ * were added to the environment, so the result never depends on the order
+ * the candidates are visited in.
+ * A query is reused for many trajectories, and allocates nothing until a
+ * result is asked for. It also holds the scratch state the indices need
+ * while they are traversed, so every thread querying the same environment
+ * needs a query of its own.
+ * A query may also be for a circle moving along the trajectory, in which
+ * case the collidables are hit where the circle first touches them.
+ * A fixed point query tests the candidates in 16.16 fixed point
+ * arithmetic, so its results are the same on every platform. Its
+ * trajectory and radius are moved to the closest fixed point numbers, and
+ * its results are fixed point numbers, kept exactly in doubles.
+ * Every query is for a mover in a collision layer, a ball by default, and
+ * only considers the collidables in the layers of its collision mask whose
+ * own masks let that mover hit them.
+ */
+public class ClosestCollisionQuery {
+
+    public static final double PARAM_EPSILON = 1e-9;
+
+    private double startX;
+    private double startY;
+    private double endX;
+    private double endY;
+    private double radius;
+    private boolean fixedPoint;
+    private int moverLayer;
+    private int collisionMask;
+    private long fixedStartX;
+    private long fixedStartY;
+    private long fixedEndX;
+    private long fixedEndY;
+    private long fixedRadius;
+    private SegmentHit hit;
+    private Collidable closestObject;
+    private double closestT;
+    private double closestX;
+    private double closestY;
+    private long closestOrder;
+    private Set<Collidable> removed;
+    private int[] visitStamps;
+    private int visitStamp;
+    private int[] stack;
+    private double[] entryParams;
+    private double[] exitParams;
+
+    /**
+     * Create a new query.
+     */
+    public ClosestCollisionQuery() {
+        this.hit = new SegmentHit();
+        this.fixedPoint = false;
+        this.moverLayer = Collidable.BALL_LAYER;
+        this.collisionMask = Collidable.ALL_LAYERS;
+        this.visitStamps = new int[0];
+        this.visitStamp = 0;
+        this.stack = new int[0];
+        this.entryParams = new double[0];
+        this.exitParams = new double[0];
+    }
+
+    /**
+     * Switch between testing the candidates in floating point and in fixed
+     * point. Takes effect from the next reset.
+     * @param enabled True to test the candidates in fixed point.
+     */
+    public void setFixedPoint(boolean enabled) {
+        this.fixedPoint = enabled;
+    }
+
+    /**
+     * Returns true if the query tests the candidates in fixed point.
+     * @return True if the query tests the candidates in fixed point.
+     */
+    public boolean isFixedPoint() {
+        return this.fixedPoint;
+    }
+
+    /**
+     * Set the collision layer of the mover the query is for.
+     * @param layer The layer of the mover, one of the layer bits.
+     */
+    public void setMoverLayer(int layer) {
+        this.moverLayer = layer;
+    }
+
+    /**
+     * Returns the collision layer of the mover the query is for.
+     * @return The layer of the mover.
+     */
+    public int moverLayer() {
+        return this.moverLayer;
+    }
+
+    /**
+     * Set the layers of the collidables the query considers.
+     * @param mask The layers the mover may hit.
+     */
+    public void setCollisionMask(int mask) {
+        this.collisionMask = mask;
+    }
+
+    /**
+     * Returns the layers of the collidables the query considers.
+     * @return The layers the mover may hit.
+     */
+    public int collisionMask() {
+        return this.collisionMask;
+    }
+
+    /**
+     * Returns true if the query may consider collidables in any of the
+     * given layers. Indices use it to skip whole groups of collidables.
+     * @param layers The layers.
+     * @return True if the mover may hit any of the layers.
+     */
+    public boolean collidesWithAny(int layers) {
+        return (layers & this.collisionMask) != 0;
+    }
+
+    /**
+     * Start a new query for the given trajectory.
+     * @param traj The trajectory of the possibly colliding object.
+     */
+    public void reset(Line traj) {
+        this.reset(traj.start().getX(), traj.start().getY(),
+                traj.end().getX(), traj.end().getY());
+    }
+
+    /**
+     * Start a new query for the trajectory (x0,y0)-(x1,y1).
+     * @param x0 The trajectory start X.
+     * @param y0 The trajectory start Y.
+     * @param x1 The trajectory end X.
+     * @param y1 The trajectory end Y.
+     */
+    public void reset(double x0, double y0, double x1, double y1) {
+        this.reset(x0, y0, x1, y1, 0);
+    }
+
+    /**
+     * Start a new query for a circle of the given radius, whose center moves
+     * along the trajectory (x0,y0)-(x1,y1).
+     * @param x0 The trajectory start X.
+     * @param y0 The trajectory start Y.
+     * @param x1 The trajectory end X.
+     * @param y1 The trajectory end Y.
+     * @param r The circle radius, 0 for a point.
+     */
+    public void reset(double x0, double y0, double x1, double y1, double r) {
+        this.radius = r;
+        this.startX = x0;
+        this.startY = y0;
+        this.endX = x1;
+        this.endY = y1;
+        if (this.fixedPoint) {
+            this.fixedStartX = FixedPoint.fromDouble(x0);
+            this.fixedStartY = FixedPoint.fromDouble(y0);
+            this.fixedEndX = FixedPoint.fromDouble(x1);
+            this.fixedEndY = FixedPoint.fromDouble(y1);
+            this.fixedRadius = FixedPoint.fromDouble(r);
+        }
+        this.closestObject = null;
+        this.closestT = Double.POSITIVE_INFINITY;
+        this.closestOrder = Long.MAX_VALUE;
+        this.visitStamp++;
+        if (this.visitStamp == 0) {
+            Arrays.fill(this.visitStamps, 0);
+            this.visitStamp = 1;
+        }
+    }
+
+    /**
+     * Returns true the first time it is called with the given candidate id
+     * during the current query, and false afterwards. Used by indices that
+     * may reach the same candidate more than once.
+     * @param id The dense id of the candidate.
+     * @return True if this is the first visit of the candidate.
+     */
+    public boolean firstVisit(int id) {
+        if (id >= this.visitStamps.length) {
+            this.visitStamps = Arrays.copyOf(this.visitStamps,
+                    Math.max(id + 1, this.visitStamps.length * 2));
+        }
+        if (this.visitStamps[id] == this.visitStamp) {
+            return false;
+        }
+        this.visitStamps[id] = this.visitStamp;
+        return true;
+    }
+
+    /**
+     * Set the collidables the query should ignore, because they were
+     * removed from the environment but are still in its index.
+     * @param collidables The removed collidables, or null if there are none.
+     */
+    public void setRemoved(Set<Collidable> collidables) {
+        this.removed = collidables;
+    }
+
+    /**
+     * Returns a stack an index can use to traverse itself.
+     * @param minLength The minimal length of the stack.
+     * @return The traversal stack.
+     */
+    public int[] traversalStack(int minLength) {
+        if (this.stack.length < minLength) {
+            this.stack = new int[Math.max(minLength, this.stack.length * 2)];
+        }
+        return this.stack;
+    }
+
+    /**
+     * Returns an array an index can use to keep the entry parameters of its
+     * candidates while it tests them in batches.
+     * @param minLength The minimal length of the array.
+     * @return The entry parameters array.
+     */
+    public double[] entryParams(int minLength) {
+        if (this.entryParams.length < minLength) {
+            this.entryParams = new double[Math.max(minLength,
+                    this.entryParams.length * 2)];
+        }
+        return this.entryParams;
+    }
+
+    /**
+     * Returns an array an index can use to keep the exit parameters of its
+     * candidates while it tests them in batches.
+     * @param minLength The minimal length of the array.
+     * @return The exit parameters array.
+     */
+    public double[] exitParams(int minLength) {
+        if (this.exitParams.length < minLength) {
+            this.exitParams = new double[Math.max(minLength,
+                    this.exitParams.length * 2)];
+        }
+        return this.exitParams;
+    }
+
+    /**
+     * Check the given candidate against the trajectory, and keep it if it is
+     * the closest collision found so far.
+     * @param c The candidate collidable.
+     * @param order The order in which the candidate was added.
+     */
+    public void consider(Collidable c, long order) {
+        if (!this.collidesWithAny(c.getCollisionLayer())
+                || ((c.getCollisionMask() & this.moverLayer) == 0)) {
+            return;
+        }
+        Rectangle rect = c.getCollisionRectangle();
+        boolean hits;
+        if (this.fixedPoint) {
+            hits = rect.sweepCircleFixed(this.fixedStartX, this.fixedStartY,
+                    this.fixedEndX, this.fixedEndY, this.fixedRadius, this.hit);
+        } else if (this.radius > 0) {
+            hits = rect.sweepCircle(this.startX, this.startY, this.endX,
+                    this.endY, this.radius, this.hit);
+        } else {
+            hits = rect.intersectSegment(this.startX, this.startY, this.endX,
+                    this.endY, this.hit);
+        }
+        if (!hits) {
+            return;
+        }
+        double t = this.hit.getT();
+        if (((t < this.closestT)
+                || ((t == this.closestT) && (order < this.closestOrder)))
+                && ((this.removed == null) || !this.removed.contains(c))) {
+            this.closestObject = c;
+            this.closestT = t;
+            this.closestX = this.hit.getX();
+            this.closestY = this.hit.getY();
+            this.closestOrder = order;
+        }
+    }
+
+    /**
+     * Returns true if nothing that starts after the given trajectory
+     * parameter can be the closest collision.
+     * @param t The trajectory parameter, 0 at its start and 1 at its end.
+     * @return True if candidates beyond the parameter can be skipped.
+     */
+    public boolean isBeyondClosest(double t) {
+        return t > this.closestT + PARAM_EPSILON;
+    }
+
+    /**
+     * Returns the trajectory start X.
+     * @return The trajectory start X.
+     */
+    public double startX() {
+        return this.startX;
+    }
+
+    /**
+     * Returns the trajectory start Y.
+     * @return The trajectory start Y.
+     */
+    public double startY() {
+        return this.startY;
+    }
+
+    /**
+     * Returns the trajectory end X.
+     * @return The trajectory end X.
+     */
+    public double endX() {
+        return this.endX;
+    }
+
+    /**
+     * Returns the trajectory end Y.
+     * @return The trajectory end Y.
+     */
+    public double endY() {
+        return this.endY;
+    }
+
+    /**
+     * Returns the radius of the moving circle, 0 for a point.
+     * @return The radius of the moving circle.
+     */
+    public double radius() {
+        return this.radius;
+    }
+
+    /**
+     * Returns true if a collision was found.
+     * @return True if a collision was found.
+     */
+    public boolean hasResult() {
+        return this.closestObject != null;
+    }
+
+    /**
+     * Returns the closest collidable found, or null if there is none.
+     * @return The closest collidable.
+     */
+    public Collidable closestObject() {
+        return this.closestObject;
+    }
+
+    /**
+     * Returns the trajectory parameter of the closest collision, 0 at the
+     * start of the trajectory and 1 at its end.
+     * @return The trajectory parameter of the closest collision.
+     */
+    public double closestT() {
+        return this.closestT;
+    }
+
+    /**
+     * Returns the X coordinate of the closest collision point.
+     * @return The X coordinate of the closest collision point.
+     */
+    public double closestX() {
+        return this.closestX;
+    }
+
+    /**
+     * Returns the Y coordinate of the closest collision point.
+     * @return The Y coordinate of the closest collision point.
+     */
+    public double closestY() {
+        return this.closestY;
+    }
+
+    /**
+     * Returns the closest collision found, or null if there is none.
+     * @return The closest collision information.
+     */
+    public CollisionInfo result() {
+        if (this.closestObject == null) {
+            return null;
+        }
+        return new CollisionInfo(new Point(this.closestX, this.closestY),
+                this.closestObject);
+    }
+}
@@ -0,0 +1,68 @@
+package management;
+
+import sprites.Collidable;
+
+/**
+ * Represents a broad phase index of collidable objects. An index narrows
+ * down the collidables a trajectory may hit, and offers only those to a
+ * closest collision query.
+ */
+public interface CollidableIndex {
+
+    // Collision points are rounded, so bounds are indexed slightly larger
+    // than they are to never miss a candidate.
+    double BOUNDS_PADDING = 0.01;
+
+    /**
+     * Add the given collidable to the index.
+     * @param c The collidable that will be added.
+     */
+    void add(Collidable c);
+
+    /**
+     * Remove the given collidable from the index.
+     * @param c The collidable that will be removed.
+     * @return True if removed, false otherwise.
+     */
+    boolean remove(Collidable c);
+
+    /**
+     * Returns true if the given collidable is in the index.
+     * @param c The collidable.
+     * @return True if the collidable is in the index.
+     */
+    boolean contains(Collidable c);
+
+    /**
+     * Notify the index that the collision rectangle of the given collidable
+     * has moved.
+     * @param c The collidable that moved.
+     */
+    void update(Collidable c);
+
+    /**
+     * Returns the number of collidables in the index.
+     * @return The number of collidables in the index.
+     */
+    int size();
+
+    /**
+     * Offer the query every collidable its trajectory may collide with.
+     * Queries only read the index, and keep their scratch state in the
+     * query, so several queries may run at the same time as long as the
+     * index is not changed meanwhile.
+     * @param query The closest collision query.
+     */
+    void query(ClosestCollisionQuery query);
+
+    /**
+     * Add to the cache every collidable whose padded bounds overlap the
+     * region of the cache, with the same order its queries break ties by.
+     * The query only lends its scratch state, and its visit stamps are
+     * consumed, so the same query may only mark collidables as visited again
+     * after it is reset; offering it candidates meanwhile is fine.
+     * @param cache The candidate cache being filled.
+     * @param query The query that lends its scratch state.
+     */
+    void collect(CandidateCache cache, ClosestCollisionQuery query);
+}
@@ -0,0 +1,120 @@
+package management;
+
+import geometryprimitives.Point;
+import sprites.Collidable;
+
+import java.util.Arrays;
+
+/**
+ * Represents the results of a batch of closest collision queries, one per
+ * trajectory, kept in primitive columns. A batch is reused from frame to
+ * frame, and nothing is allocated once it is large enough.
+ */
+public class CollisionBatch {
+
+    private Collidable[] objects;
+    private double[] params;
+    private double[] xs;
+    private double[] ys;
+
+    /**
+     * Create a new, empty batch.
+     */
+    public CollisionBatch() {
+        this.objects = new Collidable[0];
+        this.params = new double[0];
+        this.xs = new double[0];
+        this.ys = new double[0];
+    }
+
+    /**
+     * Make room for the results of the given number of trajectories.
+     * @param count The number of trajectories.
+     */
+    public void ensureCapacity(int count) {
+        if (this.objects.length >= count) {
+            return;
+        }
+        int capacity = Math.max(count, this.objects.length * 2);
+        this.objects = Arrays.copyOf(this.objects, capacity);
+        this.params = Arrays.copyOf(this.params, capacity);
+        this.xs = Arrays.copyOf(this.xs, capacity);
+        this.ys = Arrays.copyOf(this.ys, capacity);
+    }
+
+    /**
+     * Keep the result of the query in the given position.
+     * @param i The position of the trajectory in the batch.
+     * @param q The query, after it was run.
+     */
+    void set(int i, ClosestCollisionQuery q) {
+        this.objects[i] = q.closestObject();
+        if (q.hasResult()) {
+            this.params[i] = q.closestT();
+            this.xs[i] = q.closestX();
+            this.ys[i] = q.closestY();
+        }
+    }
+
+    /**
+     * Returns true if the trajectory in the given position collides.
+     * @param i The position of the trajectory in the batch.
+     * @return True if the trajectory collides.
+     */
+    public boolean hasResult(int i) {
+        return this.objects[i] != null;
+    }
+
+    /**
+     * Returns the closest collidable of the given trajectory, or null.
+     * @param i The position of the trajectory in the batch.
+     * @return The closest collidable.
+     */
+    public Collidable closestObject(int i) {
+        return this.objects[i];
+    }
+
+    /**
+     * Returns the trajectory parameter of the closest collision of the given
+     * trajectory, 0 at its start and 1 at its end.
+     * @param i The position of the trajectory in the batch.
+     * @return The trajectory parameter of the closest collision.
+     */
+    public double closestT(int i) {
+        return this.params[i];
+    }
+
+    /**
+     * Returns the X coordinate of the closest collision point of the given
+     * trajectory.
+     * @param i The position of the trajectory in the batch.
+     * @return The X coordinate of the closest collision point.
+     */
+    public double closestX(int i) {
+        return this.xs[i];
+    }
+
+    /**
+     * Returns the Y coordinate of the closest collision point of the given
+     * trajectory.
+     * @param i The position of the trajectory in the batch.
+     * @return The Y coordinate of the closest collision point.
+     */
+    public double closestY(int i) {
+        return this.ys[i];
+    }
+
+    /**
+     * Returns the closest collision of the given trajectory, or null if
+     * there is none.
+     * @param i The position of the trajectory in the batch.
+     * @return The closest collision information.
+     */
+    public CollisionInfo result(int i) {
+        if (this.objects[i] == null) {
+            return null;
+        }
+        return new CollisionInfo(new Point(this.xs[i], this.ys[i]),
+                this.objects[i]);
+    }
+}
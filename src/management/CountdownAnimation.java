@@ -1,7 +1,6 @@
 package management;
 
 import biuoop.DrawSurface;
-import biuoop.Sleeper;
 
 import java.awt.Color;
 
@@ -11,13 +10,14 @@ import java.awt.Color;
  * a countdown from countFrom back to 1, where each number will
  * appear on the screen for (numOfSeconds / countFrom) secods, before
  * it is replaced with the next one.
+ * The countdown follows the time the animation runner passes to it rather
+ * than sleeping, so it takes no real time when the game runs headless.
  */
 public class CountdownAnimation implements Animation {
     private double numberOfSeconds;
     private int cntFrom;
     private SpriteCollection gameScreen;
-    private Counter timeLeftInSeconds;
-    private boolean shouldStop;
+    private double elapsedSeconds;
 
     /**
      * Creates a countdown animation.
@@ -31,9 +31,7 @@ public class CountdownAnimation implements Animation {
         this.numberOfSeconds = numOfSeconds;
         this.cntFrom = countFrom;
         this.gameScreen = gameScreen;
-        this.timeLeftInSeconds = new Counter();
-        this.shouldStop = false;
-        this.timeLeftInSeconds.increase((int) this.numberOfSeconds);
+        this.elapsedSeconds = 0;
     }
 
     /**
@@ -45,16 +43,14 @@ public class CountdownAnimation implements Animation {
     public void doOneFrame(DrawSurface d, double dt) {
         this.gameScreen.drawAllOn(d);
         if (!this.shouldStop()) {
+            int count = this.cntFrom - (int) (this.elapsedSeconds
+                    / (this.numberOfSeconds / this.cntFrom));
             d.setColor(Color.BLACK);
-            d.drawText(365, 380, String.valueOf(this.timeLeftInSeconds.getValue()),
-                    120);
+            d.drawText(365, 380, String.valueOf(count), 120);
             d.setColor(Color.WHITE);
-            d.drawText(380, 380, String.valueOf(this.timeLeftInSeconds.getValue()),
-                    80);
+            d.drawText(380, 380, String.valueOf(count), 80);
         }
-        Sleeper sleeper = new Sleeper();
-        sleeper.sleepFor(650);
-        timeLeftInSeconds.decrease(1);
+        this.elapsedSeconds += dt;
     }
 
     /**
@@ -63,6 +59,6 @@ public class CountdownAnimation implements Animation {
      */
     @Override
     public boolean shouldStop() {
-        return this.timeLeftInSeconds.getValue() < 0;
+        return this.elapsedSeconds >= this.numberOfSeconds;
     }
 }
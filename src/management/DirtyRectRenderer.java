@@ -0,0 +1,203 @@
+package management;
+
+import biuoop.DrawSurface;
+import sprites.Sprite;
+import sprites.TrackedSprite;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+/**
+ * Represents a renderer that keeps the last frame of a sprite collection in
+ * an off-screen image, and repaints only the rectangles of it that changed.
+ * Before every frame each sprite adds where it was drawn and where it will
+ * be drawn to a dirty region. Every rectangle of the region is then cleared
+ * and the sprites that overlap it are drawn into it again, in their order,
+ * and the image is drawn to the screen in a single call.
+ * When most of the screen changes, or it changes in more places than the
+ * region holds, or some sprite cannot tell where it changes it, the sprites
+ * are drawn straight to the screen instead, and the image is painted whole
+ * again once the changes become small.
+ * The image is only used while the sprites cover all of it opaquely, as
+ * it is drawn from an opaque copy, which is only copied. Otherwise the
+ * sprites are always drawn straight to the screen.
+ */
+public class DirtyRectRenderer {
+
+    // Run with -Darkanoid.dirtyrectangles=true to repaint only what changed.
+    public static final String DIRTY_RECTANGLES_PROPERTY = "arkanoid.dirtyrectangles";
+    // Beyond this part of the screen, the sprites are drawn straight to it.
+    public static final double FULL_REDRAW_FRACTION = 0.5;
+
+    private DirtyRegion region;
+    private DirtyRegion removed;
+    private ImageDrawSurface surface;
+    private BufferedImage opaqueCopy;
+    private boolean valid;
+    private boolean disabled;
+    private Rectangle[] bounds;
+    private long fullRedraws;
+    private long partialRedraws;
+    private long repaintedPixels;
+
+    /**
+     * Create a new renderer, with no image yet.
+     */
+    public DirtyRectRenderer() {
+        this.region = new DirtyRegion(0, 0);
+        this.removed = new DirtyRegion(0, 0);
+        this.surface = null;
+        this.opaqueCopy = null;
+        this.valid = false;
+        this.disabled = false;
+        this.bounds = new Rectangle[0];
+        this.fullRedraws = 0;
+        this.partialRedraws = 0;
+        this.repaintedPixels = 0;
+    }
+
+    /**
+     * Returns true if sprite collections repaint only what changed, as
+     * chosen by the arkanoid.dirtyrectangles system property (false by
+     * default, as the static layer already draws the sprites that do not
+     * change in a single call, and the screen is drawn whole anyway).
+     * @return True if dirty rectangles are used.
+     */
+    public static boolean isEnabledByDefault() {
+        return Boolean.parseBoolean(System.getProperty(DIRTY_RECTANGLES_PROPERTY,
+                "false"));
+    }
+
+    /**
+     * Repaint where a sprite that was removed from the collection was drawn.
+     * @param s The removed sprite.
+     */
+    public void spriteRemoved(Sprite s) {
+        if (s instanceof TrackedSprite) {
+            ((TrackedSprite) s).addDirtyRectangles(this.removed);
+        } else {
+            this.valid = false;
+        }
+    }
+
+    /**
+     * Draw the given sprites to the given surface, repainting only what
+     * changed since the last frame when possible.
+     * @param sprites The sprites, from the lowest to the highest.
+     * @param d The draw surface.
+     */
+    public void drawAll(List<Sprite> sprites, DrawSurface d) {
+        int width = d.getWidth();
+        int height = d.getHeight();
+        this.region.reset(width, height);
+        this.region.addRegion(this.removed);
+        this.removed.reset(width, height);
+        boolean tracked = !this.disabled;
+        for (int i = 0; tracked && (i < sprites.size()); i++) {
+            Sprite s = sprites.get(i);
+            if (s instanceof TrackedSprite) {
+                ((TrackedSprite) s).addDirtyRectangles(this.region);
+            } else {
+                tracked = false;
+            }
+        }
+        // A region that overflowed holds many small changes, and every
+        // sprite would be drawn into many of its rectangles.
+        if (!tracked || this.region.hasOverflowed() || (this.region.getArea()
+                > FULL_REDRAW_FRACTION * width * height)) {
+            this.fullRedraws++;
+            this.valid = false;
+            for (Sprite s : sprites) {
+                s.drawOn(d);
+            }
+            return;
+        }
+        if ((this.surface == null) || (this.surface.getWidth() != width)
+                || (this.surface.getHeight() != height)) {
+            if (this.surface != null) {
+                this.surface.dispose();
+            }
+            this.surface = new ImageDrawSurface(new BufferedImage(width, height,
+                    BufferedImage.TYPE_INT_ARGB_PRE));
+            this.opaqueCopy = new BufferedImage(width, height,
+                    BufferedImage.TYPE_INT_RGB);
+            this.valid = false;
+        }
+        this.partialRedraws++;
+        this.findBounds(sprites, width, height);
+        if (!this.valid) {
+            this.region.reset(width, height);
+            this.region.add(0, 0, width, height);
+        }
+        for (Rectangle r : this.region.getRectangles()) {
+            this.repaint(sprites, r);
+            if (!this.surface.isOpaque(r)) {
+                // What shows through is not known, so it cannot be kept.
+                this.disabled = true;
+                d.drawImage(0, 0, this.surface.getImage());
+                return;
+            }
+            this.surface.copyTo(this.opaqueCopy, r, 0, 0);
+        }
+        this.valid = true;
+        d.drawImage(0, 0, this.opaqueCopy);
+    }
+
+    /**
+     * Returns the number of frames whose sprites were all drawn straight to
+     * the screen.
+     * @return The number of full redraws.
+     */
+    public long getFullRedraws() {
+        return this.fullRedraws;
+    }
+
+    /**
+     * Returns the number of frames drawn from the off-screen image.
+     * @return The number of partial redraws.
+     */
+    public long getPartialRedraws() {
+        return this.partialRedraws;
+    }
+
+    /**
+     * Returns the number of pixels repainted into the off-screen image.
+     * @return The number of repainted pixels.
+     */
+    public long getRepaintedPixels() {
+        return this.repaintedPixels;
+    }
+
+    /**
+     * Find the bounds every sprite draws in this frame.
+     * @param sprites The sprites.
+     * @param width The surface width.
+     * @param height The surface height.
+     */
+    private void findBounds(List<Sprite> sprites, int width, int height) {
+        if (this.bounds.length < sprites.size()) {
+            this.bounds = new Rectangle[sprites.size()];
+        }
+        for (int i = 0; i < sprites.size(); i++) {
+            this.bounds[i] = ((TrackedSprite) sprites.get(i))
+                    .getDrawBounds(width, height);
+        }
+    }
+
+    /**
+     * Clear the given rectangle of the image, and draw every sprite that
+     * overlaps it into it again.
+     * @param sprites The sprites.
+     * @param r The rectangle.
+     */
+    private void repaint(List<Sprite> sprites, Rectangle r) {
+        this.repaintedPixels += (long) r.width * r.height;
+        this.surface.clearAndClip(r.x, r.y, r.width, r.height);
+        for (int i = 0; i < sprites.size(); i++) {
+            if ((this.bounds[i] == null) || this.bounds[i].intersects(r)) {
+                sprites.get(i).drawOn(this.surface);
+            }
+        }
+    }
+}
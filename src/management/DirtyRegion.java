@@ -0,0 +1,221 @@
+package management;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents the parts of a draw surface that must be repainted before the
+ * next frame, as a short list of rectangles.
+ * Every rectangle added is clipped to the surface, and merged with any
+ * rectangle already in the region whose union with it is no larger than
+ * both of them apart, so overlapping and touching rectangles are painted
+ * once. Beyond a fixed number of rectangles, a new rectangle is merged with
+ * the one it enlarges the least, so the region never holds more than that
+ * many rectangles however many are added.
+ */
+public class DirtyRegion {
+
+    public static final int MAX_RECTANGLES = 16;
+
+    private int width;
+    private int height;
+    private ArrayList<Rectangle> rectangles;
+    private boolean all;
+    private boolean overflowed;
+
+    /**
+     * Create a new, empty region of a surface of the given size.
+     * @param width The surface width.
+     * @param height The surface height.
+     */
+    public DirtyRegion(int width, int height) {
+        this.rectangles = new ArrayList<Rectangle>();
+        this.reset(width, height);
+    }
+
+    /**
+     * Empty the region, and make it a region of a surface of the given size.
+     * @param width The surface width.
+     * @param height The surface height.
+     */
+    public void reset(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.rectangles.clear();
+        this.all = false;
+        this.overflowed = false;
+    }
+
+    /**
+     * Returns the width of the surface.
+     * @return The surface width.
+     */
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * Returns the height of the surface.
+     * @return The surface height.
+     */
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Add the given rectangle to the region.
+     * @param x The rectangle left X.
+     * @param y The rectangle upper Y.
+     * @param w The rectangle width.
+     * @param h The rectangle height.
+     */
+    public void add(int x, int y, int w, int h) {
+        int minX = Math.max(x, 0);
+        int minY = Math.max(y, 0);
+        int maxX = Math.min(x + w, this.width);
+        int maxY = Math.min(y + h, this.height);
+        if (this.all || (minX >= maxX) || (minY >= maxY)) {
+            return;
+        }
+        Rectangle r = new Rectangle(minX, minY, maxX - minX, maxY - minY);
+        int i = 0;
+        while (i < this.rectangles.size()) {
+            Rectangle union = r.union(this.rectangles.get(i));
+            if (area(union) <= area(r) + area(this.rectangles.get(i))) {
+                // Merging may let the union overlap rectangles it did not.
+                this.rectangles.remove(i);
+                r = union;
+                i = 0;
+            } else {
+                i++;
+            }
+        }
+        if (this.rectangles.size() == MAX_RECTANGLES) {
+            this.overflowed = true;
+            int closest = 0;
+            long leastGrowth = Long.MAX_VALUE;
+            for (i = 0; i < this.rectangles.size(); i++) {
+                Rectangle other = this.rectangles.get(i);
+                long growth = area(r.union(other)) - area(other);
+                if (growth < leastGrowth) {
+                    leastGrowth = growth;
+                    closest = i;
+                }
+            }
+            r = r.union(this.rectangles.remove(closest));
+        }
+        this.rectangles.add(r);
+    }
+
+    /**
+     * Add the given rectangle to the region. Null stands for the whole
+     * surface.
+     * @param r The rectangle, or null.
+     */
+    public void add(Rectangle r) {
+        if (r == null) {
+            this.addAll();
+        } else {
+            this.add(r.x, r.y, r.width, r.height);
+        }
+    }
+
+    /**
+     * Add the rectangles a sprite that moved was drawn in and will be drawn
+     * in. A sprite that moves a little is added as a single rectangle.
+     * @param previous Where the sprite was drawn, or null if it was not.
+     * @param current Where the sprite will be drawn.
+     */
+    public void addMove(Rectangle previous, Rectangle current) {
+        if (previous == null) {
+            this.add(current);
+        } else if (previous.intersects(current)) {
+            this.add(previous.union(current));
+        } else {
+            this.add(previous);
+            this.add(current);
+        }
+    }
+
+    /**
+     * Add every rectangle of another region to this one.
+     * @param other The other region.
+     */
+    public void addRegion(DirtyRegion other) {
+        if (other.all) {
+            this.addAll();
+            return;
+        }
+        for (Rectangle r : other.rectangles) {
+            this.add(r);
+        }
+    }
+
+    /**
+     * Make the whole surface dirty.
+     */
+    public void addAll() {
+        this.all = true;
+        this.rectangles.clear();
+    }
+
+    /**
+     * Returns true if the whole surface is dirty.
+     * @return True if the whole surface is dirty.
+     */
+    public boolean isAll() {
+        return this.all;
+    }
+
+    /**
+     * Returns true if more separate rectangles were added than the region
+     * holds, so some were merged with rectangles they do not overlap.
+     * @return True if the region overflowed since it was reset.
+     */
+    public boolean hasOverflowed() {
+        return this.overflowed;
+    }
+
+    /**
+     * Returns true if nothing is dirty.
+     * @return True if the region is empty.
+     */
+    public boolean isEmpty() {
+        return !this.all && this.rectangles.isEmpty();
+    }
+
+    /**
+     * Returns the rectangles of the region, which never overlap the outside
+     * of the surface. Empty if the whole surface is dirty.
+     * @return The rectangles.
+     */
+    public List<Rectangle> getRectangles() {
+        return this.rectangles;
+    }
+
+    /**
+     * Returns the number of pixels the rectangles of the region cover,
+     * counting the overlapping ones more than once.
+     * @return The dirty area.
+     */
+    public long getArea() {
+        if (this.all) {
+            return (long) this.width * this.height;
+        }
+        long area = 0;
+        for (Rectangle r : this.rectangles) {
+            area += area(r);
+        }
+        return area;
+    }
+
+    /**
+     * Returns the area of the given rectangle.
+     * @param r The rectangle.
+     * @return The number of pixels it covers.
+     */
+    private static long area(Rectangle r) {
+        return (long) r.width * r.height;
+    }
+}
@@ -0,0 +1,41 @@
+package management;
+
+import biuoop.DrawSurface;
+import biuoop.KeyboardSensor;
+
+/**
+ * Represents where the frames of animations are drawn and shown, and where
+ * the keys the player presses come from: a window, or nothing at all when
+ * the game runs without a screen.
+ */
+public interface Display {
+    /**
+     * Returns the width of the frames.
+     * @return The width in pixels.
+     */
+    int getWidth();
+
+    /**
+     * Returns the height of the frames.
+     * @return The height in pixels.
+     */
+    int getHeight();
+
+    /**
+     * Returns a blank surface to draw the next frame on.
+     * @return The draw surface.
+     */
+    DrawSurface getDrawSurface();
+
+    /**
+     * Show a frame drawn on a surface returned by getDrawSurface().
+     * @param d The draw surface.
+     */
+    void show(DrawSurface d);
+
+    /**
+     * Returns the keyboard the player presses keys on.
+     * @return The keyboard sensor.
+     */
+    KeyboardSensor getKeyboardSensor();
+}
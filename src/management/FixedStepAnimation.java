@@ -0,0 +1,22 @@
+package management;
+
+import biuoop.DrawSurface;
+
+/**
+ * Represents an animation whose simulation can be advanced separately from
+ * its drawing, so that an animation runner can run the simulation at a
+ * fixed rate no matter how fast frames are drawn.
+ */
+public interface FixedStepAnimation extends Animation {
+    /**
+     * Advance the simulation of the animation by one step.
+     * @param dt The amount of seconds the step simulates.
+     */
+    void doOneStep(double dt);
+
+    /**
+     * Draw the current state of the animation, without advancing it.
+     * @param d The draw surface.
+     */
+    void drawFrame(DrawSurface d);
+}
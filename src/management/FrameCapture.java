@@ -0,0 +1,291 @@
+package management;
+
+import biuoop.DrawSurface;
+import io.FrameWriter;
+import io.PngFrameWriter;
+import io.RawFrameWriter;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Represents a recording of the frames an animation runner shows.
+ * Every frame is drawn on an off-screen copy as well as on its surface, and
+ * once it is shown the copy is copied into a free buffer of a fixed pool and
+ * put on a bounded queue. A background thread writes the queued frames and
+ * puts their buffers back in the pool. The runner never waits for it: when
+ * no buffer is free because the writer fell behind, the frame is dropped
+ * and counted.
+ */
+public class FrameCapture {
+
+    // Run with -Darkanoid.capture=<path> to record the game, as a directory
+    // of PNG images or, with -Darkanoid.captureformat=raw, a raw RGB file.
+    public static final String CAPTURE_PROPERTY = "arkanoid.capture";
+    public static final String FORMAT_PROPERTY = "arkanoid.captureformat";
+    // Run with -Darkanoid.capturequeue=<frames> to queue more frames.
+    public static final String QUEUE_PROPERTY = "arkanoid.capturequeue";
+    public static final String PNG_FORMAT = "png";
+    public static final String RAW_FORMAT = "raw";
+    public static final int DEF_QUEUE_FRAMES = 8;
+
+    // What a frame shows where nothing is drawn.
+    private static final Color BACKGROUND = Color.WHITE;
+
+    private int width;
+    private int height;
+    private ImageDrawSurface surface;
+    private FrameWriter writer;
+    private ArrayBlockingQueue<Frame> free;
+    private ArrayBlockingQueue<Frame> pending;
+    private Thread encoder;
+    private volatile boolean closed;
+    private volatile boolean failed;
+    private long frames;
+    private long dropped;
+    private volatile long written;
+
+    /**
+     * Create a new capture of frames of the given size, and start its
+     * background writer.
+     * @param width The frame width.
+     * @param height The frame height.
+     * @param writer Where the frames are written.
+     * @param queueFrames The most frames waiting to be written.
+     */
+    public FrameCapture(int width, int height, FrameWriter writer,
+                        int queueFrames) {
+        if (queueFrames < 1) {
+            throw new IllegalArgumentException("The queue must hold at least"
+                    + " one frame, got: " + queueFrames);
+        }
+        this.width = width;
+        this.height = height;
+        this.surface = new ImageDrawSurface(new BufferedImage(width, height,
+                BufferedImage.TYPE_INT_RGB));
+        this.writer = writer;
+        // One more buffer than the queue holds, for the frame being written.
+        this.free = new ArrayBlockingQueue<Frame>(queueFrames + 1);
+        for (int i = 0; i <= queueFrames; i++) {
+            this.free.add(new Frame(new BufferedImage(width, height,
+                    BufferedImage.TYPE_INT_RGB)));
+        }
+        // Room for every buffer of the pool, and the end of the queue.
+        this.pending = new ArrayBlockingQueue<Frame>(queueFrames + 2);
+        this.closed = false;
+        this.failed = false;
+        this.frames = 0;
+        this.dropped = 0;
+        this.written = 0;
+        this.encoder = new Thread(this::encode, "frame-capture");
+        this.encoder.setDaemon(true);
+        this.encoder.start();
+    }
+
+    /**
+     * Returns a capture of frames of the given size, as chosen by the
+     * arkanoid.capture, arkanoid.captureformat and arkanoid.capturequeue
+     * system properties, which is closed when the program exits.
+     * @param width The frame width.
+     * @param height The frame height.
+     * @return The capture, or null if the game is not recorded.
+     */
+    public static FrameCapture fromProperties(int width, int height) {
+        String path = System.getProperty(CAPTURE_PROPERTY);
+        if (path == null) {
+            return null;
+        }
+        String format = System.getProperty(FORMAT_PROPERTY, PNG_FORMAT);
+        int queueFrames = Integer.parseInt(System.getProperty(QUEUE_PROPERTY,
+                Integer.toString(DEF_QUEUE_FRAMES)));
+        FrameWriter writer;
+        try {
+            if (format.equals(PNG_FORMAT)) {
+                writer = new PngFrameWriter(new File(path));
+            } else if (format.equals(RAW_FORMAT)) {
+                writer = new RawFrameWriter(new File(path).toPath());
+            } else {
+                throw new IllegalArgumentException("Unknown capture format: "
+                        + format);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+        FrameCapture capture = new FrameCapture(width, height, writer,
+                queueFrames);
+        Runtime.getRuntime().addShutdownHook(new Thread(capture::close));
+        return capture;
+    }
+
+    /**
+     * Start capturing a frame drawn on the given surface.
+     * @param target The surface the frame is drawn on.
+     * @return A surface that draws on the target and on the capture.
+     */
+    public DrawSurface beginFrame(DrawSurface target) {
+        if (this.closed || this.failed) {
+            return target;
+        }
+        this.surface.clear(BACKGROUND);
+        return new TeeDrawSurface(target, this.surface);
+    }
+
+    /**
+     * Queue a captured frame to be written, or drop it if the writer fell
+     * behind.
+     * @param d A surface returned by beginFrame().
+     * @return The surface the frame was drawn on, to be shown.
+     */
+    public DrawSurface endFrame(DrawSurface d) {
+        if (!(d instanceof TeeDrawSurface)
+                || (((TeeDrawSurface) d).getSecond() != this.surface)) {
+            return d;
+        }
+        long index = this.frames++;
+        // Closing must not put the end of the queue between the check and
+        // the frame, or the frame would never be written.
+        synchronized (this) {
+            Frame frame = (this.closed || this.failed) ? null
+                    : this.free.poll();
+            if (frame == null) {
+                this.dropped++;
+            } else {
+                System.arraycopy(pixels(this.surface.getImage()), 0,
+                        pixels(frame.getImage()), 0, this.width * this.height);
+                frame.setIndex(index);
+                this.pending.add(frame);
+            }
+        }
+        return ((TeeDrawSurface) d).getFirst();
+    }
+
+    /**
+     * Write the frames still queued, stop the background writer, and close
+     * the writer. Later frames are not captured.
+     */
+    public void close() {
+        synchronized (this) {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            this.pending.add(new Frame(null));
+        }
+        try {
+            this.encoder.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            this.writer.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Returns the number of frames shown since the capture started.
+     * @return The number of frames.
+     */
+    public long getFrames() {
+        return this.frames;
+    }
+
+    /**
+     * Returns the number of frames dropped because the writer fell behind.
+     * @return The number of dropped frames.
+     */
+    public long getDropped() {
+        return this.dropped;
+    }
+
+    /**
+     * Returns the number of frames written so far.
+     * @return The number of written frames.
+     */
+    public long getWritten() {
+        return this.written;
+    }
+
+    /**
+     * Write queued frames until the capture is closed. A frame without an
+     * image marks the end of the queue.
+     */
+    private void encode() {
+        while (true) {
+            Frame frame;
+            try {
+                frame = this.pending.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (frame.getImage() == null) {
+                return;
+            }
+            try {
+                this.writer.write(frame.getImage(), frame.getIndex());
+                this.written++;
+            } catch (IOException e) {
+                // Nothing more can be written, so stop capturing.
+                e.printStackTrace();
+                this.failed = true;
+            }
+            this.free.add(frame);
+        }
+    }
+
+    /**
+     * Returns the pixels of an integer RGB image.
+     * @param image The image.
+     * @return The pixels, row after row.
+     */
+    private static int[] pixels(BufferedImage image) {
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * Represents a pooled frame buffer, and the number of the frame it holds.
+     */
+    private static final class Frame {
+        private final BufferedImage image;
+        private long index;
+
+        /**
+         * Create a new frame buffer.
+         * @param image The image the frame is copied into.
+         */
+        Frame(BufferedImage image) {
+            this.image = image;
+            this.index = 0;
+        }
+
+        /**
+         * Returns the image of the frame.
+         * @return The image.
+         */
+        BufferedImage getImage() {
+            return this.image;
+        }
+
+        /**
+         * Returns the number of the frame.
+         * @return The frame number.
+         */
+        long getIndex() {
+            return this.index;
+        }
+
+        /**
+         * Set the number of the frame the buffer holds.
+         * @param index The frame number.
+         */
+        void setIndex(long index) {
+            this.index = index;
+        }
+    }
+}
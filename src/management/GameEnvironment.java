@@ -1,32 +1,175 @@
 package management;
 
 import geometryprimitives.Line;
-import geometryprimitives.Point;
 import sprites.Collidable;
 
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
 
 /**
  * Represents a collection of collidable objects.
+ * The collidables are split into a static set, kept in the broad phase
+ * index, and a small dynamic set of collidables that move, which every
+ * query checks one by one. Once the level is set up the environment is
+ * frozen: the static index is built one last time, and from then on a
+ * removed static collidable is only marked as removed, so the index is
+ * never changed during play.
+ * Every collidable is in a collision layer, and a query only considers the
+ * layers its mover may hit. A query whose mask leaves out every layer of
+ * the static set skips the static index altogether.
+ * A query may also pass the candidate cache of its mover, which keeps the
+ * static collidables around its recent paths, and is only filled from the
+ * static index again when the mover leaves them or the static index
+ * changes.
  */
 public class GameEnvironment {
 
-    private ArrayList<Collidable> collidableCollection;
+    public static final String LINEAR_BROAD_PHASE = "linear";
+    public static final String GRID_BROAD_PHASE = "grid";
+    public static final String BVH_BROAD_PHASE = "bvh";
+    public static final String PACKED_BROAD_PHASE = "packed";
+    public static final String BLOCK_GRID_BROAD_PHASE = "blockgrid";
+    // Run with -Darkanoid.broadphase=linear|grid|bvh|packed|blockgrid to
+    // compare them.
+    public static final String BROAD_PHASE_PROPERTY = "arkanoid.broadphase";
+    // Packed trajectories take x0, y0, x1, y1.
+    public static final int SEGMENT_STRIDE = 4;
+
+    // Dynamic collidables are ordered after every static one, so a static
+    // collidable wins a tie against a moving one.
+    private static final long DYNAMIC_ORDER_BASE = Long.MAX_VALUE / 2;
+
+    private String broadPhase;
+    private GridLayout blockLayout;
+    private ArrayList<Collidable> staticCollidables;
+    private ArrayList<Collidable> dynamicCollidables;
+    private Set<Collidable> removedStatics;
+    private Set<Collidable> movedStatics;
+    private boolean frozen;
+    private int staticLayers;
+    private CollidableIndex index;
+    private ClosestCollisionQuery query;
+    private CollisionBatch batch;
+    private long changeCount;
+    private long staticVersion;
 
     /**
-     * Creates a new game environment.
+     * Creates a new game environment, using the broad phase chosen by the
+     * arkanoid.broadphase system property (a grid by default).
      */
     public GameEnvironment() {
-        this.collidableCollection = new ArrayList<Collidable>();
+        this(System.getProperty(BROAD_PHASE_PROPERTY, GRID_BROAD_PHASE));
+    }
+
+    /**
+     * Creates a new game environment for a level whose blocks are laid out
+     * on the given rows and columns. It uses the broad phase chosen by the
+     * arkanoid.broadphase system property, by default a block grid of that
+     * layout, or a uniform grid for a level without one.
+     * @param blockLayout The layout of the blocks, or null for none.
+     */
+    public GameEnvironment(GridLayout blockLayout) {
+        this(System.getProperty(BROAD_PHASE_PROPERTY, blockLayout == null
+                ? GRID_BROAD_PHASE : BLOCK_GRID_BROAD_PHASE), blockLayout);
     }
 
     /**
-     * Add the given collidable to the environment.
+     * Creates a new game environment using the given broad phase.
+     * @param broadPhase The broad phase: "linear", "grid", "bvh" or
+     *                   "packed".
+     */
+    public GameEnvironment(String broadPhase) {
+        this(broadPhase, null);
+    }
+
+    /**
+     * Creates a new game environment using the given broad phase.
+     * @param broadPhase The broad phase: "linear", "grid", "bvh", "packed"
+     *                   or "blockgrid".
+     * @param blockLayout The layout of the blocks, needed by the block grid
+     *                    broad phase, or null for none.
+     */
+    public GameEnvironment(String broadPhase, GridLayout blockLayout) {
+        this.broadPhase = broadPhase;
+        this.blockLayout = blockLayout;
+        this.staticCollidables = new ArrayList<Collidable>();
+        this.dynamicCollidables = new ArrayList<Collidable>();
+        this.removedStatics = Collections.newSetFromMap(
+                new IdentityHashMap<Collidable, Boolean>());
+        this.movedStatics = Collections.newSetFromMap(
+                new IdentityHashMap<Collidable, Boolean>());
+        this.frozen = false;
+        this.staticLayers = 0;
+        this.index = createIndex(broadPhase, blockLayout);
+        this.query = new ClosestCollisionQuery();
+        this.batch = new CollisionBatch();
+        this.changeCount = 0;
+        this.staticVersion = 0;
+    }
+
+    /**
+     * Create the collidable index of the given broad phase.
+     * @param broadPhase The broad phase name.
+     * @param blockLayout The layout of the blocks, or null for none.
+     * @return The collidable index.
+     */
+    private static CollidableIndex createIndex(String broadPhase,
+                                               GridLayout blockLayout) {
+        if (LINEAR_BROAD_PHASE.equals(broadPhase)) {
+            return new LinearIndex();
+        } else if (GRID_BROAD_PHASE.equals(broadPhase)) {
+            return new UniformGrid();
+        } else if (BVH_BROAD_PHASE.equals(broadPhase)) {
+            return new AabbTree();
+        } else if (PACKED_BROAD_PHASE.equals(broadPhase)) {
+            return new PackedIndex();
+        } else if (BLOCK_GRID_BROAD_PHASE.equals(broadPhase)) {
+            if (blockLayout == null) {
+                throw new IllegalArgumentException("The block grid broad"
+                        + " phase needs a block layout");
+            }
+            return new BlockGrid(blockLayout);
+        }
+        throw new IllegalArgumentException("Unknown broad phase: " + broadPhase);
+    }
+
+    /**
+     * Add the given static collidable to the environment. A static
+     * collidable never moves, but may be removed.
      * @param c The collidable that will be added.
      */
     public void addCollidable(Collidable c) {
-        this.collidableCollection.add(c);
+        if (this.removedStatics.contains(c)) {
+            if (!this.movedStatics.contains(c)) {
+                this.removedStatics.remove(c);
+            } else if (!this.dynamicCollidables.contains(c)) {
+                // Its entry in the index has the bounds it had before it
+                // moved, so it comes back as dynamic.
+                this.dynamicCollidables.add(c);
+            }
+            this.changeCount++;
+            return;
+        }
+        if (!this.frozen) {
+            this.staticCollidables.add(c);
+        }
+        this.staticLayers |= c.getCollisionLayer();
+        this.index.add(c);
+        this.changeCount++;
+        this.staticVersion++;
+    }
+
+    /**
+     * Add the given dynamic collidable to the environment. A dynamic
+     * collidable may move, and must then be passed to updateCollidable.
+     * @param c The collidable that will be added.
+     */
+    public void addDynamicCollidable(Collidable c) {
+        this.dynamicCollidables.add(c);
+        this.changeCount++;
     }
 
     /**
@@ -35,7 +178,90 @@ public class GameEnvironment {
      * @return True if removed, false otherwise.
      */
     public boolean removeCollidable(Collidable c) {
-        return this.collidableCollection.remove(c);
+        if (this.dynamicCollidables.remove(c)) {
+            return true;
+        }
+        if (this.frozen) {
+            return this.index.contains(c) && this.removedStatics.add(c);
+        }
+        this.staticCollidables.remove(c);
+        this.staticVersion++;
+        return this.index.remove(c);
+    }
+
+    /**
+     * Notify the environment that the collision rectangle of the given
+     * collidable has moved. A static collidable that moves after the
+     * environment is frozen becomes dynamic.
+     * @param c The collidable that moved.
+     */
+    public void updateCollidable(Collidable c) {
+        if (this.frozen && this.index.contains(c)
+                && this.removedStatics.add(c)) {
+            this.movedStatics.add(c);
+            this.dynamicCollidables.add(c);
+        } else if (!this.frozen) {
+            this.index.update(c);
+            this.staticVersion++;
+        }
+        this.changeCount++;
+    }
+
+    /**
+     * Build the static index one last time, from the static collidables in
+     * the order they were added, and keep it as is from now on. Called once
+     * the level is set up; freezing a frozen environment does nothing.
+     */
+    public void freeze() {
+        if (this.frozen) {
+            return;
+        }
+        this.index = createIndex(this.broadPhase, this.blockLayout);
+        for (Collidable c : this.staticCollidables) {
+            this.index.add(c);
+        }
+        this.staticCollidables.clear();
+        this.frozen = true;
+        this.staticVersion++;
+    }
+
+    /**
+     * Returns true if the environment is frozen.
+     * @return True if the environment is frozen.
+     */
+    public boolean isFrozen() {
+        return this.frozen;
+    }
+
+    /**
+     * Returns true if the given collidable is in the environment.
+     * @param c The collidable.
+     * @return True if the collidable is in the environment.
+     */
+    public boolean hasCollidable(Collidable c) {
+        if (this.dynamicCollidables.contains(c)) {
+            return true;
+        }
+        return this.index.contains(c) && !this.removedStatics.contains(c);
+    }
+
+    /**
+     * Returns the number of times a collidable was added or moved. Removing
+     * a collidable is not counted, as it can only take away collisions.
+     * @return The number of additions and moves so far.
+     */
+    public long getChangeCount() {
+        return this.changeCount;
+    }
+
+    /**
+     * Returns the version of the static index, which changes whenever a
+     * static collidable is added, moved or taken out of the index. Candidate
+     * caches filled at an older version are filled again.
+     * @return The version of the static index.
+     */
+    public long getStaticVersion() {
+        return this.staticVersion;
     }
 
     /**
@@ -47,41 +273,175 @@ public class GameEnvironment {
      * @return The collision information.
      */
     public CollisionInfo getClosestCollision(Line trajectory) {
-        Point collisionPoint;
-        CollisionInfo closest = null;
-        boolean hasCollision = false;
-
-        for (Collidable c: this.collidableCollection) {
-            collisionPoint = trajectory.closestIntersectionToStartOfLine(
-                    c.getCollisionRectangle());
-            if (collisionPoint != null) {
-                if (!hasCollision) {
-                    closest = new CollisionInfo(collisionPoint, c);
-                    hasCollision = true;
-                } else {
-                    closest = getCloserCollisionOutOfTwo(new CollisionInfo(
-                            collisionPoint, c), closest, trajectory);
-                }
-            }
+        this.query.reset(trajectory);
+        this.runQuery(this.query, null);
+        return this.query.result();
+    }
+
+    /**
+     * Same as getClosestCollision(Line), for the trajectory (x0,y0)-(x1,y1).
+     * Nothing is allocated unless a collision is found.
+     * @param x0 The trajectory start X.
+     * @param y0 The trajectory start Y.
+     * @param x1 The trajectory end X.
+     * @param y1 The trajectory end Y.
+     * @return The collision information, or null if there is no collision.
+     */
+    public CollisionInfo getClosestCollision(double x0, double y0, double x1,
+                                             double y1) {
+        this.findClosestCollision(this.query, x0, y0, x1, y1);
+        return this.query.result();
+    }
+
+    /**
+     * Run the given query for the trajectory (x0,y0)-(x1,y1). The result is
+     * left in the query. The environment is only read, so as long as it is
+     * not changed meanwhile, several threads may run queries of their own
+     * at the same time.
+     * @param q The query.
+     * @param x0 The trajectory start X.
+     * @param y0 The trajectory start Y.
+     * @param x1 The trajectory end X.
+     * @param y1 The trajectory end Y.
+     * @return True if a collision was found.
+     */
+    public boolean findClosestCollision(ClosestCollisionQuery q, double x0,
+                                        double y0, double x1, double y1) {
+        return this.findClosestCollision(q, x0, y0, x1, y1, 0);
+    }
+
+    /**
+     * Run the given query for a circle of the given radius, whose center
+     * moves along the trajectory (x0,y0)-(x1,y1). The collision point left in
+     * the query is where the circle touches the collidable, and its center
+     * at that moment is at the trajectory parameter of the collision.
+     * @param q The query.
+     * @param x0 The trajectory start X.
+     * @param y0 The trajectory start Y.
+     * @param x1 The trajectory end X.
+     * @param y1 The trajectory end Y.
+     * @param radius The circle radius, 0 for a point.
+     * @return True if a collision was found.
+     */
+    public boolean findClosestCollision(ClosestCollisionQuery q, double x0,
+                                        double y0, double x1, double y1,
+                                        double radius) {
+        return this.findClosestCollision(q, x0, y0, x1, y1, radius, null);
+    }
+
+    /**
+     * Same as findClosestCollision for a circle, looking the static
+     * collidables up in the candidate cache of the mover, which is filled
+     * again if it does not cover the trajectory.
+     * @param q The query.
+     * @param x0 The trajectory start X.
+     * @param y0 The trajectory start Y.
+     * @param x1 The trajectory end X.
+     * @param y1 The trajectory end Y.
+     * @param radius The circle radius, 0 for a point.
+     * @param cache The candidate cache of the mover, or null for none.
+     * @return True if a collision was found.
+     */
+    public boolean findClosestCollision(ClosestCollisionQuery q, double x0,
+                                        double y0, double x1, double y1,
+                                        double radius, CandidateCache cache) {
+        q.reset(x0, y0, x1, y1, radius);
+        this.runQuery(q, cache);
+        return q.hasResult();
+    }
+
+    /**
+     * Find the closest collision of every trajectory of a frame at once.
+     * The trajectories are packed in segments as x0, y0, x1, y1 of the
+     * first one, then of the second one and so on, and out receives the
+     * collision of every trajectory in the same order, or null if it has
+     * none. Nothing is allocated for trajectories without a collision.
+     * @param segments The packed trajectories.
+     * @param out The collision information of every trajectory.
+     */
+    public void getClosestCollisions(double[] segments, CollisionInfo[] out) {
+        int count = segments.length / SEGMENT_STRIDE;
+        this.batch.ensureCapacity(count);
+        this.findClosestCollisions(this.query, segments, null, null, 0, count,
+                this.batch);
+        for (int i = 0; i < count; i++) {
+            out[i] = this.batch.result(i);
         }
-        return closest;
     }
 
     /**
-     * Returns the closer collision out of two collisions information checked.
-     * @param a The first collision.
-     * @param b The second collision
-     * @param trajectory The trajectory of the colliding object.
-     * @return The closer collision.
+     * Run the closest collision queries of the trajectories in positions
+     * [from, to) of the packed segments (x0, y0, x1, y1 per trajectory),
+     * keeping the results in the same positions of the batch. Like
+     * findClosestCollision, it only reads the environment, so threads may
+     * run batches of their own, each with its own query, on separate ranges.
+     * @param q The query to run them with.
+     * @param segments The packed trajectories.
+     * @param radii The radius of the circle moving along every trajectory,
+     *              or null for points.
+     * @param caches The candidate cache of the mover of every trajectory,
+     *               or null for none.
+     * @param from The first trajectory.
+     * @param to The position after the last trajectory.
+     * @param out The results, with room for the trajectories.
      */
-    private CollisionInfo getCloserCollisionOutOfTwo(CollisionInfo a,
-                                                     CollisionInfo b,
-                                                     Line trajectory) {
-        if (trajectory.start().distance(a.collisionPoint())
-                > trajectory.start().distance(b.collisionPoint())) {
-            return a;
+    public void findClosestCollisions(ClosestCollisionQuery q,
+                                      double[] segments, double[] radii,
+                                      CandidateCache[] caches, int from,
+                                      int to, CollisionBatch out) {
+        for (int i = from; i < to; i++) {
+            int base = i * SEGMENT_STRIDE;
+            q.reset(segments[base], segments[base + 1], segments[base + 2],
+                    segments[base + 3], radii == null ? 0 : radii[i]);
+            this.runQuery(q, caches == null ? null : caches[i]);
+            out.set(i, q);
         }
-        return b;
     }
 
+    /**
+     * Offer the given query the static collidables its trajectory may
+     * collide with, then every dynamic collidable.
+     * @param q The query, already reset for its trajectory.
+     * @param cache The candidate cache of the mover, or null to query the
+     *              static index directly.
+     */
+    private void runQuery(ClosestCollisionQuery q, CandidateCache cache) {
+        q.setRemoved(this.removedStatics.isEmpty() ? null : this.removedStatics);
+        if (q.collidesWithAny(this.staticLayers)) {
+            if (cache == null) {
+                this.index.query(q);
+            } else {
+                this.queryCache(q, cache);
+            }
+        }
+        // Only the static index has entries of removed collidables; a static
+        // collidable that moved is hit where it is now.
+        q.setRemoved(null);
+        for (int i = 0; i < this.dynamicCollidables.size(); i++) {
+            q.consider(this.dynamicCollidables.get(i), DYNAMIC_ORDER_BASE + i);
+        }
+    }
+
+    /**
+     * Offer the given query the cached static collidables its swept bounds
+     * overlap, filling the cache from the static index first if it does not
+     * cover them.
+     * @param q The query, already reset for its trajectory.
+     * @param cache The candidate cache of the mover.
+     */
+    private void queryCache(ClosestCollisionQuery q, CandidateCache cache) {
+        double r = q.radius();
+        double minX = Math.min(q.startX(), q.endX()) - r;
+        double minY = Math.min(q.startY(), q.endY()) - r;
+        double maxX = Math.max(q.startX(), q.endX()) + r;
+        double maxY = Math.max(q.startY(), q.endY()) + r;
+        if (cache.covers(minX, minY, maxX, maxY, this.staticVersion)) {
+            cache.countHit();
+        } else {
+            cache.countMiss();
+            cache.refill(minX, minY, maxX, maxY, this.staticVersion);
+            this.index.collect(cache, q);
+        }
+        cache.query(q, minX, minY, maxX, maxY);
+    }
 }
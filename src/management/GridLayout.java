@@ -0,0 +1,90 @@
+package management;
+
+/**
+ * Represents the rows and columns blocks are laid out on. Rows are
+ * rowHeight apart and columns cellWidth apart, starting at the origin.
+ */
+public class GridLayout {
+
+    private final double originX;
+    private final double originY;
+    private final double cellWidth;
+    private final double rowHeight;
+    private final int columns;
+    private final int rows;
+
+    /**
+     * Create a new grid layout.
+     * @param originX The left X of the first column.
+     * @param originY The upper Y of the first row.
+     * @param cellWidth The width of a column.
+     * @param rowHeight The height of a row.
+     * @param columns The number of columns.
+     * @param rows The number of rows.
+     */
+    public GridLayout(double originX, double originY, double cellWidth,
+                      double rowHeight, int columns, int rows) {
+        if ((cellWidth <= 0) || (rowHeight <= 0)) {
+            throw new IllegalArgumentException("Grid cells must have a"
+                    + " positive size, got: " + cellWidth + "x" + rowHeight);
+        }
+        if ((columns < 0) || (rows < 0)) {
+            throw new IllegalArgumentException("A grid must not have a"
+                    + " negative size, got: " + columns + "x" + rows);
+        }
+        this.originX = originX;
+        this.originY = originY;
+        this.cellWidth = cellWidth;
+        this.rowHeight = rowHeight;
+        this.columns = columns;
+        this.rows = rows;
+    }
+
+    /**
+     * Returns the left X of the first column.
+     * @return The left X of the grid.
+     */
+    public double getOriginX() {
+        return this.originX;
+    }
+
+    /**
+     * Returns the upper Y of the first row.
+     * @return The upper Y of the grid.
+     */
+    public double getOriginY() {
+        return this.originY;
+    }
+
+    /**
+     * Returns the width of a column.
+     * @return The width of a column.
+     */
+    public double getCellWidth() {
+        return this.cellWidth;
+    }
+
+    /**
+     * Returns the height of a row.
+     * @return The height of a row.
+     */
+    public double getRowHeight() {
+        return this.rowHeight;
+    }
+
+    /**
+     * Returns the number of columns.
+     * @return The number of columns.
+     */
+    public int getColumns() {
+        return this.columns;
+    }
+
+    /**
+     * Returns the number of rows.
+     * @return The number of rows.
+     */
+    public int getRows() {
+        return this.rows;
+    }
+}
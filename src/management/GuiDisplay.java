@@ -0,0 +1,59 @@
+package management;
+
+import biuoop.DrawSurface;
+import biuoop.GUI;
+import biuoop.KeyboardSensor;
+
+/**
+ * Represents a display that shows frames in the window of a GUI.
+ */
+public class GuiDisplay implements Display {
+
+    private GUI gui;
+    private int width;
+    private int height;
+
+    /**
+     * Create a display over the window of the given GUI.
+     * @param gui The GUI.
+     */
+    public GuiDisplay(GUI gui) {
+        this.gui = gui;
+        DrawSurface d = gui.getDrawSurface();
+        this.width = d.getWidth();
+        this.height = d.getHeight();
+    }
+
+    /**
+     * Returns the GUI the display shows frames in.
+     * @return The GUI.
+     */
+    public GUI getGui() {
+        return this.gui;
+    }
+
+    @Override
+    public int getWidth() {
+        return this.width;
+    }
+
+    @Override
+    public int getHeight() {
+        return this.height;
+    }
+
+    @Override
+    public DrawSurface getDrawSurface() {
+        return this.gui.getDrawSurface();
+    }
+
+    @Override
+    public void show(DrawSurface d) {
+        this.gui.show(d);
+    }
+
+    @Override
+    public KeyboardSensor getKeyboardSensor() {
+        return this.gui.getKeyboardSensor();
+    }
+}
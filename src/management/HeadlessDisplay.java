@@ -0,0 +1,121 @@
+package management;
+
+import biuoop.DrawSurface;
+import biuoop.KeyboardSensor;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+
+/**
+ * Represents a display without a window, for running the game on machines
+ * without a screen. Frames are either drawn into an off-screen image, which
+ * holds the last frame shown, or drawn nowhere at all.
+ * Every frame shown moves a scripted keyboard on to its next frame.
+ */
+public class HeadlessDisplay implements Display {
+
+    // What a frame shows where nothing is drawn.
+    public static final Color BACKGROUND = Color.WHITE;
+
+    private int width;
+    private int height;
+    private KeyboardSensor keyboard;
+    private ImageDrawSurface surface;
+    private NullDrawSurface sink;
+    private long framesShown;
+
+    /**
+     * Create a new headless display.
+     * @param width The width of the frames.
+     * @param height The height of the frames.
+     * @param keyboard The keyboard the keys come from.
+     * @param render True to draw the frames into an image, false to draw
+     *               them nowhere.
+     */
+    public HeadlessDisplay(int width, int height, KeyboardSensor keyboard,
+                           boolean render) {
+        if ((width <= 0) || (height <= 0)) {
+            throw new IllegalArgumentException("The size must be positive,"
+                    + " got: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.keyboard = keyboard;
+        if (render) {
+            this.surface = new ImageDrawSurface(new BufferedImage(width, height,
+                    BufferedImage.TYPE_INT_RGB));
+        } else {
+            this.sink = new NullDrawSurface(width, height);
+        }
+        this.framesShown = 0;
+    }
+
+    @Override
+    public int getWidth() {
+        return this.width;
+    }
+
+    @Override
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Returns the surface of the next frame. A rendering display returns
+     * the same surface every frame, painted with BACKGROUND.
+     * @return The draw surface.
+     */
+    @Override
+    public DrawSurface getDrawSurface() {
+        if (this.surface != null) {
+            this.surface.clear(BACKGROUND);
+            return this.surface;
+        }
+        return this.sink;
+    }
+
+    @Override
+    public void show(DrawSurface d) {
+        this.framesShown++;
+        if (this.keyboard instanceof ScriptedKeyboardSensor) {
+            ((ScriptedKeyboardSensor) this.keyboard).nextFrame();
+        }
+    }
+
+    @Override
+    public KeyboardSensor getKeyboardSensor() {
+        return this.keyboard;
+    }
+
+    /**
+     * Returns the image of the last frame shown, which the next frame is
+     * drawn over.
+     * @return The frame, or null if the display draws nowhere.
+     */
+    public BufferedImage getFrame() {
+        if (this.surface == null) {
+            return null;
+        }
+        return this.surface.getImage();
+    }
+
+    /**
+     * Returns the number of frames shown.
+     * @return The number of frames.
+     */
+    public long getFramesShown() {
+        return this.framesShown;
+    }
+
+    /**
+     * Returns the number of shapes drawn so far, if the display draws
+     * nowhere.
+     * @return The number of draw calls, or 0 if the display renders.
+     */
+    public long getDrawCalls() {
+        if (this.sink == null) {
+            return 0;
+        }
+        return this.sink.getDrawCalls();
+    }
+}
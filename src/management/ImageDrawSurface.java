@@ -0,0 +1,277 @@
+package management;
+
+import biuoop.DrawSurface;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * Represents a draw surface that draws into an off-screen image. It draws
+ * the same shapes the GUI draw surface does, so a sprite looks the same on
+ * both. Drawing may be limited to a clip rectangle, to repaint just a part
+ * of the image.
+ */
+public class ImageDrawSurface implements DrawSurface {
+
+    private static final Color TRANSPARENT = new Color(0, 0, 0, 0);
+    private static final int ALPHA_SHIFT = 24;
+    private static final int OPAQUE = 0xFF;
+
+    private BufferedImage image;
+    private Graphics2D graphics;
+    private int[] scratch;
+    private BufferedImage copyTarget;
+    private Graphics2D copyGraphics;
+
+    /**
+     * Create a draw surface over the given image.
+     * @param image The image to draw into.
+     */
+    public ImageDrawSurface(BufferedImage image) {
+        this.image = image;
+        this.graphics = image.createGraphics();
+        this.scratch = new int[0];
+    }
+
+    /**
+     * Returns the image the surface draws into.
+     * @return The image.
+     */
+    public BufferedImage getImage() {
+        return this.image;
+    }
+
+    /**
+     * Limit the drawing to the given rectangle, and make it transparent.
+     * @param x The rectangle left X.
+     * @param y The rectangle upper Y.
+     * @param width The rectangle width.
+     * @param height The rectangle height.
+     */
+    public void clearAndClip(int x, int y, int width, int height) {
+        this.graphics.setClip(x, y, width, height);
+        this.graphics.setBackground(TRANSPARENT);
+        this.graphics.clearRect(x, y, width, height);
+    }
+
+    /**
+     * Remove the clip, and paint the whole image with the given color.
+     * @param color The color.
+     */
+    public void clear(Color color) {
+        this.graphics.setClip(null);
+        this.graphics.setBackground(color);
+        this.graphics.clearRect(0, 0, this.image.getWidth(),
+                this.image.getHeight());
+    }
+
+    /**
+     * Returns true if every pixel of the image in the given area is opaque.
+     * @param area The area, inside the image.
+     * @return True if the area is opaque.
+     */
+    public boolean isOpaque(Rectangle area) {
+        int[] data = this.argbPixels();
+        int width = this.image.getWidth();
+        if (data != null) {
+            for (int y = area.y; y < area.y + area.height; y++) {
+                int at = (y * width) + area.x;
+                for (int x = 0; x < area.width; x++) {
+                    if ((data[at + x] >>> ALPHA_SHIFT) != OPAQUE) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        int[] row = this.pixels(area.width);
+        for (int y = area.y; y < area.y + area.height; y++) {
+            this.image.getRGB(area.x, y, area.width, 1, row, 0, area.width);
+            for (int x = 0; x < area.width; x++) {
+                if ((row[x] >>> ALPHA_SHIFT) != OPAQUE) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the smallest rectangle that holds every pixel of the image
+     * that is not fully transparent, or null if there is none.
+     * @return The bounds of the drawn pixels, or null.
+     */
+    public Rectangle findDrawnBounds() {
+        int width = this.image.getWidth();
+        int height = this.image.getHeight();
+        int[] row = this.pixels(width);
+        int minX = width;
+        int minY = height;
+        int maxX = -1;
+        int maxY = -1;
+        for (int y = 0; y < height; y++) {
+            this.image.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x++) {
+                if ((row[x] >>> ALPHA_SHIFT) != 0) {
+                    minX = Math.min(minX, x);
+                    maxX = Math.max(maxX, x);
+                    minY = Math.min(minY, y);
+                    maxY = y;
+                }
+            }
+        }
+        if (maxX < 0) {
+            return null;
+        }
+        return new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1);
+    }
+
+    /**
+     * Copy the given area of the image to another image, shifted by the
+     * given offset, replacing the pixels there.
+     * @param target The image to copy to.
+     * @param area The area, inside the image.
+     * @param offsetX How far left of the area its copy starts.
+     * @param offsetY How far above the area its copy starts.
+     */
+    public void copyTo(BufferedImage target, Rectangle area, int offsetX,
+                       int offsetY) {
+        if (this.copyTarget != target) {
+            this.disposeCopyGraphics();
+            this.copyTarget = target;
+            this.copyGraphics = target.createGraphics();
+            this.copyGraphics.setComposite(AlphaComposite.Src);
+        }
+        int x = area.x - offsetX;
+        int y = area.y - offsetY;
+        this.copyGraphics.drawImage(this.image, x, y, x + area.width,
+                y + area.height, area.x, area.y, area.x + area.width,
+                area.y + area.height, null);
+    }
+
+    /**
+     * Release the graphics of the image. The surface must not be drawn on
+     * afterwards.
+     */
+    public void dispose() {
+        this.graphics.dispose();
+        this.disposeCopyGraphics();
+    }
+
+    /**
+     * Release the graphics of the image the surface last copied to.
+     */
+    private void disposeCopyGraphics() {
+        if (this.copyGraphics != null) {
+            this.copyGraphics.dispose();
+        }
+        this.copyTarget = null;
+        this.copyGraphics = null;
+    }
+
+    /**
+     * Returns the pixels of the image, if it keeps them as ints with the
+     * alpha in their highest byte, or null otherwise.
+     * @return The pixels, row after row, or null.
+     */
+    private int[] argbPixels() {
+        int type = this.image.getType();
+        if ((type != BufferedImage.TYPE_INT_ARGB)
+                && (type != BufferedImage.TYPE_INT_ARGB_PRE)) {
+            return null;
+        }
+        return ((DataBufferInt) this.image.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * Returns a scratch row of at least the given number of pixels.
+     * @param length The number of pixels.
+     * @return The scratch row.
+     */
+    private int[] pixels(int length) {
+        if (this.scratch.length < length) {
+            this.scratch = new int[length];
+        }
+        return this.scratch;
+    }
+
+    @Override
+    public int getWidth() {
+        return this.image.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return this.image.getHeight();
+    }
+
+    @Override
+    public void setColor(Color color) {
+        this.graphics.setColor(color);
+    }
+
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        this.graphics.drawLine(x1, y1, x2, y2);
+    }
+
+    @Override
+    public void drawOval(int x, int y, int width, int height) {
+        this.graphics.drawOval(x, y, width, height);
+    }
+
+    @Override
+    public void fillOval(int x, int y, int width, int height) {
+        this.graphics.fillOval(x, y, width, height);
+    }
+
+    @Override
+    public void drawRectangle(int x, int y, int width, int height) {
+        this.graphics.drawRect(x, y, width, height);
+    }
+
+    @Override
+    public void fillRectangle(int x, int y, int width, int height) {
+        this.graphics.fillRect(x, y, width, height);
+    }
+
+    @Override
+    public void drawImage(int x, int y, Image img) {
+        this.graphics.drawImage(img, x, y, null);
+    }
+
+    @Override
+    public void drawCircle(int x, int y, int r) {
+        this.graphics.drawOval(x - r, y - r, r * 2, r * 2);
+    }
+
+    @Override
+    public void fillCircle(int x, int y, int r) {
+        this.graphics.fillOval(x - r, y - r, r * 2, r * 2);
+    }
+
+    @Override
+    public void drawText(int x, int y, String text, int fontSize) {
+        Font font = this.graphics.getFont();
+        this.graphics.setFont(new Font(font.getFontName(), font.getStyle(),
+                fontSize));
+        this.graphics.drawString(text, x, y);
+    }
+
+    @Override
+    public void drawPolygon(Polygon p) {
+        this.graphics.drawPolygon(p);
+    }
+
+    @Override
+    public void fillPolygon(Polygon p) {
+        this.graphics.fillPolygon(p);
+    }
+}
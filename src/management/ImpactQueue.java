@@ -0,0 +1,203 @@
+package management;
+
+import java.util.Arrays;
+
+/**
+ * Represents a priority queue of predicted impacts. Every entry is an int id
+ * (such as a ball slot) with the time of its next impact, and an id is in the
+ * queue at most once, so rescheduling an impact moves the existing entry
+ * instead of adding a stale one.
+ * Impacts at the same time are ordered by id, so the order in which they
+ * are handled never depends on the order they were scheduled in.
+ */
+public class ImpactQueue {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] heap;
+    private int[] positions;
+    private double[] times;
+    private int size;
+
+    /**
+     * Create a new, empty queue.
+     */
+    public ImpactQueue() {
+        this.heap = new int[INITIAL_CAPACITY];
+        this.positions = new int[INITIAL_CAPACITY];
+        Arrays.fill(this.positions, -1);
+        this.times = new double[INITIAL_CAPACITY];
+        this.size = 0;
+    }
+
+    /**
+     * Returns the number of scheduled impacts.
+     * @return The number of scheduled impacts.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns true if no impact is scheduled.
+     * @return True if the queue is empty.
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Returns true if an impact is scheduled for the given id.
+     * @param id The id.
+     * @return True if the id is in the queue.
+     */
+    public boolean contains(int id) {
+        return (id < this.positions.length) && (this.positions[id] >= 0);
+    }
+
+    /**
+     * Schedule the impact of the given id, replacing its previous impact.
+     * @param id The id.
+     * @param time The time of the impact.
+     */
+    public void schedule(int id, double time) {
+        if (id >= this.positions.length) {
+            int capacity = Math.max(id + 1, this.positions.length * 2);
+            int oldLength = this.positions.length;
+            this.positions = Arrays.copyOf(this.positions, capacity);
+            Arrays.fill(this.positions, oldLength, capacity, -1);
+            this.times = Arrays.copyOf(this.times, capacity);
+        }
+        if (this.positions[id] >= 0) {
+            this.times[id] = time;
+            int pos = this.siftUp(this.positions[id]);
+            this.siftDown(pos);
+            return;
+        }
+        if (this.size == this.heap.length) {
+            this.heap = Arrays.copyOf(this.heap, this.heap.length * 2);
+        }
+        this.times[id] = time;
+        this.heap[this.size] = id;
+        this.positions[id] = this.size;
+        this.size++;
+        this.siftUp(this.size - 1);
+    }
+
+    /**
+     * Remove the impact of the given id, if it is scheduled.
+     * @param id The id.
+     */
+    public void remove(int id) {
+        if (!this.contains(id)) {
+            return;
+        }
+        int pos = this.positions[id];
+        this.positions[id] = -1;
+        this.size--;
+        if (pos == this.size) {
+            return;
+        }
+        int last = this.heap[this.size];
+        this.heap[pos] = last;
+        this.positions[last] = pos;
+        pos = this.siftUp(pos);
+        this.siftDown(pos);
+    }
+
+    /**
+     * Returns the time of the earliest impact. The queue must not be empty.
+     * @return The time of the earliest impact.
+     */
+    public double peekTime() {
+        return this.times[this.heap[0]];
+    }
+
+    /**
+     * Returns the time scheduled for the given id.
+     * @param id The id, that must be in the queue.
+     * @return The time of its impact.
+     */
+    public double timeOf(int id) {
+        return this.times[id];
+    }
+
+    /**
+     * Remove the earliest impact. The queue must not be empty.
+     * @return The id of the earliest impact.
+     */
+    public int poll() {
+        int id = this.heap[0];
+        this.remove(id);
+        return id;
+    }
+
+    /**
+     * Remove all of the impacts.
+     */
+    public void clear() {
+        for (int i = 0; i < this.size; i++) {
+            this.positions[this.heap[i]] = -1;
+        }
+        this.size = 0;
+    }
+
+    /**
+     * Returns true if the entry of the first id comes before the second one.
+     * @param a The first id.
+     * @param b The second id.
+     * @return True if a comes before b.
+     */
+    private boolean before(int a, int b) {
+        return (this.times[a] < this.times[b])
+                || ((this.times[a] == this.times[b]) && (a < b));
+    }
+
+    /**
+     * Move the entry at the given heap position up to its place.
+     * @param pos The heap position.
+     * @return The new heap position of the entry.
+     */
+    private int siftUp(int pos) {
+        int id = this.heap[pos];
+        while (pos > 0) {
+            int parentPos = (pos - 1) >>> 1;
+            int parent = this.heap[parentPos];
+            if (!this.before(id, parent)) {
+                break;
+            }
+            this.heap[pos] = parent;
+            this.positions[parent] = pos;
+            pos = parentPos;
+        }
+        this.heap[pos] = id;
+        this.positions[id] = pos;
+        return pos;
+    }
+
+    /**
+     * Move the entry at the given heap position down to its place.
+     * @param pos The heap position.
+     */
+    private void siftDown(int pos) {
+        int id = this.heap[pos];
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= this.size) {
+                break;
+            }
+            if ((child + 1 < this.size)
+                    && this.before(this.heap[child + 1], this.heap[child])) {
+                child++;
+            }
+            if (!this.before(this.heap[child], id)) {
+                break;
+            }
+            this.heap[pos] = this.heap[child];
+            this.positions[this.heap[pos]] = pos;
+            pos = child;
+        }
+        this.heap[pos] = id;
+        this.positions[id] = pos;
+    }
+}
@@ -1,5 +1,6 @@
 package management;
 
+import sprites.BallSystem;
 import sprites.Velocity;
 import java.util.List;
 import sprites.Sprite;
@@ -65,4 +66,28 @@ public interface LevelInformation {
      * level is considered to be "cleared".
      */
     int numberOfBlocksToRemove();
+
+    /**
+     * Returns the physics the balls of the level move with,
+     * BallSystem.DOUBLE_PHYSICS or BallSystem.FIXED_PHYSICS. Levels whose
+     * games are replayed choose fixed point physics, whose results are the
+     * same on every platform. By default, the physics BallSystem uses by
+     * default.
+     * @return The physics of the level.
+     */
+    default String physics() {
+        return BallSystem.defaultPhysics();
+    }
+
+    /**
+     * Returns the rows and columns the blocks of the level are laid out on,
+     * or null if they are not laid out on a grid. The game environment of
+     * a level with a layout keeps its blocks in a grid of that layout.
+     * Levels whose blocks are placed one by one have none.
+     * @return The layout of the blocks, or null.
+     * @throws Exception If the blocks of the level could not be read.
+     */
+    default GridLayout blockLayout() throws Exception {
+        return null;
+    }
 }
@@ -2,15 +2,17 @@ package management;
 
 import biuoop.DrawSurface;
 import driver.GameLevel;
-import sprites.Sprite;
+import sprites.TrackedSprite;
 import java.awt.Color;
+import java.awt.Rectangle;
 
 /**
  * Represents a level name indicator.
  */
-public class LevelNameIndicator implements Sprite {
+public class LevelNameIndicator implements TrackedSprite {
     public static final int NAME_INDICATOR_OFFSET = 250;
     private String levelName;
+    private boolean drawn;
 
     /**
      * Create a new lives indicator.
@@ -26,11 +28,35 @@ public class LevelNameIndicator implements Sprite {
      */
     @Override
     public void drawOn(DrawSurface d) {
+        this.drawn = true;
         d.setColor(Color.BLACK);
         d.drawText(d.getWidth() - NAME_INDICATOR_OFFSET, 15,
                 "Level Name: " + this.levelName, 15);
     }
 
+    /**
+     * Add the bar of the indicators if the name was not drawn yet, as it
+     * never changes.
+     * @param region The region to repaint before the next frame.
+     */
+    @Override
+    public void addDirtyRectangles(DirtyRegion region) {
+        if (!this.drawn) {
+            region.add(this.getDrawBounds(region.getWidth(), region.getHeight()));
+        }
+    }
+
+    /**
+     * Returns the bar at the top of the screen the indicators are drawn on.
+     * @param width The surface width.
+     * @param height The surface height.
+     * @return The bounds of the indicator.
+     */
+    @Override
+    public Rectangle getDrawBounds(int width, int height) {
+        return new Rectangle(0, 0, width, ScoreIndicator.HEIGHT);
+    }
+
     /**
      * notify the sprite that time has passed.
      * @param dt The amount of seconds passed since the last call.
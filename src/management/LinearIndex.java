@@ -0,0 +1,69 @@
+package management;
+
+import geometryprimitives.Rectangle;
+import sprites.Collidable;
+
+import java.util.ArrayList;
+
+/**
+ * Represents an index that offers every collidable to every query. It is
+ * the reference the other indices are measured against.
+ */
+public class LinearIndex implements CollidableIndex {
+
+    private ArrayList<Collidable> collidables;
+
+    /**
+     * Create a new linear index.
+     */
+    public LinearIndex() {
+        this.collidables = new ArrayList<Collidable>();
+    }
+
+    @Override
+    public void add(Collidable c) {
+        this.collidables.add(c);
+    }
+
+    @Override
+    public boolean remove(Collidable c) {
+        return this.collidables.remove(c);
+    }
+
+    @Override
+    public boolean contains(Collidable c) {
+        return this.collidables.contains(c);
+    }
+
+    @Override
+    public void update(Collidable c) {
+        // The list does not depend on positions.
+    }
+
+    @Override
+    public int size() {
+        return this.collidables.size();
+    }
+
+    @Override
+    public void query(ClosestCollisionQuery query) {
+        for (int i = 0; i < this.collidables.size(); i++) {
+            query.consider(this.collidables.get(i), i);
+        }
+    }
+
+    @Override
+    public void collect(CandidateCache cache, ClosestCollisionQuery query) {
+        for (int i = 0; i < this.collidables.size(); i++) {
+            Collidable c = this.collidables.get(i);
+            Rectangle rect = c.getCollisionRectangle();
+            double minX = rect.getMinX() - BOUNDS_PADDING;
+            double minY = rect.getMinY() - BOUNDS_PADDING;
+            double maxX = rect.getMaxX() + BOUNDS_PADDING;
+            double maxY = rect.getMaxY() + BOUNDS_PADDING;
+            if (cache.overlapsRegion(minX, minY, maxX, maxY)) {
+                cache.add(c, i, minX, minY, maxX, maxY);
+            }
+        }
+    }
+}
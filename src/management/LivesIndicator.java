@@ -2,15 +2,18 @@ package management;
 
 import biuoop.DrawSurface;
 import driver.GameLevel;
-import sprites.Sprite;
+import sprites.TrackedSprite;
 
 import java.awt.Color;
+import java.awt.Rectangle;
 
 /**
  * Represents a lives indicator.
  */
-public class LivesIndicator implements Sprite {
+public class LivesIndicator implements TrackedSprite {
     private Counter livesCounter;
+    private int drawnLives;
+    private boolean drawn;
 
     /**
      * Create a new lives indicator.
@@ -26,11 +29,36 @@ public class LivesIndicator implements Sprite {
      */
     @Override
     public void drawOn(DrawSurface d) {
+        this.drawnLives = this.livesCounter.getValue();
+        this.drawn = true;
         d.setColor(Color.BLACK);
         d.drawText(d.getWidth() / 6, 15,
                 "Lives: " + this.livesCounter.getValue(), 15);
     }
 
+    /**
+     * Add the bar of the indicators if the lives changed since they were
+     * drawn.
+     * @param region The region to repaint before the next frame.
+     */
+    @Override
+    public void addDirtyRectangles(DirtyRegion region) {
+        if (!this.drawn || (this.drawnLives != this.livesCounter.getValue())) {
+            region.add(this.getDrawBounds(region.getWidth(), region.getHeight()));
+        }
+    }
+
+    /**
+     * Returns the bar at the top of the screen the indicators are drawn on.
+     * @param width The surface width.
+     * @param height The surface height.
+     * @return The bounds of the indicator.
+     */
+    @Override
+    public Rectangle getDrawBounds(int width, int height) {
+        return new Rectangle(0, 0, width, ScoreIndicator.HEIGHT);
+    }
+
     /**
      * notify the sprite that time has passed.
      * @param dt The amount of seconds passed since the last call.
@@ -0,0 +1,106 @@
+package management;
+
+import biuoop.DrawSurface;
+
+import java.awt.Color;
+import java.awt.Image;
+import java.awt.Polygon;
+
+/**
+ * Represents a draw surface that draws nothing, and only counts the shapes
+ * drawn on it, for running the game without paying for its rendering.
+ */
+public class NullDrawSurface implements DrawSurface {
+
+    private int width;
+    private int height;
+    private long drawCalls;
+
+    /**
+     * Create a new surface of the given size.
+     * @param width The surface width.
+     * @param height The surface height.
+     */
+    public NullDrawSurface(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.drawCalls = 0;
+    }
+
+    /**
+     * Returns the number of shapes, images and texts drawn on the surface.
+     * @return The number of draw calls.
+     */
+    public long getDrawCalls() {
+        return this.drawCalls;
+    }
+
+    @Override
+    public int getWidth() {
+        return this.width;
+    }
+
+    @Override
+    public int getHeight() {
+        return this.height;
+    }
+
+    @Override
+    public void setColor(Color color) {
+    }
+
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        this.drawCalls++;
+    }
+
+    @Override
+    public void drawOval(int x, int y, int w, int h) {
+        this.drawCalls++;
+    }
+
+    @Override
+    public void fillOval(int x, int y, int w, int h) {
+        this.drawCalls++;
+    }
+
+    @Override
+    public void drawRectangle(int x, int y, int w, int h) {
+        this.drawCalls++;
+    }
+
+    @Override
+    public void fillRectangle(int x, int y, int w, int h) {
+        this.drawCalls++;
+    }
+
+    @Override
+    public void drawImage(int x, int y, Image img) {
+        this.drawCalls++;
+    }
+
+    @Override
+    public void drawCircle(int x, int y, int r) {
+        this.drawCalls++;
+    }
+
+    @Override
+    public void fillCircle(int x, int y, int r) {
+        this.drawCalls++;
+    }
+
+    @Override
+    public void drawText(int x, int y, String text, int fontSize) {
+        this.drawCalls++;
+    }
+
+    @Override
+    public void drawPolygon(Polygon p) {
+        this.drawCalls++;
+    }
+
+    @Override
+    public void fillPolygon(Polygon p) {
+        this.drawCalls++;
+    }
+}
@@ -0,0 +1,144 @@
+package management;
+
+import geometryprimitives.Rectangle;
+import geometryprimitives.SlabTest;
+import sprites.Collidable;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Represents an index that keeps the bounds of all of the collidables in
+ * packed columns, one array per bound. A query tests its trajectory against
+ * all of the bounds in one batch (SlabTest.entryBatch), and only the
+ * collidables it may enter get the exact test. With the few dozen to few
+ * hundred blocks of a level, scanning the columns is cheaper than walking a
+ * grid or a tree, and dense brick walls cost the same as sparse ones.
+ * Collidables are kept in the order they were added, which is also the
+ * order used to break ties.
+ */
+public class PackedIndex implements CollidableIndex {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private Collidable[] items;
+    private double[] minX;
+    private double[] minY;
+    private double[] maxX;
+    private double[] maxY;
+    private int[] layers;
+    private int size;
+    private Map<Collidable, Integer> slots;
+
+    /**
+     * Create a new, empty packed index.
+     */
+    public PackedIndex() {
+        this.items = new Collidable[INITIAL_CAPACITY];
+        this.minX = new double[INITIAL_CAPACITY];
+        this.minY = new double[INITIAL_CAPACITY];
+        this.maxX = new double[INITIAL_CAPACITY];
+        this.maxY = new double[INITIAL_CAPACITY];
+        this.layers = new int[INITIAL_CAPACITY];
+        this.size = 0;
+        this.slots = new IdentityHashMap<Collidable, Integer>();
+    }
+
+    @Override
+    public void add(Collidable c) {
+        if (this.size == this.items.length) {
+            int capacity = this.items.length * 2;
+            this.items = Arrays.copyOf(this.items, capacity);
+            this.minX = Arrays.copyOf(this.minX, capacity);
+            this.minY = Arrays.copyOf(this.minY, capacity);
+            this.maxX = Arrays.copyOf(this.maxX, capacity);
+            this.maxY = Arrays.copyOf(this.maxY, capacity);
+            this.layers = Arrays.copyOf(this.layers, capacity);
+        }
+        int slot = this.size++;
+        this.items[slot] = c;
+        this.layers[slot] = c.getCollisionLayer();
+        this.slots.put(c, slot);
+        this.setBounds(slot);
+    }
+
+    @Override
+    public boolean remove(Collidable c) {
+        Integer slot = this.slots.remove(c);
+        if (slot == null) {
+            return false;
+        }
+        int moved = this.size - slot - 1;
+        System.arraycopy(this.items, slot + 1, this.items, slot, moved);
+        System.arraycopy(this.minX, slot + 1, this.minX, slot, moved);
+        System.arraycopy(this.minY, slot + 1, this.minY, slot, moved);
+        System.arraycopy(this.maxX, slot + 1, this.maxX, slot, moved);
+        System.arraycopy(this.maxY, slot + 1, this.maxY, slot, moved);
+        System.arraycopy(this.layers, slot + 1, this.layers, slot, moved);
+        this.size--;
+        this.items[this.size] = null;
+        for (int i = slot; i < this.size; i++) {
+            this.slots.put(this.items[i], i);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean contains(Collidable c) {
+        return this.slots.containsKey(c);
+    }
+
+    @Override
+    public void update(Collidable c) {
+        Integer slot = this.slots.get(c);
+        if (slot != null) {
+            this.setBounds(slot);
+        }
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public void query(ClosestCollisionQuery query) {
+        double[] near = query.entryParams(this.size);
+        double[] far = query.exitParams(this.size);
+        SlabTest.entryBatch(query.startX(), query.startY(), query.endX(),
+                query.endY(), query.radius(), this.minX, this.minY, this.maxX,
+                this.maxY, this.size, near, far);
+        for (int i = 0; i < this.size; i++) {
+            if ((near[i] <= far[i]) && (far[i] >= 0) && (near[i] <= 1)
+                    && query.collidesWithAny(this.layers[i])
+                    && !query.isBeyondClosest(near[i])) {
+                query.consider(this.items[i], i);
+            }
+        }
+    }
+
+    @Override
+    public void collect(CandidateCache cache, ClosestCollisionQuery query) {
+        for (int i = 0; i < this.size; i++) {
+            if (cache.overlapsRegion(this.minX[i], this.minY[i], this.maxX[i],
+                    this.maxY[i])) {
+                cache.add(this.items[i], i, this.minX[i], this.minY[i],
+                        this.maxX[i], this.maxY[i]);
+            }
+        }
+    }
+
+    /**
+     * Copy the padded bounds of the collidable in the given slot into the
+     * columns.
+     * @param slot The slot.
+     */
+    private void setBounds(int slot) {
+        Rectangle rect = this.items[slot].getCollisionRectangle();
+        this.minX[slot] = rect.getMinX() - BOUNDS_PADDING;
+        this.minY[slot] = rect.getMinY() - BOUNDS_PADDING;
+        this.maxX[slot] = rect.getMaxX() + BOUNDS_PADDING;
+        this.maxY[slot] = rect.getMaxY() + BOUNDS_PADDING;
+    }
+}
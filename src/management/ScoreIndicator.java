@@ -2,16 +2,21 @@ package management;
 
 import biuoop.DrawSurface;
 import driver.GameLevel;
-import sprites.Sprite;
+import sprites.TrackedSprite;
 import java.awt.Color;
+import java.awt.Rectangle;
 
 /**
  * Represents a score indicator.
  */
-public class ScoreIndicator implements Sprite {
+public class ScoreIndicator implements TrackedSprite {
     private Counter scoreCounter;
+    private int drawnScore;
+    private boolean drawn;
     // adjusts the score indicator sprite to be in the middle of the screen
     public static final int SCORE_OFFSET = 30;
+    // The height of the bar the indicators are drawn on.
+    public static final int HEIGHT = 20;
 
     /**
      * Create a new score indicator.
@@ -27,13 +32,37 @@ public class ScoreIndicator implements Sprite {
      */
     @Override
     public void drawOn(DrawSurface d) {
+        this.drawnScore = this.scoreCounter.getValue();
+        this.drawn = true;
         d.setColor(Color.LIGHT_GRAY);
-        d.fillRectangle(0, 0, d.getWidth(), 20);
+        d.fillRectangle(0, 0, d.getWidth(), HEIGHT);
         d.setColor(Color.BLACK);
         d.drawText((d.getWidth() / 2) - SCORE_OFFSET, 15, "Score: " + this.scoreCounter.getValue(),
                 15);
     }
 
+    /**
+     * Add the bar of the indicators if the score changed since it was drawn.
+     * @param region The region to repaint before the next frame.
+     */
+    @Override
+    public void addDirtyRectangles(DirtyRegion region) {
+        if (!this.drawn || (this.drawnScore != this.scoreCounter.getValue())) {
+            region.add(this.getDrawBounds(region.getWidth(), region.getHeight()));
+        }
+    }
+
+    /**
+     * Returns the bar at the top of the screen the indicators are drawn on.
+     * @param width The surface width.
+     * @param height The surface height.
+     * @return The bounds of the indicator.
+     */
+    @Override
+    public Rectangle getDrawBounds(int width, int height) {
+        return new Rectangle(0, 0, width, HEIGHT);
+    }
+
     /**
      * notify the sprite that time has passed.
      * @param dt The amount of seconds passed since the last call.
@@ -0,0 +1,133 @@
+package management;
+
+import biuoop.KeyboardSensor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents a keyboard whose keys are pressed by a script instead of a
+ * player, frame by frame, so a game can be played without a window and
+ * played again exactly the same way.
+ * A script is a comma separated list of presses, each written
+ * key@from-to, which holds the key down from frame from up to, but not
+ * including, frame to. For example "space@0-2,left@10-70" presses space for
+ * the first two frames, and holds left for a second at 60 frames per second.
+ */
+public class ScriptedKeyboardSensor implements KeyboardSensor {
+
+    private static final String PRESS_DELIMITER = ",";
+    private static final String FRAME_DELIMITER = "@";
+    private static final String RANGE_DELIMITER = "-";
+
+    private List<Press> presses;
+    private long frame;
+
+    /**
+     * Create a keyboard that presses nothing, at frame 0.
+     */
+    public ScriptedKeyboardSensor() {
+        this.presses = new ArrayList<Press>();
+        this.frame = 0;
+    }
+
+    /**
+     * Create a keyboard that presses the keys of the given script.
+     * @param script The script, as described above. May be empty.
+     * @return The keyboard.
+     */
+    public static ScriptedKeyboardSensor parse(String script) {
+        ScriptedKeyboardSensor keyboard = new ScriptedKeyboardSensor();
+        for (String press : script.split(PRESS_DELIMITER)) {
+            if (press.trim().isEmpty()) {
+                continue;
+            }
+            String[] keyAndFrames = press.trim().split(FRAME_DELIMITER);
+            String[] frames = keyAndFrames.length == 2
+                    ? keyAndFrames[1].split(RANGE_DELIMITER) : new String[0];
+            if (frames.length != 2) {
+                throw new IllegalArgumentException("A press must be written"
+                        + " key@from-to, got: " + press);
+            }
+            try {
+                keyboard.press(keyAndFrames[0], Long.parseLong(frames[0]),
+                        Long.parseLong(frames[1]));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Bad frames in press: "
+                        + press, e);
+            }
+        }
+        return keyboard;
+    }
+
+    /**
+     * Hold a key down from a frame up to, but not including, another.
+     * @param key The key, such as KeyboardSensor.SPACE_KEY.
+     * @param fromFrame The first frame the key is down.
+     * @param toFrame The first frame the key is up again.
+     */
+    public void press(String key, long fromFrame, long toFrame) {
+        if ((fromFrame < 0) || (toFrame <= fromFrame)) {
+            throw new IllegalArgumentException("A key must be pressed for at"
+                    + " least a frame, got: " + fromFrame + "-" + toFrame);
+        }
+        this.presses.add(new Press(key, fromFrame, toFrame));
+    }
+
+    /**
+     * Move on to the next frame.
+     */
+    public void nextFrame() {
+        this.frame++;
+    }
+
+    /**
+     * Returns the number of the current frame.
+     * @return The current frame.
+     */
+    public long getFrame() {
+        return this.frame;
+    }
+
+    @Override
+    public boolean isPressed(String key) {
+        for (Press press : this.presses) {
+            if (press.isDown(key, this.frame)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Represents a key held down for a range of frames.
+     */
+    private static final class Press {
+        private final String key;
+        private final long fromFrame;
+        private final long toFrame;
+
+        /**
+         * Create a new press.
+         * @param key The key.
+         * @param fromFrame The first frame the key is down.
+         * @param toFrame The first frame the key is up again.
+         */
+        Press(String key, long fromFrame, long toFrame) {
+            this.key = key;
+            this.fromFrame = fromFrame;
+            this.toFrame = toFrame;
+        }
+
+        /**
+         * Returns true if the given key is down at the given frame.
+         * @param k The key.
+         * @param frame The frame.
+         * @return True if the key is down.
+         */
+        boolean isDown(String k, long frame) {
+            return this.key.equals(k) && (frame >= this.fromFrame)
+                    && (frame < this.toFrame);
+        }
+    }
+}
@@ -6,16 +6,30 @@ import java.util.ArrayList;
 
 /**
  * Represents a sprite collection.
+ * A collection may draw its sprites through a dirty rectangle renderer, that
+ * repaints only the parts of the screen they changed since the last frame.
  */
 public class SpriteCollection {
 
     private ArrayList<Sprite> spritesCollection;
+    private DirtyRectRenderer renderer;
 
     /**
-     * Create a new sprite collection.
+     * Create a new sprite collection, that draws every sprite every frame.
      */
     public SpriteCollection() {
+        this(false);
+    }
+
+    /**
+     * Create a new sprite collection.
+     * @param dirtyRectangles True to repaint only what changed every frame.
+     */
+    public SpriteCollection(boolean dirtyRectangles) {
         this.spritesCollection = new ArrayList<Sprite>();
+        if (dirtyRectangles) {
+            this.renderer = new DirtyRectRenderer();
+        }
     }
 
     /**
@@ -32,7 +46,13 @@ public class SpriteCollection {
      * @return True if removed, false otherwise.
      */
     public boolean removeSprite(Sprite s) {
-        return this.spritesCollection.remove(s);
+        if (!this.spritesCollection.remove(s)) {
+            return false;
+        }
+        if (this.renderer != null) {
+            this.renderer.spriteRemoved(s);
+        }
+        return true;
     }
 
     /**
@@ -50,8 +70,20 @@ public class SpriteCollection {
      * @param d The given draw surface.
      */
     public void drawAllOn(DrawSurface d) {
+        if (this.renderer != null) {
+            this.renderer.drawAll(this.spritesCollection, d);
+            return;
+        }
         for (Sprite s: this.spritesCollection) {
             s.drawOn(d);
         }
     }
+
+    /**
+     * Returns the dirty rectangle renderer of the collection.
+     * @return The renderer, or null if every sprite is drawn every frame.
+     */
+    public DirtyRectRenderer getRenderer() {
+        return this.renderer;
+    }
 }
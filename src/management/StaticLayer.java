@@ -0,0 +1,314 @@
+package management;
+
+import biuoop.DrawSurface;
+import sprites.Ball;
+import sprites.Block;
+import sprites.Fill;
+import sprites.Sprite;
+import sprites.TrackedSprite;
+
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Represents the sprites of a level that do not move, such as its
+ * background and its blocks, drawn once into an off-screen image that is
+ * then drawn in a single call every frame.
+ * The layer listens to the hits of its blocks, and when the fill of a block
+ * changes, or a block is removed, only the rectangle of that block is
+ * marked dirty. Before the next frame every dirty rectangle is cleared and
+ * the sprites that overlap it are drawn into it again, in the order they
+ * were added. Sprites whose bounds are unknown, such as backgrounds, are
+ * drawn into every dirty rectangle.
+ * Drawing an image with transparent pixels blends every pixel, so while the
+ * layer is opaque wherever it draws anything, it is drawn from an opaque
+ * copy of just that part, which is only copied.
+ */
+public class StaticLayer implements TrackedSprite, HitListener {
+
+    // Run with -Darkanoid.staticlayer=false to draw every sprite every frame.
+    public static final String STATIC_LAYER_PROPERTY = "arkanoid.staticlayer";
+
+    // A stroke is drawn one pixel past the right and lower edges.
+    private static final int STROKE_OVERHANG = 1;
+    // Beyond this many dirty rectangles, their union is repainted at once.
+    private static final int MAX_DIRTY_RECTANGLES = 16;
+
+    private ArrayList<Sprite> sprites;
+    private Map<Sprite, Rectangle> bounds;
+    private Map<Block, Integer> drawnFills;
+    private ArrayList<Rectangle> dirty;
+    private boolean allDirty;
+    private ImageDrawSurface surface;
+    private BufferedImage opaqueCopy;
+    private Rectangle opaqueBounds;
+    private long repaints;
+
+    /**
+     * Create a new, empty static layer.
+     */
+    public StaticLayer() {
+        this.sprites = new ArrayList<Sprite>();
+        this.bounds = new IdentityHashMap<Sprite, Rectangle>();
+        this.drawnFills = new IdentityHashMap<Block, Integer>();
+        this.dirty = new ArrayList<Rectangle>();
+        this.allDirty = true;
+        this.surface = null;
+        this.opaqueCopy = null;
+        this.opaqueBounds = null;
+        this.repaints = 0;
+    }
+
+    /**
+     * Returns true if levels draw their static sprites through a static
+     * layer, as chosen by the arkanoid.staticlayer system property (true by
+     * default).
+     * @return True if static layers are used.
+     */
+    public static boolean isEnabledByDefault() {
+        return Boolean.parseBoolean(System.getProperty(STATIC_LAYER_PROPERTY,
+                "true"));
+    }
+
+    /**
+     * Add a sprite that does not move to the layer. A block is repainted
+     * whenever its fill changes; any other sprite must never change.
+     * @param s The sprite.
+     */
+    public void addSprite(Sprite s) {
+        this.sprites.add(s);
+        if (s instanceof Block) {
+            Block block = (Block) s;
+            this.drawnFills.put(block, block.getFillIndex());
+            this.bounds.put(s, boundsOf(block));
+            block.addHitListener(this);
+        }
+        this.invalidate(this.bounds.get(s));
+    }
+
+    /**
+     * Remove a sprite from the layer, and repaint where it was.
+     * @param s The sprite.
+     * @return True if removed, false otherwise.
+     */
+    public boolean removeSprite(Sprite s) {
+        if (!this.sprites.remove(s)) {
+            return false;
+        }
+        if (s instanceof Block) {
+            Block block = (Block) s;
+            this.drawnFills.remove(block);
+            block.removeHitListener(this);
+        }
+        this.invalidate(this.bounds.remove(s));
+        return true;
+    }
+
+    /**
+     * Repaint a block of the layer whose fill changed because of the hit.
+     * @param beingHit The block that was hit.
+     * @param hitter The ball that hit it.
+     */
+    @Override
+    public void hitEvent(Block beingHit, Ball hitter) {
+        Integer drawnFill = this.drawnFills.get(beingHit);
+        if ((drawnFill == null) || (drawnFill == beingHit.getFillIndex())) {
+            return;
+        }
+        this.drawnFills.put(beingHit, beingHit.getFillIndex());
+        // The new fill may be an image of another size than the old one.
+        Rectangle oldBounds = this.bounds.get(beingHit);
+        Rectangle newBounds = boundsOf(beingHit);
+        this.bounds.put(beingHit, newBounds);
+        this.invalidate(oldBounds.union(newBounds));
+    }
+
+    /**
+     * Bring the off-screen image up to date, and draw it.
+     * @param d The draw surface.
+     */
+    @Override
+    public void drawOn(DrawSurface d) {
+        if ((this.surface == null) || (this.surface.getWidth() != d.getWidth())
+                || (this.surface.getHeight() != d.getHeight())) {
+            if (this.surface != null) {
+                this.surface.dispose();
+            }
+            this.surface = new ImageDrawSurface(new BufferedImage(d.getWidth(),
+                    d.getHeight(), BufferedImage.TYPE_INT_ARGB_PRE));
+            this.allDirty = true;
+        }
+        if (this.allDirty) {
+            this.repaint(new Rectangle(0, 0, d.getWidth(), d.getHeight()));
+            this.findOpaqueBounds();
+        } else {
+            for (Rectangle r : this.dirty) {
+                this.repaint(r);
+                this.refreshOpaqueCopy(r);
+            }
+        }
+        this.allDirty = false;
+        this.dirty.clear();
+        if (this.opaqueBounds != null) {
+            d.drawImage(this.opaqueBounds.x, this.opaqueBounds.y,
+                    this.opaqueCopy);
+        } else {
+            d.drawImage(0, 0, this.surface.getImage());
+        }
+    }
+
+    /**
+     * Add the rectangles of the layer that will be repainted when it is
+     * drawn next, or the whole surface if the layer will be painted whole.
+     * @param region The region to repaint before the next frame.
+     */
+    @Override
+    public void addDirtyRectangles(DirtyRegion region) {
+        if (this.allDirty || (this.surface == null)
+                || (this.surface.getWidth() != region.getWidth())
+                || (this.surface.getHeight() != region.getHeight())) {
+            region.addAll();
+            return;
+        }
+        for (Rectangle r : this.dirty) {
+            region.add(r);
+        }
+    }
+
+    /**
+     * Returns null, as the layer may draw anywhere.
+     * @param width The surface width.
+     * @param height The surface height.
+     * @return Null.
+     */
+    @Override
+    public Rectangle getDrawBounds(int width, int height) {
+        return null;
+    }
+
+    /**
+     * Notify the sprites of the layer that time has passed.
+     * @param dt The amount of seconds passed since the last call.
+     */
+    @Override
+    public void timePassed(double dt) {
+        for (int i = 0; i < this.sprites.size(); i++) {
+            this.sprites.get(i).timePassed(dt);
+        }
+    }
+
+    /**
+     * Returns the number of rectangles repainted so far, counting the first
+     * paint of the whole layer as one.
+     * @return The number of repaints.
+     */
+    public long getRepaints() {
+        return this.repaints;
+    }
+
+    /**
+     * Mark the given rectangle dirty, or the whole layer if it is null.
+     * @param r The rectangle, or null for the whole layer.
+     */
+    private void invalidate(Rectangle r) {
+        if (this.allDirty) {
+            return;
+        }
+        if (r == null) {
+            this.allDirty = true;
+            this.dirty.clear();
+            return;
+        }
+        if (this.dirty.size() == MAX_DIRTY_RECTANGLES) {
+            Rectangle union = new Rectangle(r);
+            for (Rectangle other : this.dirty) {
+                union.add(other);
+            }
+            this.dirty.clear();
+            r = union;
+        }
+        this.dirty.add(r);
+    }
+
+    /**
+     * Clear the given rectangle of the image, and draw every sprite that
+     * may overlap it into it again.
+     * @param r The rectangle.
+     */
+    private void repaint(Rectangle r) {
+        this.repaints++;
+        this.surface.clearAndClip(r.x, r.y, r.width, r.height);
+        for (int i = 0; i < this.sprites.size(); i++) {
+            Sprite s = this.sprites.get(i);
+            Rectangle spriteBounds = this.bounds.get(s);
+            if ((spriteBounds == null) || spriteBounds.intersects(r)) {
+                s.drawOn(this.surface);
+            }
+        }
+    }
+
+    /**
+     * Find the bounds of the pixels the layer draws, and if it covers them
+     * all opaquely, make an opaque copy of them. Otherwise the layer is
+     * drawn from its transparent image.
+     */
+    private void findOpaqueBounds() {
+        Rectangle drawn = this.surface.findDrawnBounds();
+        this.opaqueBounds = null;
+        this.opaqueCopy = null;
+        if ((drawn == null) || !this.surface.isOpaque(drawn)) {
+            return;
+        }
+        this.opaqueBounds = drawn;
+        this.opaqueCopy = new BufferedImage(drawn.width, drawn.height,
+                BufferedImage.TYPE_INT_RGB);
+        this.surface.copyTo(this.opaqueCopy, drawn, drawn.x, drawn.y);
+    }
+
+    /**
+     * Copy a repainted rectangle to the opaque copy, as long as the layer is
+     * still opaque within its bounds and draws nothing outside of them.
+     * Otherwise look for its bounds again.
+     * @param r The repainted rectangle.
+     */
+    private void refreshOpaqueCopy(Rectangle r) {
+        Rectangle area = r.intersection(new Rectangle(0, 0,
+                this.surface.getWidth(), this.surface.getHeight()));
+        if (area.isEmpty()) {
+            return;
+        }
+        if ((this.opaqueBounds != null) && this.opaqueBounds.contains(area)
+                && this.surface.isOpaque(area)) {
+            this.surface.copyTo(this.opaqueCopy, area, this.opaqueBounds.x,
+                    this.opaqueBounds.y);
+            return;
+        }
+        this.findOpaqueBounds();
+    }
+
+    /**
+     * Returns the pixels a block covers with its current fill and its
+     * stroke.
+     * @param block The block.
+     * @return The bounds of the block on the screen.
+     */
+    private static Rectangle boundsOf(Block block) {
+        geometryprimitives.Rectangle rect = block.getCollisionRectangle();
+        int x = (int) Math.floor(rect.getMinX());
+        int y = (int) Math.floor(rect.getMinY());
+        Rectangle r = new Rectangle(x, y,
+                (int) Math.ceil(rect.getMaxX()) - x + STROKE_OVERHANG,
+                (int) Math.ceil(rect.getMaxY()) - y + STROKE_OVERHANG);
+        Fill fill = block.getFill();
+        if (fill.isImage() && (fill.getImage() != null)) {
+            Image image = fill.getImage();
+            r.add(new Rectangle((int) rect.getMinX(), (int) rect.getMinY(),
+                    image.getWidth(null), image.getHeight(null)));
+        }
+        return r;
+    }
+}
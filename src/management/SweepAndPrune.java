@@ -0,0 +1,314 @@
+package management;
+
+import java.util.Arrays;
+
+/**
+ * Represents a sweep and prune broad phase over boxes identified by dense
+ * ids. The X endpoints of all of the boxes are kept in one array, sorted by
+ * position, and every update refreshes the positions and sorts the array
+ * again with an insertion sort. From one frame to the next the boxes barely
+ * move, so the array is almost sorted and the sort costs about one pass
+ * plus the few swaps of the boxes that passed each other. A sweep over the
+ * sorted endpoints then finds every pair of boxes that overlap on both
+ * axes, each pair once.
+ */
+public class SweepAndPrune {
+
+    private static final int INITIAL_CAPACITY = 32;
+    private static final int INITIAL_PAIRS = 64;
+    // Boxes added since the last update are placed with an insertion sort
+    // while they are few, and with a merge sort once there are more.
+    private static final int MERGE_SORT_THRESHOLD = 32;
+
+    // An endpoint is the id of its box shifted left by one, with the lowest
+    // bit set on the maximal endpoint.
+    private int[] endpoints;
+    private double[] values;
+    private int count;
+    private int added;
+    private int[] scratchEndpoints;
+    private double[] scratchValues;
+    private int[] active;
+    private int[] activePositions;
+    private int numOfActive;
+    private int[] pairs;
+    private int numOfPairs;
+    private int[] renumbered;
+    private long swaps;
+
+    /**
+     * Create a new, empty sweep and prune.
+     */
+    public SweepAndPrune() {
+        this.endpoints = new int[INITIAL_CAPACITY];
+        this.values = new double[INITIAL_CAPACITY];
+        this.count = 0;
+        this.added = 0;
+        this.scratchEndpoints = new int[0];
+        this.scratchValues = new double[0];
+        this.active = new int[INITIAL_CAPACITY];
+        this.activePositions = new int[INITIAL_CAPACITY];
+        this.numOfActive = 0;
+        this.pairs = new int[INITIAL_PAIRS * 2];
+        this.numOfPairs = 0;
+        this.renumbered = new int[0];
+        this.swaps = 0;
+    }
+
+    /**
+     * Add the box of the given id. Its endpoints are placed by the next
+     * update.
+     * @param id The dense id of the box.
+     */
+    public void add(int id) {
+        if (this.count + 2 > this.endpoints.length) {
+            int capacity = this.endpoints.length * 2;
+            this.endpoints = Arrays.copyOf(this.endpoints, capacity);
+            this.values = Arrays.copyOf(this.values, capacity);
+        }
+        this.endpoints[this.count] = id << 1;
+        this.values[this.count] = Double.POSITIVE_INFINITY;
+        this.endpoints[this.count + 1] = (id << 1) | 1;
+        this.values[this.count + 1] = Double.POSITIVE_INFINITY;
+        this.count += 2;
+        this.added++;
+    }
+
+    /**
+     * Remove every box.
+     */
+    public void clear() {
+        this.count = 0;
+        this.added = 0;
+        this.numOfPairs = 0;
+    }
+
+    /**
+     * Returns the number of boxes.
+     * @return The number of boxes.
+     */
+    public int size() {
+        return this.count / 2;
+    }
+
+    /**
+     * Drop the boxes whose ids are not kept, and renumber the rest so their
+     * ids stay dense and in the same order, the way the owner of the boxes
+     * compacts its slots. The endpoints keep their order, so the array stays
+     * sorted.
+     * @param kept Whether every id in [0, ids) is kept.
+     * @param ids The number of ids.
+     */
+    public void retain(boolean[] kept, int ids) {
+        if (this.renumbered.length < ids) {
+            this.renumbered = new int[Math.max(ids, this.renumbered.length * 2)];
+        }
+        int next = 0;
+        for (int id = 0; id < ids; id++) {
+            this.renumbered[id] = kept[id] ? next++ : -1;
+        }
+        int target = 0;
+        for (int i = 0; i < this.count; i++) {
+            int endpoint = this.endpoints[i];
+            int id = this.renumbered[endpoint >>> 1];
+            if (id < 0) {
+                continue;
+            }
+            this.endpoints[target] = (id << 1) | (endpoint & 1);
+            this.values[target] = this.values[i];
+            target++;
+        }
+        this.count = target;
+        this.numOfPairs = 0;
+    }
+
+    /**
+     * Refresh the X endpoints of every box from the given bounds, sort them
+     * again, and find every pair of boxes that overlap. Boxes that only touch
+     * count as overlapping.
+     * @param minX The minimal X of every box, by id.
+     * @param minY The minimal Y of every box, by id.
+     * @param maxX The maximal X of every box, by id.
+     * @param maxY The maximal Y of every box, by id.
+     */
+    public void update(double[] minX, double[] minY, double[] maxX,
+                       double[] maxY) {
+        for (int i = 0; i < this.count; i++) {
+            int endpoint = this.endpoints[i];
+            int id = endpoint >>> 1;
+            this.values[i] = ((endpoint & 1) == 0) ? minX[id] : maxX[id];
+        }
+        if (this.added > MERGE_SORT_THRESHOLD) {
+            this.mergeSort();
+        } else {
+            this.sort();
+        }
+        this.added = 0;
+        this.sweep(minY, maxY);
+    }
+
+    /**
+     * Returns the number of overlapping pairs found by the last update.
+     * @return The number of overlapping pairs.
+     */
+    public int pairCount() {
+        return this.numOfPairs;
+    }
+
+    /**
+     * Returns the smaller id of the given pair.
+     * @param pair The pair, from 0 to pairCount() - 1.
+     * @return The smaller id of the pair.
+     */
+    public int first(int pair) {
+        return this.pairs[pair * 2];
+    }
+
+    /**
+     * Returns the larger id of the given pair.
+     * @param pair The pair, from 0 to pairCount() - 1.
+     * @return The larger id of the pair.
+     */
+    public int second(int pair) {
+        return this.pairs[pair * 2 + 1];
+    }
+
+    /**
+     * Returns the number of endpoint swaps done by all of the updates so
+     * far, which shows how much the boxes moved past each other.
+     * @return The number of endpoint swaps.
+     */
+    public long getSwaps() {
+        return this.swaps;
+    }
+
+    /**
+     * Insertion sort the endpoints by position. At the same position a
+     * minimal endpoint comes first, so touching boxes overlap.
+     */
+    private void sort() {
+        for (int i = 1; i < this.count; i++) {
+            int endpoint = this.endpoints[i];
+            double value = this.values[i];
+            int j = i - 1;
+            while ((j >= 0) && ((this.values[j] > value)
+                    || ((this.values[j] == value)
+                    && (this.endpoints[j] & 1) > (endpoint & 1)))) {
+                this.endpoints[j + 1] = this.endpoints[j];
+                this.values[j + 1] = this.values[j];
+                j--;
+            }
+            if (j + 1 != i) {
+                this.endpoints[j + 1] = endpoint;
+                this.values[j + 1] = value;
+                this.swaps += i - j - 1;
+            }
+        }
+    }
+
+    /**
+     * Sort the endpoints by position with a bottom up merge sort, in the same
+     * order as the insertion sort. Used when many boxes were just added, as
+     * their endpoints may be anywhere.
+     */
+    private void mergeSort() {
+        if (this.scratchEndpoints.length < this.count) {
+            this.scratchEndpoints = new int[this.endpoints.length];
+            this.scratchValues = new double[this.values.length];
+        }
+        int[] fromEndpoints = this.endpoints;
+        double[] fromValues = this.values;
+        int[] toEndpoints = this.scratchEndpoints;
+        double[] toValues = this.scratchValues;
+        for (int width = 1; width < this.count; width *= 2) {
+            for (int lo = 0; lo < this.count; lo += 2 * width) {
+                int mid = Math.min(lo + width, this.count);
+                int hi = Math.min(lo + 2 * width, this.count);
+                int i = lo;
+                int j = mid;
+                for (int k = lo; k < hi; k++) {
+                    boolean takeRight = (j < hi) && ((i >= mid)
+                            || (fromValues[j] < fromValues[i])
+                            || ((fromValues[j] == fromValues[i])
+                            && (fromEndpoints[j] & 1) < (fromEndpoints[i] & 1)));
+                    int from = takeRight ? j++ : i++;
+                    toEndpoints[k] = fromEndpoints[from];
+                    toValues[k] = fromValues[from];
+                }
+            }
+            int[] swapEndpoints = fromEndpoints;
+            fromEndpoints = toEndpoints;
+            toEndpoints = swapEndpoints;
+            double[] swapValues = fromValues;
+            fromValues = toValues;
+            toValues = swapValues;
+        }
+        this.endpoints = fromEndpoints;
+        this.values = fromValues;
+        this.scratchEndpoints = toEndpoints;
+        this.scratchValues = toValues;
+    }
+
+    /**
+     * Sweep the sorted endpoints, keeping the boxes whose X range contains
+     * the sweep position, and pair every box that starts with each of them
+     * whose Y range overlaps its own.
+     * @param minY The minimal Y of every box, by id.
+     * @param maxY The maximal Y of every box, by id.
+     */
+    private void sweep(double[] minY, double[] maxY) {
+        int boxes = this.count / 2;
+        if (this.active.length < boxes) {
+            this.active = new int[Math.max(boxes, this.active.length * 2)];
+        }
+        if (this.activePositions.length < this.maxId() + 1) {
+            this.activePositions = new int[Math.max(this.maxId() + 1,
+                    this.activePositions.length * 2)];
+        }
+        this.numOfActive = 0;
+        this.numOfPairs = 0;
+        for (int i = 0; i < this.count; i++) {
+            int endpoint = this.endpoints[i];
+            int id = endpoint >>> 1;
+            if ((endpoint & 1) != 0) {
+                int pos = this.activePositions[id];
+                int last = this.active[--this.numOfActive];
+                this.active[pos] = last;
+                this.activePositions[last] = pos;
+                continue;
+            }
+            double top = minY[id];
+            double bottom = maxY[id];
+            for (int k = 0; k < this.numOfActive; k++) {
+                int other = this.active[k];
+                if ((minY[other] <= bottom) && (top <= maxY[other])) {
+                    this.addPair(Math.min(id, other), Math.max(id, other));
+                }
+            }
+            this.activePositions[id] = this.numOfActive;
+            this.active[this.numOfActive++] = id;
+        }
+    }
+
+    /**
+     * Returns the largest id of all of the boxes, or -1 if there are none.
+     * @return The largest id.
+     */
+    private int maxId() {
+        return this.count / 2 - 1;
+    }
+
+    /**
+     * Keep an overlapping pair.
+     * @param a The smaller id.
+     * @param b The larger id.
+     */
+    private void addPair(int a, int b) {
+        if ((this.numOfPairs + 1) * 2 > this.pairs.length) {
+            this.pairs = Arrays.copyOf(this.pairs, this.pairs.length * 2);
+        }
+        this.pairs[this.numOfPairs * 2] = a;
+        this.pairs[this.numOfPairs * 2 + 1] = b;
+        this.numOfPairs++;
+    }
+}
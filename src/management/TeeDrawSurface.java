@@ -0,0 +1,126 @@
+package management;
+
+import biuoop.DrawSurface;
+
+import java.awt.Color;
+import java.awt.Image;
+import java.awt.Polygon;
+
+/**
+ * Represents a draw surface that draws everything on two surfaces at once,
+ * such as the surface of a window and an off-screen copy of the frame.
+ * Its size is the size of the first surface.
+ */
+public class TeeDrawSurface implements DrawSurface {
+
+    private DrawSurface first;
+    private DrawSurface second;
+
+    /**
+     * Create a surface that draws on both of the given surfaces.
+     * @param first The first surface.
+     * @param second The second surface.
+     */
+    public TeeDrawSurface(DrawSurface first, DrawSurface second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    /**
+     * Returns the first surface.
+     * @return The first surface.
+     */
+    public DrawSurface getFirst() {
+        return this.first;
+    }
+
+    /**
+     * Returns the second surface.
+     * @return The second surface.
+     */
+    public DrawSurface getSecond() {
+        return this.second;
+    }
+
+    @Override
+    public int getWidth() {
+        return this.first.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return this.first.getHeight();
+    }
+
+    @Override
+    public void setColor(Color color) {
+        this.first.setColor(color);
+        this.second.setColor(color);
+    }
+
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        this.first.drawLine(x1, y1, x2, y2);
+        this.second.drawLine(x1, y1, x2, y2);
+    }
+
+    @Override
+    public void drawOval(int x, int y, int width, int height) {
+        this.first.drawOval(x, y, width, height);
+        this.second.drawOval(x, y, width, height);
+    }
+
+    @Override
+    public void fillOval(int x, int y, int width, int height) {
+        this.first.fillOval(x, y, width, height);
+        this.second.fillOval(x, y, width, height);
+    }
+
+    @Override
+    public void drawRectangle(int x, int y, int width, int height) {
+        this.first.drawRectangle(x, y, width, height);
+        this.second.drawRectangle(x, y, width, height);
+    }
+
+    @Override
+    public void fillRectangle(int x, int y, int width, int height) {
+        this.first.fillRectangle(x, y, width, height);
+        this.second.fillRectangle(x, y, width, height);
+    }
+
+    @Override
+    public void drawImage(int x, int y, Image img) {
+        this.first.drawImage(x, y, img);
+        this.second.drawImage(x, y, img);
+    }
+
+    @Override
+    public void drawCircle(int x, int y, int r) {
+        this.first.drawCircle(x, y, r);
+        this.second.drawCircle(x, y, r);
+    }
+
+    @Override
+    public void fillCircle(int x, int y, int r) {
+        this.first.fillCircle(x, y, r);
+        this.second.fillCircle(x, y, r);
+    }
+
+    @Override
+    public void drawText(int x, int y, String text, int fontSize) {
+        this.first.drawText(x, y, text, fontSize);
+        this.second.drawText(x, y, text, fontSize);
+    }
+
+    @Override
+    public void drawPolygon(Polygon p) {
+        this.first.drawPolygon(p);
+        this.second.drawPolygon(p);
+    }
+
+    @Override
+    public void fillPolygon(Polygon p) {
+        this.first.fillPolygon(p);
+        this.second.fillPolygon(p);
+    }
+}
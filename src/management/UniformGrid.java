@@ -0,0 +1,512 @@
+package management;
+
+import geometryprimitives.Rectangle;
+import sprites.Collidable;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Represents a uniform grid spatial hash of collidables. Every collidable is
+ * bucketed into all of the cells its collision rectangle overlaps, and a
+ * trajectory only visits the cells it crosses.
+ */
+public class UniformGrid implements CollidableIndex {
+
+    public static final double DEF_CELL_SIZE = 50;
+
+    private static final int INITIAL_TABLE_SIZE = 64;
+    private static final double MAX_LOAD_FACTOR = 0.5;
+
+    private double cellSize;
+    private long[] keys;
+    private Cell[] cells;
+    private int numOfCells;
+    private Map<Collidable, Entry> entries;
+    private long nextOrder;
+    private int nextId;
+    private int[] freeIds;
+    private int numOfFreeIds;
+    private int[] scratchRange;
+
+    /**
+     * Create a new grid with the default cell size.
+     */
+    public UniformGrid() {
+        this(DEF_CELL_SIZE);
+    }
+
+    /**
+     * Create a new grid.
+     * @param cellSize The width and height of a single cell.
+     */
+    public UniformGrid(double cellSize) {
+        this.cellSize = cellSize;
+        this.keys = new long[INITIAL_TABLE_SIZE];
+        this.cells = new Cell[INITIAL_TABLE_SIZE];
+        this.numOfCells = 0;
+        this.entries = new IdentityHashMap<Collidable, Entry>();
+        this.nextOrder = 0;
+        this.nextId = 0;
+        this.freeIds = new int[INITIAL_TABLE_SIZE];
+        this.numOfFreeIds = 0;
+        this.scratchRange = new int[CellRange.SIZE];
+    }
+
+    /**
+     * Add the given collidable to the grid.
+     * @param c The collidable that will be added.
+     */
+    @Override
+    public void add(Collidable c) {
+        Entry entry = new Entry(c, this.nextOrder++, this.allocateId());
+        this.entries.put(c, entry);
+        this.computeCellRange(c.getCollisionRectangle(), entry.range);
+        this.bucket(entry);
+    }
+
+    /**
+     * Remove the given collidable from the grid.
+     * @param c The collidable that will be removed.
+     * @return True if removed, false otherwise.
+     */
+    @Override
+    public boolean remove(Collidable c) {
+        Entry entry = this.entries.remove(c);
+        if (entry == null) {
+            return false;
+        }
+        this.unbucket(entry);
+        this.releaseId(entry.id);
+        return true;
+    }
+
+    @Override
+    public boolean contains(Collidable c) {
+        return this.entries.containsKey(c);
+    }
+
+    /**
+     * Move the given collidable to the cells its collision rectangle
+     * currently overlaps. Should be called whenever the collidable moves.
+     * @param c The collidable that moved.
+     */
+    @Override
+    public void update(Collidable c) {
+        Entry entry = this.entries.get(c);
+        if (entry == null) {
+            return;
+        }
+        this.computeCellRange(c.getCollisionRectangle(), this.scratchRange);
+        if (CellRange.equal(entry.range, this.scratchRange)) {
+            return;
+        }
+        this.unbucket(entry);
+        System.arraycopy(this.scratchRange, 0, entry.range, 0,
+                CellRange.SIZE);
+        this.bucket(entry);
+    }
+
+    /**
+     * Returns the number of collidables in the grid.
+     * @return The number of collidables in the grid.
+     */
+    @Override
+    public int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Offer the query every collidable that lies in a cell crossed by its
+     * trajectory, walking the cells from the start of the trajectory (DDA).
+     * The grid itself is only read, so queries may run concurrently.
+     * @param query The closest collision query.
+     */
+    @Override
+    public void query(ClosestCollisionQuery query) {
+        double x0 = query.startX();
+        double y0 = query.startY();
+        double dx = query.endX() - x0;
+        double dy = query.endY() - y0;
+        // A circle touches only collidables in cells within its radius of
+        // the cells its center passes through. Every step of the walk adds
+        // just the row or column of such cells that was not visited yet.
+        int reach = (int) Math.ceil(query.radius() / this.cellSize);
+
+        int cx = this.cellOf(x0);
+        int cy = this.cellOf(y0);
+        int endCx = this.cellOf(x0 + dx);
+        int endCy = this.cellOf(y0 + dy);
+        int stepX = Integer.signum(endCx - cx);
+        int stepY = Integer.signum(endCy - cy);
+        double tMaxX = this.firstBoundary(cx, stepX, x0, dx);
+        double tMaxY = this.firstBoundary(cy, stepY, y0, dy);
+        double tDeltaX = stepX == 0 ? Double.POSITIVE_INFINITY
+                : this.cellSize / Math.abs(dx);
+        double tDeltaY = stepY == 0 ? Double.POSITIVE_INFINITY
+                : this.cellSize / Math.abs(dy);
+
+        this.visitRange(cx - reach, cy - reach, cx + reach, cy + reach, query);
+        while ((cx != endCx) || (cy != endCy)) {
+            double tEnter;
+            boolean alongX = (cy == endCy)
+                    || ((cx != endCx) && (tMaxX < tMaxY));
+            if (alongX) {
+                cx += stepX;
+                tEnter = tMaxX;
+                tMaxX += tDeltaX;
+            } else {
+                cy += stepY;
+                tEnter = tMaxY;
+                tMaxY += tDeltaY;
+            }
+            if (query.isBeyondClosest(tEnter)) {
+                return;
+            }
+            if (alongX) {
+                int column = cx + stepX * reach;
+                this.visitRange(column, cy - reach, column, cy + reach, query);
+            } else {
+                int row = cy + stepY * reach;
+                this.visitRange(cx - reach, row, cx + reach, row, query);
+            }
+        }
+    }
+
+    /**
+     * Add to the cache every collidable in the cells its region overlaps,
+     * once each, if its bounds overlap the region too.
+     * @param cache The candidate cache being filled.
+     * @param query The query that lends its visit stamps.
+     */
+    @Override
+    public void collect(CandidateCache cache, ClosestCollisionQuery query) {
+        int minCx = this.cellOf(cache.regionMinX());
+        int minCy = this.cellOf(cache.regionMinY());
+        int maxCx = this.cellOf(cache.regionMaxX());
+        int maxCy = this.cellOf(cache.regionMaxY());
+        for (int i = minCx; i <= maxCx; i++) {
+            for (int j = minCy; j <= maxCy; j++) {
+                Cell cell = this.findCell(i, j);
+                if (cell == null) {
+                    continue;
+                }
+                for (int k = 0; k < cell.size; k++) {
+                    Entry entry = cell.items[k];
+                    if (query.firstVisit(entry.id)) {
+                        Rectangle rect = entry.collidable.getCollisionRectangle();
+                        double minX = rect.getMinX() - BOUNDS_PADDING;
+                        double minY = rect.getMinY() - BOUNDS_PADDING;
+                        double maxX = rect.getMaxX() + BOUNDS_PADDING;
+                        double maxY = rect.getMaxY() + BOUNDS_PADDING;
+                        if (cache.overlapsRegion(minX, minY, maxX, maxY)) {
+                            cache.add(entry.collidable, entry.order, minX,
+                                    minY, maxX, maxY);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Visit every cell in the given range of cells.
+     * @param minCx The first cell X index.
+     * @param minCy The first cell Y index.
+     * @param maxCx The last cell X index.
+     * @param maxCy The last cell Y index.
+     * @param query The closest collision query.
+     */
+    private void visitRange(int minCx, int minCy, int maxCx, int maxCy,
+                            ClosestCollisionQuery query) {
+        for (int i = minCx; i <= maxCx; i++) {
+            for (int j = minCy; j <= maxCy; j++) {
+                this.visit(i, j, query);
+            }
+        }
+    }
+
+    /**
+     * Offer the query all of the collidables in the given cell that were not
+     * offered yet.
+     * @param cx The cell X index.
+     * @param cy The cell Y index.
+     * @param query The closest collision query.
+     */
+    private void visit(int cx, int cy, ClosestCollisionQuery query) {
+        Cell cell = this.findCell(cx, cy);
+        if (cell == null) {
+            return;
+        }
+        for (int i = 0; i < cell.size; i++) {
+            Entry entry = cell.items[i];
+            if (query.collidesWithAny(entry.layer)
+                    && query.firstVisit(entry.id)) {
+                query.consider(entry.collidable, entry.order);
+            }
+        }
+    }
+
+    /**
+     * Returns a dense entry id, reusing the ids of removed entries.
+     * @return The entry id.
+     */
+    private int allocateId() {
+        if (this.numOfFreeIds > 0) {
+            return this.freeIds[--this.numOfFreeIds];
+        }
+        return this.nextId++;
+    }
+
+    /**
+     * Return the id of a removed entry for reuse.
+     * @param id The entry id.
+     */
+    private void releaseId(int id) {
+        if (this.numOfFreeIds == this.freeIds.length) {
+            int[] grown = new int[this.freeIds.length * 2];
+            System.arraycopy(this.freeIds, 0, grown, 0, this.numOfFreeIds);
+            this.freeIds = grown;
+        }
+        this.freeIds[this.numOfFreeIds++] = id;
+    }
+
+    /**
+     * Returns the trajectory parameter at which the first cell boundary is
+     * crossed along one axis.
+     * @param cell The starting cell index along the axis.
+     * @param step The step direction along the axis.
+     * @param start The starting coordinate along the axis.
+     * @param delta The change of the coordinate along the trajectory.
+     * @return The trajectory parameter of the first boundary.
+     */
+    private double firstBoundary(int cell, int step, double start,
+                                 double delta) {
+        if (step == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double boundary = (step > 0 ? cell + 1 : cell) * this.cellSize;
+        return (boundary - start) / delta;
+    }
+
+    /**
+     * Returns the cell index of the given coordinate.
+     * @param coordinate The coordinate.
+     * @return The cell index.
+     */
+    private int cellOf(double coordinate) {
+        return (int) Math.floor(coordinate / this.cellSize);
+    }
+
+    /**
+     * Compute the range of cells the (padded) rectangle overlaps.
+     * @param rect The rectangle.
+     * @param range The range that will be filled.
+     */
+    private void computeCellRange(Rectangle rect, int[] range) {
+        range[CellRange.MIN_X] = this.cellOf(rect.getMinX() - BOUNDS_PADDING);
+        range[CellRange.MIN_Y] = this.cellOf(rect.getMinY() - BOUNDS_PADDING);
+        range[CellRange.MAX_X] = this.cellOf(rect.getMaxX() + BOUNDS_PADDING);
+        range[CellRange.MAX_Y] = this.cellOf(rect.getMaxY() + BOUNDS_PADDING);
+    }
+
+    /**
+     * Add the entry to all of the cells in its range.
+     * @param entry The entry.
+     */
+    private void bucket(Entry entry) {
+        int[] range = entry.range;
+        for (int cx = range[CellRange.MIN_X]; cx <= range[CellRange.MAX_X]; cx++) {
+            for (int cy = range[CellRange.MIN_Y]; cy <= range[CellRange.MAX_Y]; cy++) {
+                this.getOrCreateCell(cx, cy).add(entry);
+            }
+        }
+    }
+
+    /**
+     * Remove the entry from all of the cells in its range.
+     * @param entry The entry.
+     */
+    private void unbucket(Entry entry) {
+        int[] range = entry.range;
+        for (int cx = range[CellRange.MIN_X]; cx <= range[CellRange.MAX_X]; cx++) {
+            for (int cy = range[CellRange.MIN_Y]; cy <= range[CellRange.MAX_Y]; cy++) {
+                Cell cell = this.findCell(cx, cy);
+                if (cell != null) {
+                    cell.remove(entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the hash table slot of the given cell key.
+     * @param key The cell key.
+     * @param mask The table mask.
+     * @return The first slot to probe.
+     */
+    private static int slotOf(long key, int mask) {
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32)) & mask;
+    }
+
+    /**
+     * Returns the key of a cell.
+     * @param cx The cell X index.
+     * @param cy The cell Y index.
+     * @return The cell key.
+     */
+    private static long keyOf(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Find a cell, or return null if it was never created.
+     * @param cx The cell X index.
+     * @param cy The cell Y index.
+     * @return The cell or null.
+     */
+    private Cell findCell(int cx, int cy) {
+        long key = keyOf(cx, cy);
+        int mask = this.keys.length - 1;
+        int slot = slotOf(key, mask);
+        while (this.cells[slot] != null) {
+            if (this.keys[slot] == key) {
+                return this.cells[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Find a cell, creating it if needed.
+     * @param cx The cell X index.
+     * @param cy The cell Y index.
+     * @return The cell.
+     */
+    private Cell getOrCreateCell(int cx, int cy) {
+        Cell cell = this.findCell(cx, cy);
+        if (cell != null) {
+            return cell;
+        }
+        if (this.numOfCells + 1 > this.keys.length * MAX_LOAD_FACTOR) {
+            this.growTable();
+        }
+        cell = new Cell();
+        this.insertCell(keyOf(cx, cy), cell);
+        this.numOfCells++;
+        return cell;
+    }
+
+    /**
+     * Insert a cell to the hash table, assuming it is not there already.
+     * @param key The cell key.
+     * @param cell The cell.
+     */
+    private void insertCell(long key, Cell cell) {
+        int mask = this.keys.length - 1;
+        int slot = slotOf(key, mask);
+        while (this.cells[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        this.keys[slot] = key;
+        this.cells[slot] = cell;
+    }
+
+    /**
+     * Double the size of the hash table.
+     */
+    private void growTable() {
+        long[] oldKeys = this.keys;
+        Cell[] oldCells = this.cells;
+        this.keys = new long[oldKeys.length * 2];
+        this.cells = new Cell[oldCells.length * 2];
+        for (int i = 0; i < oldCells.length; i++) {
+            if (oldCells[i] != null) {
+                this.insertCell(oldKeys[i], oldCells[i]);
+            }
+        }
+    }
+
+    /**
+     * The indices of a range of cells, stored in an int array.
+     */
+    private static final class CellRange {
+        static final int MIN_X = 0;
+        static final int MIN_Y = 1;
+        static final int MAX_X = 2;
+        static final int MAX_Y = 3;
+        static final int SIZE = 4;
+
+        /**
+         * Returns true if both ranges are equal.
+         * @param a The first range.
+         * @param b The second range.
+         * @return True if both ranges are equal.
+         */
+        static boolean equal(int[] a, int[] b) {
+            return (a[MIN_X] == b[MIN_X]) && (a[MIN_Y] == b[MIN_Y])
+                    && (a[MAX_X] == b[MAX_X]) && (a[MAX_Y] == b[MAX_Y]);
+        }
+    }
+
+    /**
+     * A collidable stored in the grid.
+     */
+    private static final class Entry {
+        private final Collidable collidable;
+        private final long order;
+        private final int id;
+        private final int layer;
+        private final int[] range = new int[CellRange.SIZE];
+
+        /**
+         * Create a new entry.
+         * @param collidable The collidable.
+         * @param order The order in which the collidable was added.
+         * @param id The dense id of the entry.
+         */
+        Entry(Collidable collidable, long order, int id) {
+            this.collidable = collidable;
+            this.order = order;
+            this.id = id;
+            this.layer = collidable.getCollisionLayer();
+        }
+    }
+
+    /**
+     * A single grid cell: an unordered array of entries.
+     */
+    private static final class Cell {
+        private Entry[] items = new Entry[4];
+        private int size;
+
+        /**
+         * Add an entry to the cell.
+         * @param entry The entry.
+         */
+        void add(Entry entry) {
+            if (this.size == this.items.length) {
+                Entry[] grown = new Entry[this.items.length * 2];
+                System.arraycopy(this.items, 0, grown, 0, this.size);
+                this.items = grown;
+            }
+            this.items[this.size++] = entry;
+        }
+
+        /**
+         * Remove an entry from the cell.
+         * @param entry The entry.
+         */
+        void remove(Entry entry) {
+            for (int i = 0; i < this.size; i++) {
+                if (this.items[i] == entry) {
+                    this.items[i] = this.items[--this.size];
+                    this.items[this.size] = null;
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -1,12 +1,16 @@
 package sprites;
 
 import biuoop.DrawSurface;
+import io.ImagePreparer;
 
 /**
  * Represents a background.
  */
 public class Background implements Sprite {
 
+    // The background is drawn below the indicators.
+    private static final int TOP = 20;
+
     private Fill fill;
 
     /**
@@ -17,13 +21,27 @@ public class Background implements Sprite {
         this.fill = fill;
     }
 
+    /**
+     * Prepare an image fill to be drawn on a surface of the given size. The
+     * image is cut to the part of it that shows, not scaled, so the
+     * background looks as it did.
+     * @param width The surface width.
+     * @param height The surface height.
+     */
+    public void prepare(int width, int height) {
+        if (height > TOP) {
+            this.fill = this.fill.prepare(width, height - TOP,
+                    ImagePreparer.CROP);
+        }
+    }
+
     @Override
     public void drawOn(DrawSurface d) {
         if (this.fill.isImage()) {
-            d.drawImage(0, 20, this.fill.getImage()); // draw the image at location 10, 20.
+            d.drawImage(0, TOP, this.fill.getImage());
         } else {
             d.setColor(this.fill.getColor());
-            d.fillRectangle(0, 20, d.getWidth(), d.getHeight());
+            d.fillRectangle(0, TOP, d.getWidth(), d.getHeight());
         }
     }
 
@@ -6,7 +6,7 @@ import biuoop.DrawSurface;
 import geometryprimitives.Line;
 import geometryprimitives.Point;
 import management.GameEnvironment;
-import management.CollisionInfo;
+import management.ClosestCollisionQuery;
 import abstracts.Border;
 import driver.GameLevel;
 
@@ -17,17 +17,20 @@ public class Ball implements Sprite {
 
     public static final int DEF_SPEED = 100;
     public static final int DEF_LOW_SPEED = 1;
+    public static final int DEF_MAX_HITS_PER_STEP = 4;
+    // Run with -Darkanoid.maxhitsperstep=N to change the default.
+    public static final String MAX_HITS_PROPERTY = "arkanoid.maxhitsperstep";
 
     private Point center;
     private int r;
     private Color color;
     private Velocity v;
     private Border border;
-    private Line rTraj;
-    private Line lTraj;
-    private Line uTraj;
-    private Line dTraj;
     private GameEnvironment gameEnvi;
+    private BallSystem system;
+    private int systemSlot = -1;
+    private int maxHitsPerStep = defaultMaxHitsPerStep();
+    private ClosestCollisionQuery query;
 
     /**
      * Creates a new ball in the given location, and with the given radius
@@ -38,12 +41,11 @@ public class Ball implements Sprite {
      * @param game The game environment of the ball.
      */
     public Ball(Point center, int r, java.awt.Color color, GameEnvironment game) {
-        this.center = center;
+        this.center = new Point(center);
         this.r = r;
         this.color = color;
         this.v = new Velocity(0, 0);
         this.border = null;
-        this.updateAllTraj();
         this.gameEnvi = game;
     }
 
@@ -62,7 +64,6 @@ public class Ball implements Sprite {
         this.color = color;
         this.v = new Velocity(0, 0);
         this.border = null;
-        this.updateAllTraj();
         this.gameEnvi = game;
     }
 
@@ -136,7 +137,6 @@ public class Ball implements Sprite {
      */
     public void setVelocity(Velocity velocity) {
         this.v = velocity;
-        this.updateAllTraj();
     }
 
     /**
@@ -146,88 +146,113 @@ public class Ball implements Sprite {
      * @param dy The change of position in the Y axis.
      */
     public void setVelocity(double dx, double dy) {
-        this.v = new Velocity(dx, dy);
-        this.updateAllTraj();
+        this.setVelocity(new Velocity(dx, dy));
     }
 
     /**
-     * Gets the ball's velocity.
-     * @return The ball's velocity.
+     * Set the maximal number of collisions the ball resolves in one step.
+     * After the last of them, the ball stays at the collision point for the
+     * rest of the step.
+     * @param maxHits The maximal number of collisions per step, at least 1.
      */
-    public Velocity getVelocity() {
-        return this.v;
+    public void setMaxHitsPerStep(int maxHits) {
+        if (maxHits < 1) {
+            throw new IllegalArgumentException("At least one hit per step is"
+                    + " needed, got: " + maxHits);
+        }
+        this.maxHitsPerStep = maxHits;
     }
 
     /**
-     * Move the ball one step.
-     * @param dt the amount of seconds passed since the last call.
+     * Returns the maximal number of collisions the ball resolves in one step.
+     * @return The maximal number of collisions per step.
      */
-    public void moveOneStep(double dt) {
-
-        if (this.getBorder() != null) {
-            if (this.getBorder().getLeftBorder().isIntersecting(this.lTraj)
-                    || this.getBorder().getRightBorder().
-                    isIntersecting(this.rTraj)) {
-                this.setVelocity(-this.getVelocity().getDX(),
-                        this.getVelocity().getDY());
-            }
-            if (this.getBorder().getUpperBorder().isIntersecting(this.uTraj)
-                    || this.getBorder().getLowerBorder().
-                    isIntersecting(this.dTraj)) {
-                this.setVelocity(this.getVelocity().getDX(),
-                        -this.getVelocity().getDY());
-            }
-        }
-
-        Line trajectory = this.computeTrajectory(dt);
-        CollisionInfo possibleCol = this.gameEnvi.getClosestCollision(trajectory);
-        if (possibleCol == null) {
-            Velocity decoupledVel = this.getVelocity().decoupleSpeed(dt);
-            this.center = decoupledVel.applyToPoint(this.center);
-        } else {
-            this.v = possibleCol.collisionObject().hit(this, possibleCol.
-                    collisionPoint(), this.v);
-        }
-
-        this.updateAllTraj();
+    public int getMaxHitsPerStep() {
+        return this.maxHitsPerStep;
     }
 
     /**
-     * Updates the X axis left trajectory. A trajectory is a moving line
-     * segment that simulates the ball's next left X axis step.
+     * Returns the default maximal number of collisions resolved in one step,
+     * as set by the MAX_HITS_PROPERTY system property.
+     * @return The default maximal number of collisions per step.
      */
-    public void updateLTraj() {
-        this.lTraj = new Line(this.getX(), this.getY(), this.getX()
-                - this.getSize() + this.getVelocity().getDX(), this.getY());
+    public static int defaultMaxHitsPerStep() {
+        return Math.max(1, Integer.getInteger(MAX_HITS_PROPERTY,
+                DEF_MAX_HITS_PER_STEP));
+    }
 
+    /**
+     * Gets the ball's velocity.
+     * @return The ball's velocity.
+     */
+    public Velocity getVelocity() {
+        return this.v;
     }
 
     /**
-     * Updates the X axis right trajectory. A trajectory is a moving line
-     * segment that simulates the ball's next right X axis step.
+     * Move the ball one step. The ball collides where its edge first touches
+     * a collidable, not its center. When it collides, it moves to where it
+     * touched the collidable and keeps moving with its new velocity for the
+     * rest of the step, up to the maximal number of hits per step.
+     * @param dt the amount of seconds passed since the last call.
      */
-    public void updateRTraj() {
-        this.rTraj = new Line(this.getX(), this.getY(), this.getX()
-                + this.getSize() + this.getVelocity().getDX(), this.getY());
+    public void moveOneStep(double dt) {
+        if (this.border != null) {
+            this.bounceOffBorder();
+        }
+        if (this.query == null) {
+            this.query = new ClosestCollisionQuery();
+        }
 
+        double remaining = dt;
+        for (int hits = 0; hits < this.maxHitsPerStep; hits++) {
+            double startX = this.center.getX();
+            double startY = this.center.getY();
+            double moveX = this.v.getDX() * remaining;
+            double moveY = this.v.getDY() * remaining;
+            if (!this.gameEnvi.findClosestCollision(this.query, startX, startY,
+                    startX + moveX, startY + moveY, this.r)) {
+                this.center.setX(startX + moveX);
+                this.center.setY(startY + moveY);
+                break;
+            }
+            double t = this.query.closestT();
+            remaining -= remaining * t;
+            this.center.setX(startX + moveX * t);
+            this.center.setY(startY + moveY * t);
+            this.v = this.query.closestObject().hit(this, new Point(
+                    this.query.closestX(), this.query.closestY()), this.v);
+        }
     }
 
     /**
-     * Updates the Y axis up trajectory. A trajectory is a moving line segment
-     * that simulates the ball's next up Y axis step.
+     * Reverse the ball's velocity on every axis along which its next move
+     * would take its edge across the border.
      */
-    public void updateUTraj() {
-        this.uTraj = new Line(this.getX(), this.getY(), this.getX(),
-                this.getY() - this.getSize() + this.getVelocity().getDY());
+    private void bounceOffBorder() {
+        double x = this.getX();
+        double y = this.getY();
+        double dx = this.v.getDX();
+        double dy = this.v.getDY();
+        if (crosses(x, x - this.r + dx, this.border.getMinX())
+                || crosses(x, x + this.r + dx, this.border.getMaxX())) {
+            this.setVelocity(-dx, dy);
+        }
+        if (crosses(y, y - this.r + dy, this.border.getMinY())
+                || crosses(y, y + this.r + dy, this.border.getMaxY())) {
+            this.setVelocity(this.v.getDX(), -dy);
+        }
     }
 
     /**
-     * Updates the Y axis down trajectory. A trajectory is a moving line
-     * segment that simulates the ball's next Y down axis step.
+     * Returns true if the bound is between the two coordinates.
+     * @param from The first coordinate.
+     * @param to The second coordinate.
+     * @param bound The bound.
+     * @return True if the bound is between the coordinates.
      */
-    public void updateDTraj() {
-        this.dTraj = new Line(this.getX(), this.getY(), this.getX(),
-                this.getY() + this.getSize() + this.getVelocity().getDY());
+    private static boolean crosses(double from, double to, double bound) {
+        return (Math.min(from, to) <= bound) && (bound <= Math.max(from, to));
     }
 
     /**
@@ -263,16 +288,6 @@ public class Ball implements Sprite {
         }
     }
 
-    /**
-     * Update all of ball's trajectories.
-     */
-    public void updateAllTraj() {
-        this.updateDTraj();
-        this.updateLTraj();
-        this.updateRTraj();
-        this.updateUTraj();
-    }
-
     /**
      * Returns the ball's trajectory (A line from its current location to
      * where its speed will take him in the next move if no collisions will
@@ -320,7 +335,48 @@ public class Ball implements Sprite {
      * @return True if removed, false otherwise.
      */
     public boolean removeFromGame(GameLevel game) {
+        if (this.system != null) {
+            return this.system.remove(this);
+        }
         return game.removeSprite(this);
     }
 
+    /**
+     * Mark the ball as moved by the given ball system, at the given slot.
+     * @param balls The ball system.
+     * @param slot The slot of the ball in the system.
+     */
+    void attachToSystem(BallSystem balls, int slot) {
+        this.system = balls;
+        this.systemSlot = slot;
+    }
+
+    /**
+     * Mark the ball as no longer moved by a ball system.
+     */
+    void detachFromSystem() {
+        this.system = null;
+        this.systemSlot = -1;
+    }
+
+    /**
+     * Get the slot of the ball in its ball system.
+     * @return The slot, or -1 if the ball is not in a system.
+     */
+    int getSystemSlot() {
+        return this.systemSlot;
+    }
+
+    /**
+     * Bring the ball up to date with its state in the ball system.
+     * @param x The center X coordinate.
+     * @param y The center Y coordinate.
+     * @param velocity The velocity.
+     */
+    void syncFromSystem(double x, double y, Velocity velocity) {
+        this.center.setX(x);
+        this.center.setY(y);
+        this.v = velocity;
+    }
+
 }
@@ -0,0 +1,1080 @@
+package sprites;
+
+import biuoop.DrawSurface;
+import geometryprimitives.FixedPoint;
+import geometryprimitives.Point;
+import management.CandidateCache;
+import management.ClosestCollisionQuery;
+import management.CollisionBatch;
+import management.DirtyRegion;
+import management.GameEnvironment;
+import management.ImpactQueue;
+import management.SweepAndPrune;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Represents all of the balls of a game, stored as a structure of arrays.
+ * Positions, velocities and radii are kept in primitive arrays and all of
+ * the balls are stepped in a single loop, so the whole system is a single
+ * sprite no matter how many balls there are.
+ * Every ball still has a Ball object as its handle, that is passed to
+ * collidables and hit listeners, and removing that handle from the game
+ * removes the ball from the system.
+ * A step runs in two phases. First the closest collision of every ball is
+ * found in a single batch query of the game environment, that is split
+ * between the workers of a ForkJoinPool when there are many balls, as it
+ * only reads the environment. Then the balls are moved and the hits are applied one
+ * by one in a fixed order, so scoring and block removal stay deterministic.
+ * A ball whose collision was found against a block that has been removed
+ * meanwhile looks for its collision again, so both phases together behave
+ * exactly like stepping the balls one by one.
+ * Balls collide where their edge first touches a collidable. A ball that
+ * collides moves to where it touched it and keeps moving with its new
+ * velocity for the rest of the step, up to the maximal number of hits per
+ * step, so fast balls neither stall nor pass through thin blocks.
+ * In the event driven simulation, the system predicts the next impact of
+ * every ball and keeps the predictions in an impact queue. Balls move in
+ * straight lines between their impacts, so a step only handles the balls
+ * that hit something during it, no matter how long the step is. A ball
+ * whose predicted target has been removed meanwhile just predicts again,
+ * as removing a collidable can only delay its impact, and all of the
+ * predictions are redone only when a collidable is added or moves.
+ * Balls may also collide with each other, elastically, as an optional rule
+ * for multiball modes. The pairs of balls whose paths may cross during a
+ * step are found by a sweep and prune over the bounds of their paths, and
+ * every pair that touches during the step bounces at its start, before the
+ * balls move.
+ * With fixed point physics, every position, velocity, radius and time of
+ * the balls is a 16.16 fixed point number, every step of their motion is
+ * integer arithmetic, and their collisions are found by fixed point
+ * queries, so a game plays out the same on every platform. The numbers
+ * are kept in the same arrays, as doubles that hold them exactly.
+ * Velocities set from the outside, by collidables and by bounces between
+ * balls, are moved to the closest fixed point numbers. Fixed point physics
+ * always uses the fixed step simulation.
+ * In the fixed step simulation every ball keeps a candidate cache of the
+ * static collidables around its path. A ball moves only a few pixels a
+ * step, so most steps find their collision among the cached collidables
+ * without querying the static index.
+ * The system remembers where it drew every ball, so a frame repaints just
+ * where the balls were and where they are.
+ */
+public class BallSystem implements TrackedSprite {
+
+    // Run with -Darkanoid.parallelballs=false to always step sequentially.
+    public static final String PARALLEL_PROPERTY = "arkanoid.parallelballs";
+    public static final int PARALLEL_THRESHOLD = 256;
+    // Run with -Darkanoid.ballsimulation=event for the event driven simulation.
+    public static final String SIMULATION_PROPERTY = "arkanoid.ballsimulation";
+    public static final String STEP_SIMULATION = "step";
+    public static final String EVENT_SIMULATION = "event";
+    // How many seconds ahead an impact is looked for.
+    public static final double PREDICTION_HORIZON = 1.0;
+    // Limits the impacts handled in one step, so a ball stuck between two
+    // collidables cannot stall the game.
+    public static final int MAX_IMPACTS_PER_BALL = 16;
+    // Run with -Darkanoid.ballcollisions=true to let balls bounce off each other.
+    public static final String BALL_COLLISIONS_PROPERTY = "arkanoid.ballcollisions";
+    // Run with -Darkanoid.physics=fixed for fixed point physics in every
+    // level that does not choose its own.
+    public static final String PHYSICS_PROPERTY = "arkanoid.physics";
+    public static final String DOUBLE_PHYSICS = "double";
+    public static final String FIXED_PHYSICS = "fixed";
+    // Run with -Darkanoid.candidatecache=false to query the static index on
+    // every step.
+    public static final String CANDIDATE_CACHE_PROPERTY = "arkanoid.candidatecache";
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int PARALLEL_CHUNK = 64;
+    // The X, Y, width and height of the pixels a ball covers.
+    private static final int BOUNDS_STRIDE = 4;
+    // The radius of the dot at the center of a ball.
+    private static final int DOT_RADIUS = 2;
+
+    private GameEnvironment gameEnvi;
+    private double[] x;
+    private double[] y;
+    private double[] dx;
+    private double[] dy;
+    private double[] radii;
+    private Color[] colors;
+    private Ball[] handles;
+    private boolean[] alive;
+    private int size;
+    private int numOfRemoved;
+    private boolean stepping;
+    private boolean parallel;
+    private ForkJoinPool pool;
+    private ClosestCollisionQuery query;
+    private ThreadLocal<ClosestCollisionQuery> workerQueries;
+    private Collidable[] hitObjects;
+    private double[] hitX;
+    private double[] hitY;
+    private double[] hitT;
+    private boolean eventDriven;
+    private double time;
+    private double[] baseTimes;
+    private double[] impactTimes;
+    private ImpactQueue impacts;
+    private long predictedChangeCount;
+    private int maxHitsPerStep;
+    private double[] segments;
+    private CollisionBatch batch;
+    private boolean ballCollisions;
+    private boolean fixedPoint;
+    private SweepAndPrune ballPairs;
+    private double[] pathMinX;
+    private double[] pathMinY;
+    private double[] pathMaxX;
+    private double[] pathMaxY;
+    private boolean candidateCaching;
+    private CandidateCache[] caches;
+    private long retiredCacheHits;
+    private long retiredCacheMisses;
+    private int[] drawnBounds;
+    private int drawnCount;
+    private int[] currentBounds;
+
+    /**
+     * Create a new, empty ball system.
+     * @param game The game environment the balls move in.
+     */
+    public BallSystem(GameEnvironment game) {
+        this.gameEnvi = game;
+        this.allocate(INITIAL_CAPACITY);
+        this.size = 0;
+        this.numOfRemoved = 0;
+        this.stepping = false;
+        this.parallel = Boolean.parseBoolean(System.getProperty(
+                PARALLEL_PROPERTY, "true"));
+        this.pool = ForkJoinPool.commonPool();
+        this.query = new ClosestCollisionQuery();
+        this.workerQueries = ThreadLocal.withInitial(
+                ClosestCollisionQuery::new);
+        this.maxHitsPerStep = Ball.defaultMaxHitsPerStep();
+        this.batch = new CollisionBatch();
+        this.time = 0;
+        this.impacts = new ImpactQueue();
+        this.ballPairs = new SweepAndPrune();
+        this.ballCollisions = Boolean.parseBoolean(System.getProperty(
+                BALL_COLLISIONS_PROPERTY, "false"));
+        this.fixedPoint = false;
+        this.candidateCaching = Boolean.parseBoolean(System.getProperty(
+                CANDIDATE_CACHE_PROPERTY, "true"));
+        this.retiredCacheHits = 0;
+        this.retiredCacheMisses = 0;
+        this.drawnBounds = new int[0];
+        this.drawnCount = 0;
+        this.currentBounds = new int[0];
+        String simulation = System.getProperty(SIMULATION_PROPERTY,
+                STEP_SIMULATION);
+        if (EVENT_SIMULATION.equals(simulation)) {
+            this.eventDriven = true;
+        } else if (STEP_SIMULATION.equals(simulation)) {
+            this.eventDriven = false;
+        } else {
+            throw new IllegalArgumentException("Unknown ball simulation: "
+                    + simulation);
+        }
+    }
+
+    /**
+     * Returns the physics chosen by the arkanoid.physics system property,
+     * DOUBLE_PHYSICS by default.
+     * @return The default physics.
+     */
+    public static String defaultPhysics() {
+        return System.getProperty(PHYSICS_PROPERTY, DOUBLE_PHYSICS);
+    }
+
+    /**
+     * Choose between floating point and fixed point physics. Switching to
+     * fixed point moves the balls to the closest fixed point numbers, and
+     * to the fixed step simulation.
+     * @param physics DOUBLE_PHYSICS or FIXED_PHYSICS.
+     */
+    public void setPhysics(String physics) {
+        if (DOUBLE_PHYSICS.equals(physics)) {
+            this.fixedPoint = false;
+        } else if (FIXED_PHYSICS.equals(physics)) {
+            if (this.fixedPoint) {
+                return;
+            }
+            this.setEventDriven(false);
+            this.fixedPoint = true;
+            for (int i = 0; i < this.size; i++) {
+                this.snap(i);
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown physics: " + physics);
+        }
+    }
+
+    /**
+     * Returns true if the balls move with fixed point physics.
+     * @return True if the balls move with fixed point physics.
+     */
+    public boolean isFixedPoint() {
+        return this.fixedPoint;
+    }
+
+    /**
+     * Enable or disable the parallel collision phase. Even when enabled, it
+     * is only used once there are at least PARALLEL_THRESHOLD balls.
+     * @param enabled True to enable parallel stepping.
+     */
+    public void setParallel(boolean enabled) {
+        this.parallel = enabled;
+    }
+
+    /**
+     * Enable or disable the candidate caches of the balls. They are only
+     * used by the fixed step simulation.
+     * @param enabled True to look the static collidables up in the caches.
+     */
+    public void setCandidateCaching(boolean enabled) {
+        this.candidateCaching = enabled;
+    }
+
+    /**
+     * Returns the number of collision searches so far that found their
+     * candidates in the cache of their ball.
+     * @return The number of candidate cache hits.
+     */
+    public long getCacheHits() {
+        long hits = this.retiredCacheHits;
+        for (int i = 0; i < this.size; i++) {
+            hits += this.caches[i].getHits();
+        }
+        return hits;
+    }
+
+    /**
+     * Returns the number of collision searches so far that had to fill the
+     * cache of their ball from the static index.
+     * @return The number of candidate cache misses.
+     */
+    public long getCacheMisses() {
+        long misses = this.retiredCacheMisses;
+        for (int i = 0; i < this.size; i++) {
+            misses += this.caches[i].getMisses();
+        }
+        return misses;
+    }
+
+    /**
+     * Set the maximal number of collisions a ball resolves in one fixed step.
+     * After the last of them, the ball stays at the collision point for the
+     * rest of the step.
+     * @param maxHits The maximal number of collisions per step, at least 1.
+     */
+    public void setMaxHitsPerStep(int maxHits) {
+        if (maxHits < 1) {
+            throw new IllegalArgumentException("At least one hit per step is"
+                    + " needed, got: " + maxHits);
+        }
+        this.maxHitsPerStep = maxHits;
+    }
+
+    /**
+     * Switch between the fixed step and the event driven simulation. The
+     * event driven simulation is not available with fixed point physics.
+     * @param enabled True to use the event driven simulation.
+     */
+    public void setEventDriven(boolean enabled) {
+        if (enabled == this.eventDriven) {
+            return;
+        }
+        if (enabled && this.fixedPoint) {
+            throw new IllegalStateException("Fixed point physics only runs"
+                    + " the fixed step simulation");
+        }
+        if (enabled) {
+            for (int i = 0; i < this.size; i++) {
+                this.baseTimes[i] = this.time;
+                this.impactTimes[i] = Double.POSITIVE_INFINITY;
+            }
+            this.eventDriven = true;
+            this.predictAll(this.time);
+        } else {
+            for (int i = 0; i < this.size; i++) {
+                this.moveTo(i, this.time);
+                this.hitObjects[i] = null;
+            }
+            this.impacts.clear();
+            this.eventDriven = false;
+        }
+    }
+
+    /**
+     * Enable or disable collisions between the balls.
+     * @param enabled True to let the balls bounce off each other.
+     */
+    public void setBallCollisions(boolean enabled) {
+        if (enabled == this.ballCollisions) {
+            return;
+        }
+        this.ballPairs.clear();
+        if (enabled) {
+            for (int i = 0; i < this.size; i++) {
+                this.ballPairs.add(i);
+            }
+        }
+        this.ballCollisions = enabled;
+    }
+
+    /**
+     * Add a ball to the system. From now on the ball moves with the system,
+     * and the ball object only serves as its handle.
+     * @param ball The ball.
+     */
+    public void add(Ball ball) {
+        if (this.size == this.x.length) {
+            this.grow();
+        }
+        int slot = this.size++;
+        Point center = ball.getCenter();
+        this.x[slot] = center.getX();
+        this.y[slot] = center.getY();
+        this.dx[slot] = ball.getVelocity().getDX();
+        this.dy[slot] = ball.getVelocity().getDY();
+        this.radii[slot] = ball.getSize();
+        this.colors[slot] = ball.getColor();
+        this.handles[slot] = ball;
+        this.alive[slot] = true;
+        this.baseTimes[slot] = this.time;
+        this.impactTimes[slot] = Double.POSITIVE_INFINITY;
+        this.hitObjects[slot] = null;
+        this.caches[slot] = new CandidateCache();
+        if (this.fixedPoint) {
+            this.snap(slot);
+        }
+        ball.attachToSystem(this, slot);
+        if (this.ballCollisions) {
+            this.ballPairs.add(slot);
+        }
+        if (this.eventDriven) {
+            this.predict(slot, this.time);
+        }
+    }
+
+    /**
+     * Remove a ball from the system. A ball removed while the system is
+     * stepping stops moving right away, and its slot is reclaimed at the end
+     * of the step.
+     * @param ball The ball.
+     * @return True if removed, false otherwise.
+     */
+    public boolean remove(Ball ball) {
+        int slot = ball.getSystemSlot();
+        if ((slot < 0) || (slot >= this.size) || (this.handles[slot] != ball)
+                || !this.alive[slot]) {
+            return false;
+        }
+        this.alive[slot] = false;
+        this.numOfRemoved++;
+        this.impacts.remove(slot);
+        ball.detachFromSystem();
+        if (!this.stepping) {
+            this.compact();
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of balls in the system.
+     * @return The number of balls in the system.
+     */
+    public int size() {
+        return this.size - this.numOfRemoved;
+    }
+
+    /**
+     * Move every ball one step.
+     * @param dt The amount of seconds passed since the last call.
+     */
+    @Override
+    public void timePassed(double dt) {
+        if (this.fixedPoint) {
+            dt = FixedPoint.snap(dt);
+        }
+        double end = this.time + dt;
+        if (this.ballCollisions) {
+            this.collideBalls(dt);
+        }
+        if (this.eventDriven) {
+            this.stepToImpacts(end);
+        } else {
+            this.stepInBatch(dt);
+        }
+        this.time = end;
+        if (this.numOfRemoved > 0) {
+            this.compact();
+        }
+    }
+
+    /**
+     * Bounce every pair of balls that touch during the coming step. In the
+     * event driven simulation the balls are brought to the current time
+     * first, and a ball that bounced predicts its next impact again.
+     * @param dt The amount of seconds the balls are about to move.
+     */
+    private void collideBalls(double dt) {
+        for (int i = 0; i < this.size; i++) {
+            if (this.eventDriven) {
+                this.moveTo(i, this.time);
+            }
+            double r = this.radii[i];
+            double endX = this.x[i] + this.dx[i] * dt;
+            double endY = this.y[i] + this.dy[i] * dt;
+            this.pathMinX[i] = Math.min(this.x[i], endX) - r;
+            this.pathMinY[i] = Math.min(this.y[i], endY) - r;
+            this.pathMaxX[i] = Math.max(this.x[i], endX) + r;
+            this.pathMaxY[i] = Math.max(this.y[i], endY) + r;
+        }
+        this.ballPairs.update(this.pathMinX, this.pathMinY, this.pathMaxX,
+                this.pathMaxY);
+        for (int p = 0; p < this.ballPairs.pairCount(); p++) {
+            int a = this.ballPairs.first(p);
+            int b = this.ballPairs.second(p);
+            if (this.alive[a] && this.alive[b] && this.bounce(a, b, dt)
+                    && this.eventDriven) {
+                this.predict(a, this.time);
+                this.predict(b, this.time);
+            }
+        }
+    }
+
+    /**
+     * Bounce two balls off each other, as an elastic collision between discs
+     * whose masses are their areas, if they approach each other and touch
+     * within the given time. The direction they bounce in is the one between
+     * their centers at the moment they touch.
+     * @param a The slot of the first ball.
+     * @param b The slot of the second ball.
+     * @param dt The amount of seconds the balls are about to move.
+     * @return True if the balls bounced.
+     */
+    private boolean bounce(int a, int b, double dt) {
+        double px = this.x[a] - this.x[b];
+        double py = this.y[a] - this.y[b];
+        double vx = this.dx[a] - this.dx[b];
+        double vy = this.dy[a] - this.dy[b];
+        double halfB = px * vx + py * vy;
+        if (halfB >= 0) {
+            return false;
+        }
+        double reach = this.radii[a] + this.radii[b];
+        double c = px * px + py * py - reach * reach;
+        double t = 0;
+        if (c > 0) {
+            double vv = vx * vx + vy * vy;
+            double disc = halfB * halfB - vv * c;
+            if (disc < 0) {
+                return false;
+            }
+            t = (-halfB - Math.sqrt(disc)) / vv;
+            if (t > dt) {
+                return false;
+            }
+        }
+        double nx = px + vx * t;
+        double ny = py + vy * t;
+        double length = Math.sqrt(nx * nx + ny * ny);
+        if (length == 0) {
+            return false;
+        }
+        nx /= length;
+        ny /= length;
+        double approach = vx * nx + vy * ny;
+        if (approach >= 0) {
+            return false;
+        }
+        double massA = this.radii[a] * this.radii[a];
+        double massB = this.radii[b] * this.radii[b];
+        double impulse = 2 * approach / (massA + massB);
+        this.dx[a] -= impulse * massB * nx;
+        this.dy[a] -= impulse * massB * ny;
+        this.dx[b] += impulse * massA * nx;
+        this.dy[b] += impulse * massA * ny;
+        if (this.fixedPoint) {
+            this.snap(a);
+            this.snap(b);
+        }
+        return true;
+    }
+
+    /**
+     * Find the collisions of all of the balls in one batch, then move them
+     * one at a time. Balls added during the step find their collision when
+     * they are reached.
+     * @param dt The amount of seconds passed since the last call.
+     */
+    private void stepInBatch(double dt) {
+        long changeCount = this.gameEnvi.getChangeCount();
+        int searched = this.size;
+        this.searchCollisions(dt);
+
+        this.stepping = true;
+        for (int i = 0; i < this.size; i++) {
+            if (!this.alive[i]) {
+                continue;
+            }
+            if ((i >= searched)
+                    || (this.gameEnvi.getChangeCount() != changeCount)
+                    || ((this.hitObjects[i] != null)
+                    && !this.gameEnvi.hasCollidable(this.hitObjects[i]))) {
+                this.findCollision(i, dt, this.query);
+            }
+            this.advance(i, dt);
+        }
+        this.stepping = false;
+    }
+
+    /**
+     * Find the closest collision of every ball along the given amount of
+     * time, as a single batch query of the game environment. With many
+     * balls, the batch is split between the workers of the pool.
+     * @param dt The amount of seconds the balls move.
+     */
+    private void searchCollisions(double dt) {
+        for (int i = 0; i < this.size; i++) {
+            int base = i * GameEnvironment.SEGMENT_STRIDE;
+            this.segments[base] = this.x[i];
+            this.segments[base + 1] = this.y[i];
+            this.segments[base + 2] = this.travel(this.x[i], this.dx[i], dt);
+            this.segments[base + 3] = this.travel(this.y[i], this.dy[i], dt);
+        }
+        this.query.setFixedPoint(this.fixedPoint);
+        this.batch.ensureCapacity(this.size);
+        if (this.parallel && (this.size() >= PARALLEL_THRESHOLD)) {
+            this.pool.invoke(new CollisionSearch(0, this.size));
+        } else {
+            this.gameEnvi.findClosestCollisions(this.query, this.segments,
+                    this.radii, this.activeCaches(), 0, this.size, this.batch);
+        }
+        for (int i = 0; i < this.size; i++) {
+            this.hitObjects[i] = this.batch.closestObject(i);
+            if (this.hitObjects[i] != null) {
+                this.hitT[i] = this.batch.closestT(i);
+                this.hitX[i] = this.batch.closestX(i);
+                this.hitY[i] = this.batch.closestY(i);
+            }
+        }
+    }
+
+    /**
+     * Handle all of the impacts predicted up to the given time, in the order
+     * they happen.
+     * @param end The time at the end of the step.
+     */
+    private void stepToImpacts(double end) {
+        if (this.gameEnvi.getChangeCount() != this.predictedChangeCount) {
+            this.predictAll(this.time);
+        }
+        this.stepping = true;
+        int budget = MAX_IMPACTS_PER_BALL * this.size();
+        while (!this.impacts.isEmpty() && (this.impacts.peekTime() <= end)
+                && (budget-- > 0)) {
+            int slot = this.impacts.poll();
+            double t = this.impactTimes[slot];
+            Collidable hitObject = this.hitObjects[slot];
+            this.hitObjects[slot] = null;
+            this.moveTo(slot, t);
+            if ((hitObject != null) && this.gameEnvi.hasCollidable(hitObject)) {
+                this.applyHit(slot, hitObject, new Point(this.hitX[slot],
+                        this.hitY[slot]));
+                if (!this.alive[slot]) {
+                    continue;
+                }
+            }
+            if (this.gameEnvi.getChangeCount() != this.predictedChangeCount) {
+                this.predictAll(t);
+            } else {
+                this.predict(slot, t);
+            }
+        }
+        this.stepping = false;
+    }
+
+    /**
+     * Predict the next impact of a ball from the given time on.
+     * @param slot The ball slot.
+     * @param t The time.
+     */
+    private void predict(int slot, double t) {
+        this.moveTo(slot, t);
+        this.findCollision(slot, PREDICTION_HORIZON, this.query);
+        this.schedule(slot);
+    }
+
+    /**
+     * Predict the next impact of every ball from the given time on.
+     * @param t The time.
+     */
+    private void predictAll(double t) {
+        this.predictedChangeCount = this.gameEnvi.getChangeCount();
+        for (int i = 0; i < this.size; i++) {
+            if (this.alive[i]) {
+                this.moveTo(i, t);
+            }
+        }
+        this.searchCollisions(PREDICTION_HORIZON);
+        for (int i = 0; i < this.size; i++) {
+            if (this.alive[i]) {
+                this.schedule(i);
+            }
+        }
+    }
+
+    /**
+     * Put the impact found for a ball in the impact queue. A ball that hits
+     * nothing within the prediction horizon predicts again at its end.
+     * @param slot The ball slot.
+     */
+    private void schedule(int slot) {
+        double dt = PREDICTION_HORIZON;
+        if (this.hitObjects[slot] != null) {
+            dt *= this.hitT[slot];
+        }
+        this.impactTimes[slot] = this.baseTimes[slot] + dt;
+        this.impacts.schedule(slot, this.impactTimes[slot]);
+    }
+
+    /**
+     * Move a ball along its velocity to where it is at the given time, but
+     * never past its predicted impact.
+     * @param slot The ball slot.
+     * @param t The time.
+     */
+    private void moveTo(int slot, double t) {
+        double until = Math.min(t, this.impactTimes[slot]);
+        if (until > this.baseTimes[slot]) {
+            double elapsed = until - this.baseTimes[slot];
+            this.x[slot] += this.dx[slot] * elapsed;
+            this.y[slot] += this.dy[slot] * elapsed;
+            this.baseTimes[slot] = until;
+        }
+    }
+
+    /**
+     * Find the closest collision of a ball along its step, and keep it in
+     * the hit arrays.
+     * @param slot The ball slot.
+     * @param dt The amount of seconds passed since the last call.
+     * @param q The query to use.
+     */
+    private void findCollision(int slot, double dt, ClosestCollisionQuery q) {
+        double startX = this.x[slot];
+        double startY = this.y[slot];
+        CandidateCache[] active = this.activeCaches();
+        q.setFixedPoint(this.fixedPoint);
+        if (this.gameEnvi.findClosestCollision(q, startX, startY,
+                this.travel(startX, this.dx[slot], dt),
+                this.travel(startY, this.dy[slot], dt), this.radii[slot],
+                active == null ? null : active[slot])) {
+            this.hitObjects[slot] = q.closestObject();
+            this.hitX[slot] = q.closestX();
+            this.hitY[slot] = q.closestY();
+            this.hitT[slot] = q.closestT();
+        } else {
+            this.hitObjects[slot] = null;
+        }
+    }
+
+    /**
+     * Returns the candidate caches of the balls, or null if the searches
+     * should query the static index directly. Predictions in the event
+     * driven simulation look a whole horizon ahead, so their paths are too
+     * long to be cached.
+     * @return The candidate caches, or null.
+     */
+    private CandidateCache[] activeCaches() {
+        if (!this.candidateCaching || this.eventDriven) {
+            return null;
+        }
+        return this.caches;
+    }
+
+    /**
+     * Move a ball along its step, starting with the collision already found
+     * for it. After every collision the ball moves on from the collision
+     * point for the rest of the step, up to the maximal number of hits.
+     * @param slot The ball slot.
+     * @param dt The amount of seconds passed since the last call.
+     */
+    private void advance(int slot, double dt) {
+        double remaining = dt;
+        for (int hits = 0; hits < this.maxHitsPerStep; hits++) {
+            Collidable hitObject = this.hitObjects[slot];
+            if (hitObject == null) {
+                this.x[slot] = this.travel(this.x[slot], this.dx[slot], remaining);
+                this.y[slot] = this.travel(this.y[slot], this.dy[slot], remaining);
+                return;
+            }
+            this.hitObjects[slot] = null;
+            double travelled = this.portion(remaining, this.hitT[slot]);
+            this.x[slot] = this.travel(this.x[slot], this.dx[slot], travelled);
+            this.y[slot] = this.travel(this.y[slot], this.dy[slot], travelled);
+            remaining -= travelled;
+            this.applyHit(slot, hitObject, new Point(this.hitX[slot],
+                    this.hitY[slot]));
+            if (!this.alive[slot] || (hits + 1 == this.maxHitsPerStep)) {
+                return;
+            }
+            this.findCollision(slot, remaining, this.query);
+        }
+    }
+
+    /**
+     * Let the collidable of a collision decide the new velocity of a ball.
+     * The handle of the ball is brought up to date first, as it is passed to
+     * the collidable and its hit listeners.
+     * @param slot The ball slot.
+     * @param hitObject The collidable that was hit.
+     * @param collisionPoint The collision point.
+     */
+    private void applyHit(int slot, Collidable hitObject, Point collisionPoint) {
+        Ball handle = this.handles[slot];
+        Velocity current = new Velocity(this.dx[slot], this.dy[slot]);
+        handle.syncFromSystem(this.x[slot], this.y[slot], current);
+        Velocity newVel = hitObject.hit(handle, collisionPoint, current);
+        this.dx[slot] = newVel.getDX();
+        this.dy[slot] = newVel.getDY();
+        if (this.fixedPoint) {
+            this.snap(slot);
+        }
+    }
+
+    /**
+     * Returns where a coordinate moving at the given speed is after the
+     * given time. With fixed point physics, all three are fixed point
+     * numbers and so is the result.
+     * @param position The coordinate.
+     * @param speed The change of the coordinate per second.
+     * @param seconds The time.
+     * @return The coordinate after the time.
+     */
+    private double travel(double position, double speed, double seconds) {
+        if (this.fixedPoint) {
+            return FixedPoint.toDouble(FixedPoint.raw(position)
+                    + FixedPoint.mul(FixedPoint.raw(speed),
+                    FixedPoint.raw(seconds)));
+        }
+        return position + speed * seconds;
+    }
+
+    /**
+     * Returns the part of the given time up to the given trajectory
+     * parameter, in fixed point with fixed point physics.
+     * @param seconds The time.
+     * @param t The trajectory parameter, 0 at its start and 1 at its end.
+     * @return The part of the time.
+     */
+    private double portion(double seconds, double t) {
+        if (this.fixedPoint) {
+            return FixedPoint.toDouble(FixedPoint.mul(FixedPoint.raw(seconds),
+                    FixedPoint.raw(t)));
+        }
+        return seconds * t;
+    }
+
+    /**
+     * Move the position, velocity and radius of a ball to the closest fixed
+     * point numbers.
+     * @param slot The ball slot.
+     */
+    private void snap(int slot) {
+        this.x[slot] = FixedPoint.snap(this.x[slot]);
+        this.y[slot] = FixedPoint.snap(this.y[slot]);
+        this.dx[slot] = FixedPoint.snap(this.dx[slot]);
+        this.dy[slot] = FixedPoint.snap(this.dy[slot]);
+        this.radii[slot] = FixedPoint.snap(this.radii[slot]);
+    }
+
+    /**
+     * Draw all of the balls, the same way a single ball draws itself.
+     * @param surface The surface upon the balls will be drawn.
+     */
+    @Override
+    public void drawOn(DrawSurface surface) {
+        for (int i = 0; i < this.size; i++) {
+            if (!this.alive[i]) {
+                continue;
+            }
+            int ballX = this.drawX(i);
+            int ballY = this.drawY(i);
+            int r = (int) this.radii[i];
+            surface.setColor(this.colors[i]);
+            surface.fillCircle(ballX, ballY, r);
+            surface.setColor(Color.RED);
+            surface.fillCircle(ballX, ballY, DOT_RADIUS);
+            surface.setColor(Color.BLACK);
+            surface.drawCircle(ballX, ballY, r);
+        }
+        this.drawnCount = this.findBounds();
+        if (this.drawnBounds.length < this.currentBounds.length) {
+            this.drawnBounds = new int[this.currentBounds.length];
+        }
+        System.arraycopy(this.currentBounds, 0, this.drawnBounds, 0,
+                this.drawnCount * BOUNDS_STRIDE);
+    }
+
+    /**
+     * Add where the balls were drawn and where they will be drawn, unless
+     * none of them moved since they were drawn.
+     * @param region The region to repaint before the next frame.
+     */
+    @Override
+    public void addDirtyRectangles(DirtyRegion region) {
+        int count = this.findBounds();
+        int length = count * BOUNDS_STRIDE;
+        if ((count == this.drawnCount) && Arrays.equals(this.currentBounds, 0,
+                length, this.drawnBounds, 0, length)) {
+            return;
+        }
+        for (int i = 0; i < this.drawnCount * BOUNDS_STRIDE; i += BOUNDS_STRIDE) {
+            region.add(this.drawnBounds[i], this.drawnBounds[i + 1],
+                    this.drawnBounds[i + 2], this.drawnBounds[i + 3]);
+        }
+        for (int i = 0; i < length; i += BOUNDS_STRIDE) {
+            region.add(this.currentBounds[i], this.currentBounds[i + 1],
+                    this.currentBounds[i + 2], this.currentBounds[i + 3]);
+        }
+    }
+
+    /**
+     * Returns the bounds of all of the balls as they will be drawn now.
+     * @param width The surface width.
+     * @param height The surface height.
+     * @return The bounds of the balls, empty if there are none.
+     */
+    @Override
+    public Rectangle getDrawBounds(int width, int height) {
+        int count = this.findBounds();
+        Rectangle bounds = new Rectangle();
+        for (int i = 0; i < count * BOUNDS_STRIDE; i += BOUNDS_STRIDE) {
+            Rectangle r = new Rectangle(this.currentBounds[i],
+                    this.currentBounds[i + 1], this.currentBounds[i + 2],
+                    this.currentBounds[i + 3]);
+            if (bounds.isEmpty()) {
+                bounds = r;
+            } else {
+                bounds.add(r);
+            }
+        }
+        return bounds;
+    }
+
+    /**
+     * Find the pixels every live ball covers as it will be drawn now, in the
+     * order of their slots.
+     * @return The number of live balls.
+     */
+    private int findBounds() {
+        if (this.currentBounds.length < this.size * BOUNDS_STRIDE) {
+            this.currentBounds = new int[this.x.length * BOUNDS_STRIDE];
+        }
+        int count = 0;
+        for (int i = 0; i < this.size; i++) {
+            if (!this.alive[i]) {
+                continue;
+            }
+            // The outline is drawn one pixel past the right and lower edges.
+            int r = Math.max((int) this.radii[i], DOT_RADIUS);
+            int at = count * BOUNDS_STRIDE;
+            this.currentBounds[at] = this.drawX(i) - r;
+            this.currentBounds[at + 1] = this.drawY(i) - r;
+            this.currentBounds[at + 2] = (2 * r) + 1;
+            this.currentBounds[at + 3] = (2 * r) + 1;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the X the center of a ball is drawn at, where it is along its
+     * path in the event driven simulation.
+     * @param i The slot of the ball.
+     * @return The drawn center X.
+     */
+    private int drawX(int i) {
+        double centerX = this.x[i];
+        if (this.eventDriven) {
+            centerX += this.dx[i] * this.elapsed(i);
+        }
+        return (int) centerX;
+    }
+
+    /**
+     * Returns the Y the center of a ball is drawn at, where it is along its
+     * path in the event driven simulation.
+     * @param i The slot of the ball.
+     * @return The drawn center Y.
+     */
+    private int drawY(int i) {
+        double centerY = this.y[i];
+        if (this.eventDriven) {
+            centerY += this.dy[i] * this.elapsed(i);
+        }
+        return (int) centerY;
+    }
+
+    /**
+     * Returns how long a ball moved since its position was last set, in the
+     * event driven simulation.
+     * @param i The slot of the ball.
+     * @return The elapsed time.
+     */
+    private double elapsed(int i) {
+        return Math.min(this.time, this.impactTimes[i]) - this.baseTimes[i];
+    }
+
+    /**
+     * Reclaim the slots of removed balls, keeping the rest in the order they
+     * were added.
+     */
+    private void compact() {
+        if (this.ballCollisions) {
+            this.ballPairs.retain(this.alive, this.size);
+        }
+        int target = 0;
+        for (int i = 0; i < this.size; i++) {
+            if (!this.alive[i]) {
+                this.retiredCacheHits += this.caches[i].getHits();
+                this.retiredCacheMisses += this.caches[i].getMisses();
+                this.caches[i] = null;
+                continue;
+            }
+            if (target != i) {
+                this.x[target] = this.x[i];
+                this.y[target] = this.y[i];
+                this.dx[target] = this.dx[i];
+                this.dy[target] = this.dy[i];
+                this.radii[target] = this.radii[i];
+                this.colors[target] = this.colors[i];
+                this.handles[target] = this.handles[i];
+                this.alive[target] = true;
+                this.baseTimes[target] = this.baseTimes[i];
+                this.impactTimes[target] = this.impactTimes[i];
+                this.hitObjects[target] = this.hitObjects[i];
+                this.hitX[target] = this.hitX[i];
+                this.hitY[target] = this.hitY[i];
+                this.hitT[target] = this.hitT[i];
+                this.caches[target] = this.caches[i];
+                this.handles[target].attachToSystem(this, target);
+            }
+            target++;
+        }
+        for (int i = target; i < this.size; i++) {
+            this.colors[i] = null;
+            this.handles[i] = null;
+            this.alive[i] = false;
+            this.hitObjects[i] = null;
+            this.caches[i] = null;
+        }
+        this.size = target;
+        this.numOfRemoved = 0;
+        if (this.eventDriven) {
+            this.impacts.clear();
+            for (int i = 0; i < this.size; i++) {
+                this.impacts.schedule(i, this.impactTimes[i]);
+            }
+        }
+    }
+
+    /**
+     * Allocate the arrays.
+     * @param capacity The number of balls the arrays can hold.
+     */
+    private void allocate(int capacity) {
+        this.x = new double[capacity];
+        this.y = new double[capacity];
+        this.dx = new double[capacity];
+        this.dy = new double[capacity];
+        this.radii = new double[capacity];
+        this.colors = new Color[capacity];
+        this.handles = new Ball[capacity];
+        this.alive = new boolean[capacity];
+        this.hitObjects = new Collidable[capacity];
+        this.hitX = new double[capacity];
+        this.hitY = new double[capacity];
+        this.hitT = new double[capacity];
+        this.baseTimes = new double[capacity];
+        this.impactTimes = new double[capacity];
+        this.segments = new double[capacity * GameEnvironment.SEGMENT_STRIDE];
+        this.pathMinX = new double[capacity];
+        this.pathMinY = new double[capacity];
+        this.pathMaxX = new double[capacity];
+        this.pathMaxY = new double[capacity];
+        this.caches = new CandidateCache[capacity];
+    }
+
+    /**
+     * Double the size of the arrays.
+     */
+    private void grow() {
+        int capacity = this.x.length * 2;
+        this.x = Arrays.copyOf(this.x, capacity);
+        this.y = Arrays.copyOf(this.y, capacity);
+        this.dx = Arrays.copyOf(this.dx, capacity);
+        this.dy = Arrays.copyOf(this.dy, capacity);
+        this.radii = Arrays.copyOf(this.radii, capacity);
+        this.colors = Arrays.copyOf(this.colors, capacity);
+        this.handles = Arrays.copyOf(this.handles, capacity);
+        this.alive = Arrays.copyOf(this.alive, capacity);
+        this.hitObjects = Arrays.copyOf(this.hitObjects, capacity);
+        this.hitX = Arrays.copyOf(this.hitX, capacity);
+        this.hitY = Arrays.copyOf(this.hitY, capacity);
+        this.hitT = Arrays.copyOf(this.hitT, capacity);
+        this.baseTimes = Arrays.copyOf(this.baseTimes, capacity);
+        this.impactTimes = Arrays.copyOf(this.impactTimes, capacity);
+        this.segments = Arrays.copyOf(this.segments,
+                capacity * GameEnvironment.SEGMENT_STRIDE);
+        this.pathMinX = Arrays.copyOf(this.pathMinX, capacity);
+        this.pathMinY = Arrays.copyOf(this.pathMinY, capacity);
+        this.pathMaxX = Arrays.copyOf(this.pathMaxX, capacity);
+        this.pathMaxY = Arrays.copyOf(this.pathMaxY, capacity);
+        this.caches = Arrays.copyOf(this.caches, capacity);
+    }
+
+    /**
+     * Finds the collisions of a range of balls, splitting the range between
+     * the workers of the pool. Every worker runs a batch query of its own.
+     */
+    private final class CollisionSearch extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        /**
+         * Create a search over the balls in slots [from, to).
+         * @param from The first slot.
+         * @param to The slot after the last one.
+         */
+        CollisionSearch(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= PARALLEL_CHUNK) {
+                ClosestCollisionQuery q = workerQueries.get();
+                q.setFixedPoint(fixedPoint);
+                gameEnvi.findClosestCollisions(q, segments, radii,
+                        activeCaches(), this.from, this.to, batch);
+                return;
+            }
+            int middle = (this.from + this.to) >>> 1;
+            invokeAll(new CollisionSearch(this.from, middle),
+                    new CollisionSearch(middle, this.to));
+        }
+    }
+}
@@ -19,6 +19,8 @@ public class Block implements Collidable, Sprite, HitNotifier {
     private sprites.Fill[] fills;
     private Color stroke;
     private int hitPoints;
+    private int collisionLayer = BLOCK_LAYER;
+    private int collisionMask = ALL_LAYERS;
     private ArrayList<HitListener> hitListeners = new ArrayList<HitListener>();
 
     /**
@@ -75,6 +77,42 @@ public class Block implements Collidable, Sprite, HitNotifier {
         return this.geoRep;
     }
 
+    /**
+     * Returns the collision layer of this block, BLOCK_LAYER by default.
+     * @return The collision layer of this block.
+     */
+    @Override
+    public int getCollisionLayer() {
+        return this.collisionLayer;
+    }
+
+    /**
+     * Set the collision layer of this block, before it is added to the game.
+     * @param layer The collision layer, one of the layer bits.
+     */
+    public void setCollisionLayer(int layer) {
+        this.collisionLayer = layer;
+    }
+
+    /**
+     * Returns the layers of the movers that may hit this block, all of them
+     * by default.
+     * @return The layers of the movers that may hit this block.
+     */
+    @Override
+    public int getCollisionMask() {
+        return this.collisionMask;
+    }
+
+    /**
+     * Set the layers of the movers that may hit this block, before it is
+     * added to the game.
+     * @param mask The layers of the movers that may hit this block.
+     */
+    public void setCollisionMask(int mask) {
+        this.collisionMask = mask;
+    }
+
     /**
      * Notify the object that we collided with it at collisionPoint with
      * a given velocity. The return is the new velocity expected after the
@@ -88,19 +126,19 @@ public class Block implements Collidable, Sprite, HitNotifier {
     public Velocity hit(Ball hitter, Point collisionPoint, Velocity currentVelocity) {
         this.decreaseHitPoint();
         this.notifyHit(hitter);
-        if (this.geoRep.isPointOnCorner(collisionPoint)) {
+        double x = collisionPoint.getX();
+        double y = collisionPoint.getY();
+        if (this.geoRep.isCorner(x, y)) {
             return new Velocity(-currentVelocity.getDX(),
                     -currentVelocity.getDY());
         }
-        if (collisionPoint.isOnHorizontalLine(this.geoRep.getUpperEdge())
-                || collisionPoint.isOnHorizontalLine(
-                        this.geoRep.getLowerEdge())) {
+        if (this.geoRep.isOnEdge(Rectangle.UPPER_EDGE, x, y)
+                || this.geoRep.isOnEdge(Rectangle.LOWER_EDGE, x, y)) {
             return new Velocity(currentVelocity.getDX(),
                     -currentVelocity.getDY());
         }
-        if (collisionPoint.isOnVerticalLine(this.geoRep.getLeftEdge())
-                || collisionPoint.isOnVerticalLine(
-                        this.geoRep.getRightEdge())) {
+        if (this.geoRep.isOnEdge(Rectangle.LEFT_EDGE, x, y)
+                || this.geoRep.isOnEdge(Rectangle.RIGHT_EDGE, x, y)) {
             return new Velocity(-currentVelocity.getDX(),
                     currentVelocity.getDY());
         }
@@ -136,18 +174,34 @@ public class Block implements Collidable, Sprite, HitNotifier {
     }
 
     /**
-     * Draw fill.
-     * @param d Draw surface.
-     * @param upperLeft Upper left point.
+     * Returns the index of the fill the block is drawn with, which follows
+     * its hit points.
+     * @return The index of the current fill.
      */
-    private void drawFill(DrawSurface d, Point upperLeft) {
+    public int getFillIndex() {
         int fillIndex = this.hitPoints - 1;
 
         if (fillIndex < 0) {
             fillIndex = 0;
         }
+        return fillIndex;
+    }
+
+    /**
+     * Returns the fill the block is drawn with.
+     * @return The current fill.
+     */
+    public Fill getFill() {
+        return this.fills[this.getFillIndex()];
+    }
 
-        Fill fill = this.fills[fillIndex];
+    /**
+     * Draw fill.
+     * @param d Draw surface.
+     * @param upperLeft Upper left point.
+     */
+    private void drawFill(DrawSurface d, Point upperLeft) {
+        Fill fill = this.getFill();
 
         if (fill.isImage()) {
             // draw the image at location 10, 20.
@@ -176,7 +230,7 @@ public class Block implements Collidable, Sprite, HitNotifier {
      * @param g The given game.
      */
     public void addToGame(GameLevel g) {
-        g.addSprite(this);
+        g.addStaticSprite(this);
         g.addCollidable(this);
     }
 
@@ -5,12 +5,37 @@ import geometryprimitives.Point;
 
 public interface Collidable {
 
+    // Collision layers. Every collidable is in one layer, and has a mask of
+    // the layers of the movers that may hit it. Every collision query is for
+    // a mover in one layer, with a mask of the layers it may hit.
+    int BALL_LAYER = 1;
+    int PROJECTILE_LAYER = 1 << 1;
+    int WALL_LAYER = 1 << 2;
+    int BLOCK_LAYER = 1 << 3;
+    int PADDLE_LAYER = 1 << 4;
+    int KILLZONE_LAYER = 1 << 5;
+    int ALL_LAYERS = ~0;
+
     /**
      * Return the "collision shape" of the object.
      * @return The "collision shape" of the object.
      */
     Rectangle getCollisionRectangle();
 
+    /**
+     * Returns the collision layer of the object. It is read when the object
+     * is added to the game environment, and must not change afterwards.
+     * @return The collision layer, one of the layer bits.
+     */
+    int getCollisionLayer();
+
+    /**
+     * Returns the layers of the movers that may hit the object. Like the
+     * layer, it must not change once the object is in the game environment.
+     * @return The layers of the movers that may hit the object.
+     */
+    int getCollisionMask();
+
     /**
      * Notify the object that we collided with it at collisionPoint with a
      * given velocity.
@@ -1,10 +1,13 @@
 package sprites;
 
+import io.ImageCache;
+import io.ImagePreparer;
+import io.TextureAtlas;
+
 import java.awt.Color;
 import java.awt.Image;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
-import java.io.InputStream;
-import javax.imageio.ImageIO;
 
 /**
  * Represents a fill.
@@ -58,17 +61,15 @@ public class Fill {
     }
 
     /**
-     * Constructor for image fill.
+     * Constructor for image fill. The image is decoded once, and shared by
+     * every fill of the same file through the shared image cache.
      * @param imageFileName The image file name.
      */
     public Fill(String imageFileName) {
         Image img = null;
 
         try {
-//            File imageFile = new File(imageFileName);
-
-            InputStream imageFile = ClassLoader.getSystemClassLoader().getResourceAsStream(imageFileName);
-            img = ImageIO.read(imageFile);
+            img = ImageCache.getShared().load(imageFileName);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -76,4 +77,50 @@ public class Fill {
         this.image = img;
         isFillImage = true;
     }
+
+    /**
+     * Returns this fill prepared to fill an area of the given size: an image
+     * fill is drawn from its image scaled to that size, in the format of the
+     * screen. A color fill is returned as it is.
+     * @param width The width of the filled area.
+     * @param height The height of the filled area.
+     * @return The prepared fill.
+     */
+    public Fill prepare(int width, int height) {
+        return this.prepare(width, height, ImagePreparer.SCALE);
+    }
+
+    /**
+     * Returns this fill prepared to fill an area of the given size, with its
+     * image scaled or cropped to that size, in the format of the screen. A
+     * color fill is returned as it is.
+     * @param width The width of the filled area.
+     * @param height The height of the filled area.
+     * @param mode ImagePreparer.SCALE or ImagePreparer.CROP.
+     * @return The prepared fill.
+     */
+    public Fill prepare(int width, int height, int mode) {
+        if (!this.isFillImage || (this.image == null)) {
+            return this;
+        }
+        return new Fill(ImagePreparer.getShared().prepare(this.image, width,
+                height, mode));
+    }
+
+    /**
+     * Returns this fill drawn from its region of the given atlas, if its
+     * image was packed into it. Otherwise the fill is returned as it is.
+     * @param atlas The atlas.
+     * @return The fill drawn from the atlas.
+     */
+    public Fill fromAtlas(TextureAtlas atlas) {
+        if (!(this.image instanceof BufferedImage)) {
+            return this;
+        }
+        BufferedImage region = atlas.getRegion((BufferedImage) this.image);
+        if (region == null) {
+            return this;
+        }
+        return new Fill(region);
+    }
 }
@@ -6,15 +6,19 @@ import biuoop.DrawSurface;
 import geometryprimitives.Rectangle;
 import geometryprimitives.Point;
 import driver.GameLevel;
+import management.DirtyRegion;
 
 /**
  * Represents a paddle.
  */
-public class Paddle implements Sprite, Collidable {
+public class Paddle implements TrackedSprite, Collidable {
     private biuoop.KeyboardSensor keyboard;
     private Rectangle geoRep;
+    private Rectangle collisionRect;
     private Color color;
     private int speed;
+    private GameLevel game;
+    private java.awt.Rectangle drawnBounds;
 
     public static final double PADDLE_SEGMENTS = 5;
 
@@ -32,6 +36,7 @@ public class Paddle implements Sprite, Collidable {
         this.geoRep = new Rectangle(new Point(lowestCentral.getX()
                 - (width / 2), lowestCentral.getY() - height), width,
                 height);
+        this.updateCollisionRectangle();
         this.color = c;
         this.keyboard = sensor;
         this.speed = speed;
@@ -42,12 +47,13 @@ public class Paddle implements Sprite, Collidable {
      * @param dt The amount of seconds passed since the last call.
      */
     public void moveLeft(double dt) {
-        int dx = (int) (this.speed * dt);
+        double dx = this.speed * dt;
         if (this.geoRep.getUpperLeft().getX() <= GameLevel.VERT_BLOCK_BOUND_WIDTH) {
             this.geoRep.setXUpperLeft(GameLevel.VERT_BLOCK_BOUND_WIDTH);
         } else {
             this.geoRep.setXUpperLeft(this.geoRep.getUpperLeft().getX() - dx);
         }
+        this.notifyMoved();
     }
 
     /**
@@ -55,7 +61,7 @@ public class Paddle implements Sprite, Collidable {
      * @param dt The amount of seconds passed since the last call.
      */
     public void moveRight(double dt) {
-        int dx = (int) (this.speed * dt);
+        double dx = this.speed * dt;
         if (this.geoRep.getUpperLeft().getX()
                 >= 800 - GameLevel.VERT_BLOCK_BOUND_WIDTH - this.geoRep.getWidth()) {
             this.geoRep.setXUpperLeft(800 - GameLevel.VERT_BLOCK_BOUND_WIDTH
@@ -63,6 +69,18 @@ public class Paddle implements Sprite, Collidable {
         } else {
             this.geoRep.setXUpperLeft(this.geoRep.getUpperLeft().getX() + dx);
         }
+        this.notifyMoved();
+    }
+
+    /**
+     * Rebuild the collision shape after the paddle has moved, and notify the
+     * game the paddle was added to that the paddle has moved.
+     */
+    private void notifyMoved() {
+        this.updateCollisionRectangle();
+        if (this.game != null) {
+            this.game.updateCollidable(this);
+        }
     }
 
     /**
@@ -85,6 +103,7 @@ public class Paddle implements Sprite, Collidable {
      */
     @Override
     public void drawOn(DrawSurface d) {
+        this.drawnBounds = this.getDrawBounds(d.getWidth(), d.getHeight());
         d.setColor(this.color);
         d.fillRectangle((int) this.geoRep.getUpperLeft().getX(),
                 (int) this.geoRep.getUpperLeft().getY(),
@@ -95,6 +114,35 @@ public class Paddle implements Sprite, Collidable {
                 (int) this.geoRep.getWidth(), (int) this.geoRep.getHeight());
     }
 
+    /**
+     * Add where the paddle was drawn and where it will be drawn, if it moved
+     * since it was drawn.
+     * @param region The region to repaint before the next frame.
+     */
+    @Override
+    public void addDirtyRectangles(DirtyRegion region) {
+        java.awt.Rectangle current = this.getDrawBounds(region.getWidth(),
+                region.getHeight());
+        if (!current.equals(this.drawnBounds)) {
+            region.addMove(this.drawnBounds, current);
+        }
+    }
+
+    /**
+     * Returns the pixels the paddle and its outline cover.
+     * @param width The surface width.
+     * @param height The surface height.
+     * @return The bounds of the paddle on the screen.
+     */
+    @Override
+    public java.awt.Rectangle getDrawBounds(int width, int height) {
+        // The outline is drawn one pixel past the right and lower edges.
+        return new java.awt.Rectangle((int) this.geoRep.getUpperLeft().getX(),
+                (int) this.geoRep.getUpperLeft().getY(),
+                (int) this.geoRep.getWidth() + 1,
+                (int) this.geoRep.getHeight() + 1);
+    }
+
     // sprites.Collidable
 
     /**
@@ -103,7 +151,34 @@ public class Paddle implements Sprite, Collidable {
      */
     @Override
     public Rectangle getCollisionRectangle() {
-        return new Rectangle(geoRep.getUpperLeft(), geoRep.getWidth(), 0);
+        return this.collisionRect;
+    }
+
+    /**
+     * Returns the collision layer of the paddle.
+     * @return PADDLE_LAYER.
+     */
+    @Override
+    public int getCollisionLayer() {
+        return PADDLE_LAYER;
+    }
+
+    /**
+     * Returns the layers of the movers that may hit the paddle.
+     * @return ALL_LAYERS.
+     */
+    @Override
+    public int getCollisionMask() {
+        return ALL_LAYERS;
+    }
+
+    /**
+     * Rebuild the collision shape, the upper edge of the paddle. It is kept
+     * between moves, as it is asked for by every ball on every step.
+     */
+    private void updateCollisionRectangle() {
+        this.collisionRect = new Rectangle(this.geoRep.getUpperLeft(),
+                this.geoRep.getWidth(), 0);
     }
 
     /**
@@ -118,22 +193,24 @@ public class Paddle implements Sprite, Collidable {
     @Override
     public Velocity hit(Ball hitter, Point collisionPoint, Velocity currentVelocity) {
 
-        if (collisionPoint.equals(this.geoRep.getUpperLeft())) {
+        double x = collisionPoint.getX();
+        double y = collisionPoint.getY();
+        if ((x == this.geoRep.getMinX()) && (y == this.geoRep.getMinY())) {
             return Velocity.fromAngleAndSpeed(300, currentVelocity.getSpeed());
         }
-        if (collisionPoint.equals(this.geoRep.getUpperRight())) {
+        if ((x == this.geoRep.getMaxX()) && (y == this.geoRep.getMinY())) {
             return Velocity.fromAngleAndSpeed(60, currentVelocity.getSpeed());
         }
-        if (collisionPoint.isOnHorizontalLine(this.getCollisionRectangle().getUpperEdge())) {
+        if (this.collisionRect.isOnEdge(Rectangle.UPPER_EDGE, x, y)) {
             for (int i = 0; i <= this.PADDLE_SEGMENTS - 1; i++) {
-                if ((collisionPoint.getX() < this.geoRep.getUpperLeft().getX()
+                if ((x < this.geoRep.getMinX()
                         + this.geoRep.getWidth() / this.PADDLE_SEGMENTS  * (i + 1))) {
                     return Velocity.fromAngleAndSpeed(300 + (i * 30), currentVelocity.getSpeed());
                 }
             }
         }
 
-        if (collisionPoint.isOnHorizontalLine(this.geoRep.getLowerEdge())) {
+        if (this.geoRep.isOnEdge(Rectangle.LOWER_EDGE, x, y)) {
             return new Velocity(currentVelocity.getDX(),
                     -currentVelocity.getDY());
         }
@@ -146,7 +223,8 @@ public class Paddle implements Sprite, Collidable {
      */
     public void addToGame(GameLevel g) {
         g.addSprite(this);
-        g.addCollidable(this);
+        g.addDynamicCollidable(this);
+        this.game = g;
     }
 
     /**
@@ -163,6 +241,7 @@ public class Paddle implements Sprite, Collidable {
      */
     public void setGeoRep(Rectangle rectangle) {
         this.geoRep = rectangle;
+        this.notifyMoved();
     }
 
     /**
@@ -180,6 +259,7 @@ public class Paddle implements Sprite, Collidable {
     public void removeFromGame(GameLevel g) {
         g.removeSprite(this);
         g.removeCollidable(this);
+        this.game = null;
     }
 
     /**
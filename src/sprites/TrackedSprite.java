@@ -0,0 +1,30 @@
+package sprites;
+
+import management.DirtyRegion;
+
+import java.awt.Rectangle;
+
+/**
+ * Represents a sprite that knows where it changes the screen, so a frame
+ * can repaint just the parts that changed instead of the whole screen.
+ * The sprite remembers where and how it was drawn last, and compares that
+ * with how it would be drawn now.
+ */
+public interface TrackedSprite extends Sprite {
+    /**
+     * Add to the given region every rectangle the sprite changes if it is
+     * drawn now: where it was drawn last, and where it would be drawn now.
+     * A sprite that would be drawn exactly as it was adds nothing.
+     * @param region The region to repaint before the next frame.
+     */
+    void addDirtyRectangles(DirtyRegion region);
+
+    /**
+     * Returns the bounds of the pixels the sprite draws now on a surface of
+     * the given size, or null if it may draw anywhere on it.
+     * @param width The surface width.
+     * @param height The surface height.
+     * @return The bounds, or null.
+     */
+    Rectangle getDrawBounds(int width, int height);
+}
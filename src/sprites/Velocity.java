@@ -57,8 +57,8 @@ public class Velocity {
         angle = angle % 360;
         double angleInRad = Math.toRadians(angle);
 
-        double dx = Math.sin(angleInRad) * speed;
-        double dy = -Math.cos(angleInRad) * speed;
+        double dx = StrictMath.sin(angleInRad) * speed;
+        double dy = -StrictMath.cos(angleInRad) * speed;
 
         return new Velocity(dx, dy);
     }